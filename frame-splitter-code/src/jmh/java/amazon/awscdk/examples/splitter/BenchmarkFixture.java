@@ -0,0 +1,138 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.ebml.InputStreamParserByteSource;
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
+import com.amazonaws.kinesisvideo.parser.utilities.FrameVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaRequest;
+import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Test data and AWS client stubs shared by benchmarks. Everything is kept in memory, so benchmarks measure only the frame path.
+ */
+final class BenchmarkFixture {
+    static final String MKV_FILE = "vogels_330.mkv";
+    /**
+     * Video track of the file, same track as processed by {@link ProcessingTask}
+     */
+    static final long VIDEO_TRACK = 1L;
+
+    private BenchmarkFixture() {
+    }
+
+    static byte[] mkvBytes() {
+        try (InputStream inputStream = ClassLoader.getSystemResourceAsStream(MKV_FILE)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Could not read input file " + MKV_FILE);
+            }
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static StreamingMkvReader reader(byte[] mkv) {
+        return StreamingMkvReader.createDefault(new InputStreamParserByteSource(new ByteArrayInputStream(mkv)));
+    }
+
+    /**
+     * Parses the file and keeps copies of all video frames with the video track metadata
+     */
+    static CapturedFrames captureFrames(byte[] mkv) throws MkvElementVisitException {
+        CapturedFrames captured = new CapturedFrames();
+        reader(mkv).apply(FrameVisitor.create(captured, Optional.empty(), Optional.of(VIDEO_TRACK)));
+        return captured;
+    }
+
+    /**
+     * Media client returning the whole file from every GetMedia call
+     */
+    static KinesisVideoMediaClient mediaClient(byte[] mkv) {
+        return new KinesisVideoMediaClient() {
+            @Override
+            public ResponseInputStream<GetMediaResponse> getMedia(GetMediaRequest getMediaRequest) {
+                GetMediaResponse.Builder responseBuilder = GetMediaResponse.builder();
+                responseBuilder.applyMutation(builder -> builder.sdkHttpResponse(SdkHttpResponse.builder().statusCode(200).build()));
+                return new ResponseInputStream<>(responseBuilder.build(), AbortableInputStream.create(new ByteArrayInputStream(mkv)));
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * S3 client reading request body and discarding it
+     */
+    static S3Client s3Client() {
+        return new S3Client() {
+            @Override
+            public PutObjectResponse putObject(PutObjectRequest putObjectRequest, RequestBody requestBody) {
+                try (InputStream body = requestBody.contentStreamProvider().newStream()) {
+                    body.transferTo(OutputStream.nullOutputStream());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return PutObjectResponse.builder().build();
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    static class CapturedFrames implements FrameVisitor.FrameProcessor {
+        final List<Frame> frames = new ArrayList<>();
+        MkvTrackMetadata trackMetadata;
+
+        @Override
+        public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata) {
+            ByteBuffer data = frame.getFrameData();
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data.duplicate()).flip();
+            frames.add(frame.toBuilder().frameData(copy).build());
+            this.trackMetadata = trackMetadata;
+        }
+
+        /**
+         * Frames share buffers between benchmark invocations, positions are reset before every use
+         */
+        List<Frame> rewound() {
+            frames.forEach(frame -> frame.getFrameData().rewind());
+            return frames;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.FrameProcessException;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of all frames of the file with {@link FramePublishingDecoder}. Frames are parsed upfront and decoded images are discarded.
+ * With decoderThreads > 0 groups of pictures are decoded in parallel by {@link GopDecoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DecodeBenchmark {
+    @Param({"ALL", "KEYFRAMES"})
+    public SamplingPolicy.Mode sampling;
+
+    @Param({"0", "4"})
+    public int decoderThreads;
+
+    private BenchmarkFixture.CapturedFrames captured;
+    private Blackhole blackhole;
+    private ImagePublisher publisher;
+    private GopDecoder gopDecoder;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws MkvElementVisitException {
+        this.blackhole = blackhole;
+        captured = BenchmarkFixture.captureFrames(BenchmarkFixture.mkvBytes());
+        publisher = new ImagePublisher(BenchmarkFixture.s3Client(), "bucket", "images", 1) {
+            @Override
+            public void publish(BufferedImage bufferedImage, FrameMetadata metadata) {
+                DecodeBenchmark.this.blackhole.consume(bufferedImage);
+            }
+        };
+        gopDecoder = decoderThreads > 0 ? new GopDecoder(decoderThreads) : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        publisher.close();
+        if (gopDecoder != null) {
+            gopDecoder.close();
+        }
+    }
+
+    @Benchmark
+    public void decode() throws FrameProcessException {
+        SamplingPolicy policy = new SamplingPolicy();
+        policy.setMode(sampling);
+        FramePublishingDecoder decoder = new FramePublishingDecoder(publisher, blackhole::consume, new FrameSampler(policy), gopDecoder);
+        for (Frame frame : captured.rewound()) {
+            decoder.process(frame, captured.trackMetadata, Optional.empty());
+        }
+        decoder.flush();
+    }
+}
@@ -0,0 +1,57 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import com.amazonaws.kinesisvideo.parser.utilities.H264FrameDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of a single decoded frame with {@link ImageEncoder}, as done by {@link ImagePublisher} threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodeBenchmark {
+    @Param({"PNG", "JPEG"})
+    public EncoderSettings.Format format;
+
+    private BufferedImage image;
+    private ImageEncoder encoder;
+
+    @Setup
+    public void setup() throws MkvElementVisitException {
+        BenchmarkFixture.CapturedFrames captured = BenchmarkFixture.captureFrames(BenchmarkFixture.mkvBytes());
+        image = new H264FrameDecoder().decodeH264Frame(captured.rewound().get(0), captured.trackMetadata);
+        EncoderSettings settings = new EncoderSettings();
+        settings.setFormat(format);
+        encoder = new ImageEncoder(settings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.close();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() throws IOException {
+        return encoder.encode(image);
+    }
+}
@@ -0,0 +1,65 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
+import com.amazonaws.kinesisvideo.parser.utilities.FrameVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the whole MKV file with {@link StreamingMkvReader}, frames are not decoded.
+ * "library" reads through {@code InputStreamParserByteSource} and copies every frame, "buffered" reads through
+ * {@link BufferedMediaByteSource} and passes frames as slices with {@link FrameSliceVisitor}.
+ * Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MkvParseBenchmark {
+    @Param({"library", "buffered"})
+    public String source;
+
+    private byte[] mkv;
+
+    @Setup
+    public void setup() {
+        mkv = BenchmarkFixture.mkvBytes();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws MkvElementVisitException {
+        FrameVisitor.FrameProcessor processor = new FrameVisitor.FrameProcessor() {
+            @Override
+            public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata) {
+                blackhole.consume(frame);
+            }
+        };
+        if ("library".equals(source)) {
+            BenchmarkFixture.reader(mkv).apply(FrameVisitor.create(processor, Optional.empty(), Optional.of(BenchmarkFixture.VIDEO_TRACK)));
+            return;
+        }
+        try (BufferedMediaByteSource byteSource = new BufferedMediaByteSource(new ByteArrayInputStream(mkv))) {
+            StreamingMkvReader.createDefault(byteSource).apply(new FrameSliceVisitor(processor, BenchmarkFixture.VIDEO_TRACK));
+        }
+    }
+}
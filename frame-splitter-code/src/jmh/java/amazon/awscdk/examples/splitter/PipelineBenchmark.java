@@ -0,0 +1,93 @@
+package amazon.awscdk.examples.splitter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Whole {@link ProcessingTask}: GetMedia from memory, parse, decode, encode and upload to S3 stub discarding the images
+ * or write them to a temporary directory with {@link LocalDirectorySink}.
+ * Staged variant reads media ahead with {@link MediaPrefetcher} and decodes groups of pictures with {@link GopDecoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({"1", "4"})
+    public int publisherThreads;
+
+    @Param({"false", "true"})
+    public boolean staged;
+
+    @Param({"s3", "local"})
+    public String output;
+
+    private Path outputDir;
+    private FrameSink sink;
+    private KinesisVideoMediaClient mediaClient;
+    private GopDecoder gopDecoder;
+    private MediaPrefetcher mediaPrefetcher;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("local".equals(output)) {
+            outputDir = Files.createTempDirectory("pipeline-benchmark");
+            sink = new LocalDirectorySink(outputDir);
+        } else {
+            sink = new S3FrameSink(BenchmarkFixture.s3Client(), null, "bucket");
+        }
+        mediaClient = BenchmarkFixture.mediaClient(BenchmarkFixture.mkvBytes());
+        if (staged) {
+            gopDecoder = new GopDecoder(Runtime.getRuntime().availableProcessors());
+            mediaPrefetcher = new MediaPrefetcher(4 * 1024 * 1024);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (staged) {
+            gopDecoder.close();
+            mediaPrefetcher.close();
+        }
+        if (outputDir != null) {
+            try (Stream<Path> paths = Files.walk(outputDir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void processStream() {
+        ProcessingRequest request = new ProcessingRequest();
+        request.setStreamARN("benchmarkStreamARN");
+        request.setBucket("bucket");
+        request.setS3Directory("images");
+        ProcessingTask task = new ProcessingTask(request, sink, mediaClient, publisherThreads, BackpressureSettings.defaults(), null,
+                gopDecoder, mediaPrefetcher, null);
+        task.stop();
+        task.run();
+    }
+}
@@ -0,0 +1,94 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State of a single replayed stream shared by the Kinesis Video and S3 stand-ins. Every stream uploads to its own bucket,
+ * so uploads are matched with the stream by bucket name.
+ * <p>
+ * Lag of a frame is the time from the moment its bytes were returned by GetMedia to the upload of its image. Images are matched
+ * with frames through the frame index, which lists the timestamp of every image, so the stream is processed with the index enabled.
+ */
+class LoadStream {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String name;
+    private final MediaReplay media;
+    private final double rate;
+    private final LatencyHistogram lag;
+    private final AtomicLongArray releasedNanos;
+    private final ConcurrentMap<String, Long> uploadedNanos = new ConcurrentHashMap<>();
+    private final AtomicBoolean replayed = new AtomicBoolean();
+    private final LongAdder imagesUploaded = new LongAdder();
+    private volatile boolean ended;
+
+    /**
+     * @param name - stream ARN and bucket name of the stream
+     * @param lag - histogram shared by all streams
+     */
+    LoadStream(String name, MediaReplay media, double rate, LatencyHistogram lag) {
+        this.name = name;
+        this.media = media;
+        this.rate = rate;
+        this.lag = lag;
+        this.releasedNanos = new AtomicLongArray(media.frames());
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * The file is replayed once, GetMedia requests continuing after the last fragment find the stream ended
+     * @return replayed media or null when it was already replayed
+     */
+    InputStream replay() {
+        return replayed.compareAndSet(false, true) ? media.open(rate, releasedNanos) : null;
+    }
+
+    void end() {
+        ended = true;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    void imageUploaded(String key) {
+        uploadedNanos.put(key, System.nanoTime());
+        imagesUploaded.increment();
+    }
+
+    /**
+     * Records lag of every image listed in uploaded index chunk
+     */
+    void indexUploaded(byte[] chunk) {
+        JsonNode frames;
+        try {
+            frames = OBJECT_MAPPER.readTree(chunk).get("frames");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid index chunk of stream " + name, e);
+        }
+        for (JsonNode frame : frames) {
+            Long uploaded = uploadedNanos.remove(frame.get("key").asText());
+            int index = media.frameOf(frame.get("timestampMillis").asLong());
+            if (uploaded != null && index >= 0 && releasedNanos.get(index) != 0) {
+                lag.recordNanos(uploaded - releasedNanos.get(index));
+            }
+        }
+    }
+
+    long getImagesUploaded() {
+        return imagesUploaded.sum();
+    }
+}
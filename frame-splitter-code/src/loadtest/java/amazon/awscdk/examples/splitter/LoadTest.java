@@ -0,0 +1,247 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of {@link FrameSplitter} on a single machine. SQS, Kinesis Video GetMedia and S3 are replaced by
+ * in-process stand-ins from {@link LoadTestClients}: the queue holds one processing request per stream, every stream replays
+ * the same MKV file at the given rate and uploaded objects are discarded.
+ * <p>
+ * Reports frames uploaded per second, lag from the moment a frame was returned by GetMedia to the upload of its image,
+ * heap use and frames that were not uploaded. Frames are returned when due according to their timecodes, so with rate 1 the lag
+ * is the same as the lag from frame timecode to upload of a live stream.
+ * <p>
+ * Run with <code>mvn -Pload-test verify -Dload.args="-s 16 -r 2"</code>
+ */
+public class LoadTest {
+    private static final String STREAM_PREFIX = "load-test-stream-";
+    private static final String QUEUE_URL = "load-test-queue";
+    private static final int WAIT_SECONDS = 1;
+    private static final long IDLE_BACKOFF_MAX_MILLIS = 1000;
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final MediaReplay media;
+    private final int streamCount;
+    private final double rate;
+    private final long reportIntervalMillis;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final Map<String, LoadStream> streams = new LinkedHashMap<>();
+    private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private long peakHeapBytes;
+
+    /**
+     * @param media - replayed file
+     * @param streamCount - number of streams replaying the file at the same time
+     * @param rate - replay speed, 1 for real time, 0 to replay as fast as the file is read
+     * @param reportIntervalMillis - time between progress reports
+     */
+    LoadTest(MediaReplay media, int streamCount, double rate, long reportIntervalMillis) throws JsonProcessingException {
+        this.media = media;
+        this.streamCount = streamCount;
+        this.rate = rate;
+        this.reportIntervalMillis = reportIntervalMillis;
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (int i = 0; i < streamCount; i++) {
+            String name = STREAM_PREFIX + i;
+            streams.put(name, new LoadStream(name, media, rate, lag));
+            ProcessingRequest request = new ProcessingRequest();
+            request.setStreamARN(name);
+            request.setBucket(name);
+            request.setS3Directory("images");
+            // Index lists timestamps of uploaded images, which are needed to compute their lag
+            request.getOutput().setIndexWindowMillis(1000);
+            queue.add(Message.builder()
+                    .messageId(String.valueOf(i))
+                    .receiptHandle(name)
+                    .body(objectMapper.writeValueAsString(request))
+                    .build());
+        }
+    }
+
+    /**
+     * Submits all requests and waits until processing of every stream finished or receiving of requests failed
+     */
+    void run(FrameSplitter frameSplitter) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        Thread receiver = new Thread(frameSplitter::start, "load-test-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        long lastReportNanos = startNanos;
+        long lastUploaded = 0;
+        do {
+            TimeUnit.MILLISECONDS.sleep(Math.min(reportIntervalMillis, 200));
+            peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+            long now = System.nanoTime();
+            if (now - lastReportNanos >= TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis)) {
+                long uploaded = imagesUploaded();
+                reportProgress(now - startNanos, (uploaded - lastUploaded) / ((now - lastReportNanos) / 1e9));
+                lastUploaded = uploaded;
+                lastReportNanos = now;
+            }
+        } while (receiver.isAlive() && (!allEnded() || !processedStreams().isEmpty()));
+        reportSummary(System.nanoTime() - startNanos);
+    }
+
+    private void reportProgress(long elapsedNanos, double framesPerSecond) {
+        Map<String, Object> processed = processedStreams();
+        long ended = streams.values().stream().filter(LoadStream::isEnded).count();
+        long dropped = processed.values().stream()
+                .mapToLong(metrics -> (Long) ((Map<?, ?>) metrics).get("framesDropped"))
+                .sum();
+        System.out.println(String.format("%6.1f s | streams processed %d, ended %d | %7.1f frames/s | dropped %d | lag p50 %d ms, p99 %d ms | heap %d MB",
+                elapsedNanos / 1e9, processed.size(), ended, framesPerSecond, dropped,
+                lag.percentileMicros(0.5) / 1000, lag.percentileMicros(0.99) / 1000,
+                memory.getHeapMemoryUsage().getUsed() / BYTES_PER_MB));
+    }
+
+    private void reportSummary(long elapsedNanos) {
+        long replayed = (long) streamCount * media.frames();
+        long uploaded = imagesUploaded();
+        long gcMillis = ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+        System.out.println("Load test finished: " + streamCount + " streams of " + media.frames() + " frames ("
+                + media.durationMillis() + " ms) at rate " + (rate == 0 ? "unlimited" : rate + "x"));
+        System.out.println(String.format("Duration: %.1f s", elapsedNanos / 1e9));
+        System.out.println(String.format("Throughput: %.1f frames/s", uploaded / (elapsedNanos / 1e9)));
+        System.out.println("Images uploaded: " + uploaded + " of " + replayed + " frames, not uploaded (dropped or failed): " + (replayed - uploaded));
+        System.out.println("Lag from GetMedia to upload (ms): count " + lag.count()
+                + ", p50 " + lag.percentileMicros(0.5) / 1000
+                + ", p90 " + lag.percentileMicros(0.9) / 1000
+                + ", p99 " + lag.percentileMicros(0.99) / 1000
+                + ", max " + lag.percentileMicros(1) / 1000);
+        System.out.println("Peak heap: " + peakHeapBytes / BYTES_PER_MB + " MB of " + memory.getHeapMemoryUsage().getMax() / BYTES_PER_MB
+                + " MB, GC time: " + gcMillis + " ms");
+    }
+
+    private long imagesUploaded() {
+        return streams.values().stream().mapToLong(LoadStream::getImagesUploaded).sum();
+    }
+
+    private boolean allEnded() {
+        return streams.values().stream().allMatch(LoadStream::isEnded);
+    }
+
+    /**
+     * Counters of streams being processed. Tasks unregister their counters when they finish, so dropped frames of finished
+     * streams are counted only in the summary, as frames not uploaded.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> processedStreams() {
+        return (Map<String, Object>) PipelineMetrics.snapshot().get("streams");
+    }
+
+    public static void main(String[] args) throws ParseException, JsonProcessingException, InterruptedException {
+        Option streamsOption = Option.builder("s").required(false).longOpt("streams").hasArg().type(Integer.class)
+                .desc("Number of streams replaying the file at the same time").build();
+        Option rateOption = Option.builder("r").required(false).longOpt("rate").hasArg().type(Double.class)
+                .desc("Replay speed, 1 for real time, 0 to replay without waiting for frame timecodes").build();
+        Option fileOption = Option.builder("f").required(false).longOpt("file").hasArg().type(String.class)
+                .desc("MKV file on the classpath replayed by every stream").build();
+        Option frameSplitterThreadsOption = Option.builder("ft").required(false).longOpt("frame-threads").hasArg().type(Integer.class)
+                .desc("Number of video stream processing threads. Defaults to number of processors").build();
+        Option imagePublisherThreadsOption = Option.builder("pt").required(false).longOpt("publisher-threads").hasArg().type(Integer.class)
+                .desc("Number of image publisher threads of every stream").build();
+        Option maxStreamsOption = Option.builder("ms").required(false).longOpt("max-streams").hasArg().type(Integer.class)
+                .desc("Maximum number of streams processed at the same time. Defaults to number of streams").build();
+        Option streamSliceOption = Option.builder("sl").required(false).longOpt("stream-slice").hasArg().type(Long.class)
+                .desc("Number of milliseconds a stream is processed before frame splitter thread switches to another stream").build();
+        Option decoderThreadsOption = Option.builder("dt").required(false).longOpt("decoder-threads").hasArg().type(Integer.class)
+                .desc("Number of threads decoding groups of pictures in parallel, 0 to decode on frame splitter threads").build();
+        Option mediaBufferOption = Option.builder("mb").required(false).longOpt("media-buffer").hasArg().type(Long.class)
+                .desc("Number of bytes of GetMedia response read ahead per stream, 0 to read on frame splitter threads").build();
+        Option bufferCapacityOption = Option.builder("bc").required(false).longOpt("buffer-capacity").hasArg().type(Long.class)
+                .desc("Maximum number of frames waiting for publisher threads of every stream").build();
+        Option bufferPolicyOption = Option.builder("bp").required(false).longOpt("buffer-policy").hasArg().type(String.class)
+                .desc("Action taken when buffer is full: BLOCK, DROP_OLDEST or DROP_NEWEST").build();
+        Option reportIntervalOption = Option.builder("ri").required(false).longOpt("report-interval").hasArg().type(Long.class)
+                .desc("Number of milliseconds between progress reports").build();
+
+        Options options = new Options()
+                .addOption(streamsOption)
+                .addOption(rateOption)
+                .addOption(fileOption)
+                .addOption(frameSplitterThreadsOption)
+                .addOption(imagePublisherThreadsOption)
+                .addOption(maxStreamsOption)
+                .addOption(streamSliceOption)
+                .addOption(decoderThreadsOption)
+                .addOption(mediaBufferOption)
+                .addOption(bufferCapacityOption)
+                .addOption(bufferPolicyOption)
+                .addOption(reportIntervalOption);
+        CommandLine commandLine = new DefaultParser().parse(options, args);
+
+        int streamCount = Integer.parseInt(commandLine.getOptionValue(streamsOption.getOpt(), "4"));
+        if (streamCount <= 0) {
+            throw new IllegalArgumentException("streams must be > 0");
+        }
+        double rate = Double.parseDouble(commandLine.getOptionValue(rateOption.getOpt(), "1"));
+        if (rate < 0) {
+            throw new IllegalArgumentException("rate must be >= 0");
+        }
+        String file = commandLine.getOptionValue(fileOption.getOpt(), "vogels_330.mkv");
+        int frameSplitterThreads = Integer.parseInt(commandLine.getOptionValue(frameSplitterThreadsOption.getOpt(),
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int imagePublisherThreads = Integer.parseInt(commandLine.getOptionValue(imagePublisherThreadsOption.getOpt(), "1"));
+        int maxStreams = Integer.parseInt(commandLine.getOptionValue(maxStreamsOption.getOpt(), String.valueOf(streamCount)));
+        if (maxStreams <= 0) {
+            throw new IllegalArgumentException("maxStreams must be > 0");
+        }
+        long streamSliceMillis = Long.parseLong(commandLine.getOptionValue(streamSliceOption.getOpt(), "1000"));
+        int decoderThreads = Integer.parseInt(commandLine.getOptionValue(decoderThreadsOption.getOpt(), "0"));
+        long mediaBufferBytes = Long.parseLong(commandLine.getOptionValue(mediaBufferOption.getOpt(), "0"));
+        if (decoderThreads < 0 || mediaBufferBytes < 0) {
+            throw new IllegalArgumentException("decoderThreads and mediaBuffer must be >= 0");
+        }
+        long bufferCapacity = Long.parseLong(commandLine.getOptionValue(bufferCapacityOption.getOpt(), String.valueOf(BackpressureSettings.DEFAULT_CAPACITY)));
+        BoundedHandoff.OverflowPolicy bufferPolicy = BoundedHandoff.OverflowPolicy.valueOf(commandLine.getOptionValue(bufferPolicyOption.getOpt(),
+                BoundedHandoff.OverflowPolicy.BLOCK.name()));
+        long reportIntervalMillis = Long.parseLong(commandLine.getOptionValue(reportIntervalOption.getOpt(), "5000"));
+        if (reportIntervalMillis <= 0) {
+            throw new IllegalArgumentException("reportInterval must be > 0");
+        }
+
+        LoadTest loadTest = new LoadTest(MediaReplay.load(file), streamCount, rate, reportIntervalMillis);
+        KinesisVideoMediaClient mediaClient = LoadTestClients.mediaClient(loadTest.streams);
+        KinesisVideoClientRegistry clientRegistry = new KinesisVideoClientRegistry(null, streamARN -> "http://localhost",
+                endpoint -> mediaClient, Clock.systemUTC(), Duration.ofMinutes(5), 1);
+        StreamScheduler streamScheduler = new StreamScheduler(frameSplitterThreads, streamSliceMillis, IDLE_BACKOFF_MAX_MILLIS);
+        GopDecoder gopDecoder = decoderThreads > 0 ? new GopDecoder(decoderThreads) : null;
+        MediaPrefetcher mediaPrefetcher = mediaBufferBytes > 0 ? new MediaPrefetcher(mediaBufferBytes) : null;
+        FrameSplitter frameSplitter = new FrameSplitter(clientRegistry, LoadTestClients.sqsClient(loadTest.queue),
+                LoadTestClients.s3Client(loadTest.streams), null, QUEUE_URL, WAIT_SECONDS, streamScheduler, maxStreams, imagePublisherThreads,
+                new BackpressureSettings(bufferCapacity, BackpressureSettings.Unit.FRAMES, bufferPolicy), null, gopDecoder, mediaPrefetcher, null, null, null);
+        try {
+            loadTest.run(frameSplitter);
+        } finally {
+            streamScheduler.close();
+            if (gopDecoder != null) {
+                gopDecoder.close();
+            }
+            if (mediaPrefetcher != null) {
+                mediaPrefetcher.close();
+            }
+        }
+    }
+}
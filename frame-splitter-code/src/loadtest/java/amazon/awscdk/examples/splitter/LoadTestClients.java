@@ -0,0 +1,144 @@
+package amazon.awscdk.examples.splitter;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaRequest;
+import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaResponse;
+import software.amazon.awssdk.services.kinesisvideomedia.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.kinesisvideomedia.model.StartSelectorType;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-ins for SQS, Kinesis Video GetMedia and S3 used by {@link LoadTest}
+ */
+final class LoadTestClients {
+    private static final String INDEX_CONTENT_TYPE = "application/json";
+
+    private LoadTestClients() {
+    }
+
+    /**
+     * SQS client receiving messages from given queue. Deleted messages are forgotten, messages are never redelivered.
+     */
+    static SqsClient sqsClient(BlockingQueue<Message> queue) {
+        return new SqsClient() {
+            @Override
+            public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest receiveMessageRequest) {
+                List<Message> messages = new ArrayList<>();
+                try {
+                    Message first = queue.poll(receiveMessageRequest.waitTimeSeconds(), TimeUnit.SECONDS);
+                    if (first != null) {
+                        messages.add(first);
+                        queue.drainTo(messages, receiveMessageRequest.maxNumberOfMessages() - 1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ReceiveMessageResponse.builder().messages(messages).build();
+            }
+
+            @Override
+            public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest deleteMessageBatchRequest) {
+                return DeleteMessageBatchResponse.builder().build();
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Media client replaying the file of the requested stream once. Requests continuing after the last fragment fail
+     * with {@link ResourceNotFoundException}, as if the stream was deleted, so processing of the stream finishes
+     * and its last images and index chunks are flushed.
+     */
+    static KinesisVideoMediaClient mediaClient(Map<String, LoadStream> streams) {
+        return new KinesisVideoMediaClient() {
+            @Override
+            public ResponseInputStream<GetMediaResponse> getMedia(GetMediaRequest getMediaRequest) {
+                LoadStream stream = streams.get(getMediaRequest.streamARN());
+                InputStream media = stream != null && getMediaRequest.startSelector().startSelectorType() == StartSelectorType.EARLIEST
+                        ? stream.replay() : null;
+                if (media == null) {
+                    if (stream != null) {
+                        stream.end();
+                    }
+                    throw ResourceNotFoundException.builder().message("Replay of stream " + getMediaRequest.streamARN() + " ended").build();
+                }
+                GetMediaResponse.Builder responseBuilder = GetMediaResponse.builder();
+                responseBuilder.applyMutation(builder -> builder.sdkHttpResponse(SdkHttpResponse.builder().statusCode(200).build()));
+                return new ResponseInputStream<>(responseBuilder.build(), AbortableInputStream.create(media));
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * S3 client discarding uploaded objects after recording images and index chunks with the stream owning the bucket
+     */
+    static S3Client s3Client(Map<String, LoadStream> streams) {
+        return new S3Client() {
+            @Override
+            public PutObjectResponse putObject(PutObjectRequest putObjectRequest, RequestBody requestBody) {
+                byte[] bytes;
+                try (InputStream body = requestBody.contentStreamProvider().newStream()) {
+                    bytes = body.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                LoadStream stream = streams.get(putObjectRequest.bucket());
+                if (stream != null) {
+                    if (INDEX_CONTENT_TYPE.equals(putObjectRequest.contentType())) {
+                        stream.indexUploaded(bytes);
+                    } else {
+                        stream.imageUploaded(putObjectRequest.key());
+                    }
+                }
+                return PutObjectResponse.builder().build();
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
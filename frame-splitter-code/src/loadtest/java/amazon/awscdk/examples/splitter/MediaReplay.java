@@ -0,0 +1,222 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadataVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.FrameVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * MKV file replayed as a GetMedia response. The file is parsed once to find where every video frame ends and what its timestamp is,
+ * so replays can release frames at the pace they were recorded at and remember when each frame was released.
+ */
+final class MediaReplay {
+    private static final BigInteger DEFAULT_TIMESCALE_NANOS = BigInteger.valueOf(1_000_000);
+    private static final BigInteger NANOS_PER_MILLI = BigInteger.valueOf(1_000_000);
+
+    private final byte[] mkv;
+    /**
+     * Offset of the first byte after the SimpleBlock of every video frame, in file order
+     */
+    private final long[] frameEnds;
+    /**
+     * Time from the start of the file at which every frame is due. Never decreases, frames reordered by B-frames are
+     * due together with the latest frame before them.
+     */
+    private final long[] dueMillis;
+    private final Map<Long, Integer> framesByTimestamp = new HashMap<>();
+
+    private MediaReplay(byte[] mkv, List<long[]> frames) {
+        this.mkv = mkv;
+        frameEnds = new long[frames.size()];
+        dueMillis = new long[frames.size()];
+        long firstTimestamp = frames.isEmpty() ? 0 : frames.get(0)[1];
+        long due = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            frameEnds[i] = frames.get(i)[0];
+            due = Math.max(due, frames.get(i)[1] - firstTimestamp);
+            dueMillis[i] = due;
+            framesByTimestamp.putIfAbsent(frames.get(i)[1], i);
+        }
+    }
+
+    /**
+     * @param resource - MKV file on the classpath, e.g. vogels_330.mkv
+     */
+    static MediaReplay load(String resource) {
+        byte[] mkv;
+        try (InputStream inputStream = ClassLoader.getSystemResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("Could not read input file " + resource);
+            }
+            mkv = inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<long[]> frames = new ArrayList<>();
+        try (CountingByteSource byteSource = new CountingByteSource(new ByteArrayInputStream(mkv))) {
+            // Timestamps are computed the same way as by FramePublishingDecoder, so they match timestamps of published images
+            StreamingMkvReader.createDefault(byteSource).apply(new FrameSliceVisitor(new FrameVisitor.FrameProcessor() {
+                @Override
+                public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata,
+                                    Optional<FragmentMetadataVisitor.MkvTagProcessor> tagProcessor, Optional<BigInteger> timescale,
+                                    Optional<BigInteger> fragmentTimecode) {
+                    long timestampMillis = fragmentTimecode.orElse(BigInteger.ZERO)
+                            .add(BigInteger.valueOf(frame.getTimeCode()))
+                            .multiply(timescale.orElse(DEFAULT_TIMESCALE_NANOS))
+                            .divide(NANOS_PER_MILLI).longValue();
+                    frames.add(new long[]{byteSource.consumed(), timestampMillis});
+                }
+            }, 1L));
+        } catch (MkvElementVisitException e) {
+            throw new IllegalArgumentException("Could not parse input file " + resource, e);
+        }
+        return new MediaReplay(mkv, frames);
+    }
+
+    int frames() {
+        return frameEnds.length;
+    }
+
+    long durationMillis() {
+        return frameEnds.length == 0 ? 0 : dueMillis[frameEnds.length - 1];
+    }
+
+    /**
+     * @return index of the frame in file order, -1 when no frame has given timestamp
+     */
+    int frameOf(long timestampMillis) {
+        return framesByTimestamp.getOrDefault(timestampMillis, -1);
+    }
+
+    /**
+     * Starts a replay. Reads block until the next frame is due.
+     * @param rate - replay speed, 1 for real time, 0 to return the whole file without waiting
+     * @param releasedNanos - receives {@link System#nanoTime()} at which every frame was returned by the stream
+     */
+    InputStream open(double rate, AtomicLongArray releasedNanos) {
+        return new PacedInputStream(rate, releasedNanos);
+    }
+
+    private class PacedInputStream extends InputStream {
+        private final double rate;
+        private final AtomicLongArray releasedNanos;
+        private final long startNanos = System.nanoTime();
+        private int position;
+        private int nextFrame;
+
+        PacedInputStream(double rate, AtomicLongArray releasedNanos) {
+            this.rate = rate;
+            this.releasedNanos = releasedNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= mkv.length) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            long end = mkv.length;
+            if (nextFrame < frameEnds.length) {
+                awaitDue(nextFrame);
+                end = frameEnds[nextFrame];
+            }
+            int read = (int) Math.min(length, end - position);
+            System.arraycopy(mkv, position, bytes, offset, read);
+            position += read;
+            if (nextFrame < frameEnds.length && position == frameEnds[nextFrame]) {
+                releasedNanos.set(nextFrame, System.nanoTime());
+                nextFrame++;
+            }
+            return read;
+        }
+
+        /**
+         * Bytes of frames already due, so a reader taking everything available never waits for the next frame
+         */
+        @Override
+        public int available() {
+            if (rate == 0 || nextFrame >= frameEnds.length) {
+                return mkv.length - position;
+            }
+            return System.nanoTime() >= dueNanos(nextFrame) ? (int) (frameEnds[nextFrame] - position) : 0;
+        }
+
+        private void awaitDue(int frame) throws InterruptedIOException {
+            if (rate == 0) {
+                return;
+            }
+            long waitNanos = dueNanos(frame) - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for frame " + frame);
+                }
+            }
+        }
+
+        private long dueNanos(int frame) {
+            return startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(dueMillis[frame]) / rate);
+        }
+    }
+
+    /**
+     * Byte source counting consumed bytes, so the end of an element is known when it is visited
+     */
+    private static class CountingByteSource extends BufferedMediaByteSource {
+        private long consumed;
+
+        CountingByteSource(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int readByte() {
+            int value = super.readByte();
+            if (value >= 0) {
+                consumed++;
+            }
+            return value;
+        }
+
+        @Override
+        public int readBytes(ByteBuffer dest, int length) {
+            int read = super.readBytes(dest, length);
+            if (read > 0) {
+                consumed += read;
+            }
+            return read;
+        }
+
+        long consumed() {
+            return consumed;
+        }
+    }
+}
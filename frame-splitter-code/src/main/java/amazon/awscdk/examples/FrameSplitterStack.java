@@ -4,7 +4,12 @@ import software.amazon.awscdk.core.*;
 import software.amazon.awscdk.services.ec2.Vpc;
 import software.amazon.awscdk.services.ecr.assets.DockerImageAsset;
 import software.amazon.awscdk.services.ecs.ContainerImage;
+import software.amazon.awscdk.services.ecs.EfsVolumeConfiguration;
+import software.amazon.awscdk.services.ecs.FargatePlatformVersion;
+import software.amazon.awscdk.services.ecs.MountPoint;
+import software.amazon.awscdk.services.ecs.Volume;
 import software.amazon.awscdk.services.ecs.patterns.QueueProcessingFargateService;
+import software.amazon.awscdk.services.efs.FileSystem;
 import software.amazon.awscdk.services.iam.Effect;
 import software.amazon.awscdk.services.iam.PolicyStatement;
 import software.amazon.awscdk.services.s3.BlockPublicAccess;
@@ -19,8 +24,13 @@ import static java.util.Collections.singletonList;
 
 /**
  * CDK stack definition. It contains definitions of all AWS infrastructure resources except of Amazon Kinesis Video Stream used in this example.
+ * Tasks share leases and checkpoints of live streams on an EFS file system, so the service can scale out and a stream of a stopped task
+ * is taken over by another one, resuming after its last checkpoint.
  */
 public class FrameSplitterStack extends Stack {
+    private static final String STATE_VOLUME = "state";
+    private static final String STATE_PATH = "/mnt/state";
+
     public FrameSplitterStack(final Construct scope, final String id) {
         this(scope, id, null);
     }
@@ -39,6 +49,12 @@ public class FrameSplitterStack extends Stack {
                 .publicReadAccess(false)
                 .build();
 
+        FileSystem stateFileSystem = FileSystem.Builder.create(this, "StateFileSystem")
+                .vpc(vpc)
+                .encrypted(true)
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+
         Queue queue = Queue.Builder.create(this, "TaskQueue")
                 .queueName("FrameSplitterTaskQueue")
                 .build();
@@ -51,15 +67,33 @@ public class FrameSplitterStack extends Stack {
                         "REGION", this.getRegion(),
                         "FRAME_SPLITTER_THREADS", "1",
                         "IMAGE_PUBLISHER_THREADS", "3",
-                        "QUEUE_NAME", queue.getQueueName()
+                        "QUEUE_NAME", queue.getQueueName(),
+                        "CHECKPOINT_DIR", STATE_PATH + "/checkpoints",
+                        "LEASE_DIR", STATE_PATH + "/leases"
                 )).queue(queue)
                 .desiredTaskCount(1)
-                .maxScalingCapacity(1)
+                .maxScalingCapacity(4)
+                // EFS volumes need Fargate platform 1.4.0
+                .platformVersion(FargatePlatformVersion.VERSION1_4)
                 .memoryLimitMiB(4096)
                 .cpu(512)
                 .vpc(vpc)
                 .build();
 
+        fargateService.getTaskDefinition().addVolume(Volume.builder()
+                .name(STATE_VOLUME)
+                .efsVolumeConfiguration(EfsVolumeConfiguration.builder()
+                        .fileSystemId(stateFileSystem.getFileSystemId())
+                        .transitEncryption("ENABLED")
+                        .build())
+                .build());
+        fargateService.getTaskDefinition().getDefaultContainer().addMountPoints(MountPoint.builder()
+                .sourceVolume(STATE_VOLUME)
+                .containerPath(STATE_PATH)
+                .readOnly(false)
+                .build());
+        stateFileSystem.getConnections().allowDefaultPortFrom(fargateService.getService());
+
         fargateService.getTaskDefinition().addToTaskRolePolicy(PolicyStatement.Builder.create()
                 .actions(asList(
                         "kinesisvideo:Get*",
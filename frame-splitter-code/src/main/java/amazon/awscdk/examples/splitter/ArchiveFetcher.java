@@ -0,0 +1,58 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches fragments of archived video for {@link ProcessingTask}s processing {@link ArchiveSelection}s.
+ * Fetch threads are shared by all tasks, so the limit of concurrent GetMediaForFragmentList requests applies to the whole process.
+ * Clients and data endpoints come from {@link KinesisVideoClientRegistry}, they are looked up on fetch threads as well.
+ */
+public class ArchiveFetcher implements AutoCloseable {
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final KinesisVideoClientRegistry clientRegistry;
+    private final ExecutorService executor;
+    private final int maxConcurrentFetches;
+
+    /**
+     * @param maxConcurrentFetches - number of fragments fetched at the same time, by all tasks and by a single task
+     */
+    public ArchiveFetcher(KinesisVideoClientRegistry clientRegistry, int maxConcurrentFetches) {
+        if (maxConcurrentFetches <= 0) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be > 0");
+        }
+        this.clientRegistry = clientRegistry;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        this.executor = Executors.newFixedThreadPool(maxConcurrentFetches, runnable -> {
+            Thread thread = new Thread(runnable, "archive-fetch-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Validates the selection and starts listing its fragments in the background
+     * @return fragments of the selection, must be closed by the caller
+     * @throws IllegalArgumentException when selection has neither a valid time range nor fragment numbers
+     */
+    public ArchivedFragments open(String streamARN, ArchiveSelection selection) {
+        boolean hasFragments = selection.getFragmentNumbers() != null && !selection.getFragmentNumbers().isEmpty();
+        boolean hasRange = selection.getStartTimestampMillis() != null && selection.getEndTimestampMillis() != null;
+        if (hasFragments == hasRange) {
+            throw new IllegalArgumentException("Either fragmentNumbers or startTimestampMillis and endTimestampMillis must be given");
+        }
+        if (hasRange && selection.getStartTimestampMillis() >= selection.getEndTimestampMillis()) {
+            throw new IllegalArgumentException("startTimestampMillis must be before endTimestampMillis");
+        }
+        return new ArchivedFragments(streamARN, clientRegistry, selection, executor, maxConcurrentFetches);
+    }
+
+    /**
+     * Clients are closed with the registry
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
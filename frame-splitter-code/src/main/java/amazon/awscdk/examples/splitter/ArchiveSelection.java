@@ -0,0 +1,48 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.List;
+
+/**
+ * Part of {@link ProcessingRequest} selecting archived video instead of tailing the live stream.
+ * Either a producer time range or an explicit list of fragments is given.
+ * Example: <code>{ "startTimestampMillis": 1609459200000, "endTimestampMillis": 1609462800000 }</code>
+ * or <code>{ "fragmentNumbers": ["91343852333181432392682062607743920146264772217"] }</code>
+ */
+public class ArchiveSelection {
+    /**
+     * Inclusive start of the range, frames before it are not published
+     */
+    private Long startTimestampMillis;
+    /**
+     * Exclusive end of the range, frames from it on are not published
+     */
+    private Long endTimestampMillis;
+    /**
+     * Fragments processed in the given order, all their frames are published
+     */
+    private List<String> fragmentNumbers;
+
+    public Long getStartTimestampMillis() {
+        return startTimestampMillis;
+    }
+
+    public void setStartTimestampMillis(Long startTimestampMillis) {
+        this.startTimestampMillis = startTimestampMillis;
+    }
+
+    public Long getEndTimestampMillis() {
+        return endTimestampMillis;
+    }
+
+    public void setEndTimestampMillis(Long endTimestampMillis) {
+        this.endTimestampMillis = endTimestampMillis;
+    }
+
+    public List<String> getFragmentNumbers() {
+        return fragmentNumbers;
+    }
+
+    public void setFragmentNumbers(List<String> fragmentNumbers) {
+        this.fragmentNumbers = fragmentNumbers;
+    }
+}
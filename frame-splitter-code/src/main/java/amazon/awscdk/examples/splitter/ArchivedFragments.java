@@ -0,0 +1,211 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.KinesisVideoArchivedMediaClient;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.Fragment;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.FragmentSelector;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.FragmentSelectorType;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.GetMediaForFragmentListRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.GetMediaForFragmentListResponse;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.ListFragmentsRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.ListFragmentsResponse;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.TimestampRange;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Fragments of a single {@link ArchiveSelection}. Every fragment is fetched with its own GetMediaForFragmentList request,
+ * so it is a self-contained MKV processed independently of the others. Following fragments are fetched in parallel
+ * while the current one is processed, up to the concurrency limit, and are returned in order.
+ * The client is acquired and the time range is listed on a fetch thread, so neither the thread receiving requests
+ * nor the thread processing the task waits for it, see {@link #isReady()}.
+ * Not thread safe, used by the thread processing the task.
+ */
+public class ArchivedFragments implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ArchivedFragments.class);
+    private static final long MAX_LIST_RESULTS = 1000;
+
+    private final String streamARN;
+    private final KinesisVideoClientRegistry clientRegistry;
+    private final ArchiveSelection selection;
+    private final ExecutorService executor;
+    private final int maxConcurrentFetches;
+    private final Future<List<String>> listing;
+    private final Deque<Future<byte[]>> fetching = new ArrayDeque<>();
+    private KinesisVideoClientRegistry.ClientLease<KinesisVideoArchivedMediaClient> lease;
+    private boolean closed;
+    private Iterator<String> remaining;
+
+    ArchivedFragments(String streamARN, KinesisVideoClientRegistry clientRegistry, ArchiveSelection selection, ExecutorService executor, int maxConcurrentFetches) {
+        this.streamARN = streamARN;
+        this.clientRegistry = clientRegistry;
+        this.selection = selection;
+        this.executor = executor;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        this.listing = executor.submit(this::list);
+    }
+
+    /**
+     * @return true when {@link #hasNext()} and {@link #next()} return without waiting for the network
+     */
+    public boolean isReady() throws InterruptedException {
+        if (!listing.isDone()) {
+            return false;
+        }
+        return !hasNext() || fetching.peek().isDone();
+    }
+
+    /**
+     * Waits until fragments of the time range are listed on the first call
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean hasNext() throws InterruptedException {
+        if (remaining == null) {
+            List<String> fragmentNumbers = result(listing);
+            LOG.info("Processing " + fragmentNumbers.size() + " archived fragments of stream " + streamARN);
+            remaining = fragmentNumbers.iterator();
+        }
+        fetchAhead();
+        return !fetching.isEmpty();
+    }
+
+    /**
+     * Waits until the next fragment is fetched
+     * @return MKV data of the fragment
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public InputStream next() throws InterruptedException {
+        if (!hasNext()) {
+            throw new IllegalStateException("No more fragments");
+        }
+        Future<byte[]> fragment = fetching.poll();
+        fetchAhead();
+        return new ByteArrayInputStream(result(fragment));
+    }
+
+    /**
+     * Start of the selected time range, frames before it are not published
+     */
+    public long startTimestampMillis() {
+        return selection.getStartTimestampMillis() != null ? selection.getStartTimestampMillis() : Long.MIN_VALUE;
+    }
+
+    /**
+     * End of the selected time range, frames from it on are not published
+     */
+    public long endTimestampMillis() {
+        return selection.getEndTimestampMillis() != null ? selection.getEndTimestampMillis() : Long.MAX_VALUE;
+    }
+
+    private void fetchAhead() {
+        while (fetching.size() < maxConcurrentFetches && remaining.hasNext()) {
+            String fragmentNumber = remaining.next();
+            fetching.add(executor.submit(() -> fetch(fragmentNumber)));
+        }
+    }
+
+    private static <T> T result(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs on a fetch thread, the lease is released by {@link #close()} also when it is called before the lease is acquired
+     */
+    private List<String> list() {
+        KinesisVideoClientRegistry.ClientLease<KinesisVideoArchivedMediaClient> acquired = clientRegistry.acquireArchivedMediaClient(streamARN);
+        synchronized (this) {
+            if (closed) {
+                acquired.close();
+                throw new CancellationException("Closed before listing fragments of stream " + streamARN);
+            }
+            lease = acquired;
+        }
+        return selection.getFragmentNumbers() != null ? selection.getFragmentNumbers() : listFragments(acquired.client());
+    }
+
+    private synchronized KinesisVideoArchivedMediaClient client() {
+        return lease.client();
+    }
+
+    private byte[] fetch(String fragmentNumber) {
+        LOG.debug("Fetching fragment " + fragmentNumber + " of stream " + streamARN);
+        GetMediaForFragmentListRequest request = GetMediaForFragmentListRequest.builder()
+                .streamARN(streamARN)
+                .fragments(fragmentNumber)
+                .build();
+        try (ResponseInputStream<GetMediaForFragmentListResponse> media = client().getMediaForFragmentList(request)) {
+            return media.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fetch fragment " + fragmentNumber + " of stream " + streamARN, e);
+        }
+    }
+
+    /**
+     * ListFragments returns fragments in no particular order, so they are sorted by producer timestamp
+     */
+    private List<String> listFragments(KinesisVideoArchivedMediaClient client) {
+        FragmentSelector selector = FragmentSelector.builder()
+                .fragmentSelectorType(FragmentSelectorType.PRODUCER_TIMESTAMP)
+                .timestampRange(TimestampRange.builder()
+                        .startTimestamp(Instant.ofEpochMilli(selection.getStartTimestampMillis()))
+                        .endTimestamp(Instant.ofEpochMilli(selection.getEndTimestampMillis()))
+                        .build())
+                .build();
+        List<Fragment> fragments = new ArrayList<>();
+        String nextToken = null;
+        do {
+            ListFragmentsResponse response = client.listFragments(ListFragmentsRequest.builder()
+                    .streamARN(streamARN)
+                    .maxResults(MAX_LIST_RESULTS)
+                    .nextToken(nextToken)
+                    .fragmentSelector(selector)
+                    .build());
+            fragments.addAll(response.fragments());
+            nextToken = response.nextToken();
+        } while (nextToken != null);
+        fragments.sort(Comparator.comparing(Fragment::producerTimestamp)
+                .thenComparing(fragment -> new BigInteger(fragment.fragmentNumber())));
+        List<String> fragmentNumbers = new ArrayList<>(fragments.size());
+        for (Fragment fragment : fragments) {
+            fragmentNumbers.add(fragment.fragmentNumber());
+        }
+        return fragmentNumbers;
+    }
+
+    /**
+     * Cancels listing and fetches of fragments which were not processed and releases the client
+     */
+    @Override
+    public void close() {
+        listing.cancel(true);
+        fetching.forEach(fragment -> fragment.cancel(true));
+        fetching.clear();
+        synchronized (this) {
+            closed = true;
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+}
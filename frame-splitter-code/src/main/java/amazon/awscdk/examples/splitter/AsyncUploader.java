@@ -0,0 +1,180 @@
+package amazon.awscdk.examples.splitter;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Uploads objects using {@link S3AsyncClient}. Number of PUT requests in flight is limited, callers wait for a free slot.
+ * Failed requests are retried with exponential backoff and full jitter.
+ * Shared by all {@link ImagePublisher}s, so the limit applies to the whole process.
+ */
+public class AsyncUploader implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncUploader.class);
+    private static final long BASE_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    /**
+     * Exponent above which the backoff is always capped, larger shifts would overflow
+     */
+    private static final int MAX_BACKOFF_EXPONENT = 20;
+
+    private final S3AsyncClient s3Client;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Semaphore permits;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "async-uploader-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AsyncUploader(S3AsyncClient s3Client, int maxInFlight, int maxAttempts) {
+        if (maxInFlight <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxInFlight and maxAttempts must be > 0");
+        }
+        this.s3Client = s3Client;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts upload, waiting until number of requests in flight drops below the limit.
+     * @param request - put request
+     * @param bytes - object content, must not be modified until callback is invoked
+     * @param callback - invoked once with response or with the last error, the slot is freed even when it throws
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    public void upload(PutObjectRequest request, ByteBuffer bytes, BiConsumer<PutObjectResponse, Throwable> callback) throws InterruptedException {
+        permits.acquire();
+        attempt(request, bytes, 1, (response, error) -> {
+            permits.release();
+            try {
+                callback.accept(response, error);
+            } catch (RuntimeException e) {
+                LOG.error("Upload callback of " + request.key() + " failed", e);
+            }
+        });
+    }
+
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * Completion is invoked exactly once, also when the client or the retry scheduler throws instead of failing the future
+     */
+    private void attempt(PutObjectRequest request, ByteBuffer bytes, int attempt, BiConsumer<PutObjectResponse, Throwable> completion) {
+        CompletableFuture<PutObjectResponse> future;
+        try {
+            future = s3Client.putObject(request, new ByteBufferRequestBody(bytes));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> {
+            if (error != null && attempt < maxAttempts && isRetryable(error)) {
+                long backoff = ThreadLocalRandom.current().nextLong(maxBackoffMillis(attempt) + 1);
+                LOG.warn("Upload of " + request.key() + " failed, attempt " + attempt + ", retrying in " + backoff + " ms: " + error.getMessage());
+                try {
+                    retryScheduler.schedule(() -> attempt(request, bytes, attempt + 1, completion), backoff, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RuntimeException e) {
+                    error.addSuppressed(e);
+                }
+            }
+            completion.accept(response, error);
+        });
+    }
+
+    /**
+     * Upper bound of the jittered backoff after given attempt
+     */
+    static long maxBackoffMillis(int attempt) {
+        return attempt >= MAX_BACKOFF_EXPONENT ? MAX_BACKOFF_MILLIS : Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof S3Exception) {
+            int status = ((S3Exception) cause).statusCode();
+            return status >= 500 || status == 429 || status == 408;
+        }
+        return true;
+    }
+
+    /**
+     * Waits for uploads in flight to finish
+     */
+    @Override
+    public void close() {
+        try {
+            if (permits.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+                permits.release(maxInFlight);
+            } else {
+                LOG.warn("Uploads did not finish in time, still in flight: " + inFlight());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * Request body publishing read-only view of the buffer, so the content is not copied for every attempt
+     */
+    private static class ByteBufferRequestBody implements AsyncRequestBody {
+        private final ByteBuffer bytes;
+
+        ByteBufferRequestBody(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public Optional<Long> contentLength() {
+            return Optional.of((long) bytes.remaining());
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            AtomicBoolean done = new AtomicBoolean(false);
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    if (done.get()) {
+                        return;
+                    }
+                    if (n <= 0) {
+                        done.set(true);
+                        subscriber.onError(new IllegalArgumentException("Demand must be positive"));
+                    } else if (done.compareAndSet(false, true)) {
+                        subscriber.onNext(bytes.asReadOnlyBuffer());
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    done.set(true);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package amazon.awscdk.examples.splitter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limits amount of decoded images waiting for {@link ImagePublisher} threads.
+ */
+public class BackpressureSettings {
+    public enum Unit {
+        FRAMES,
+        BYTES
+    }
+
+    public static final long DEFAULT_CAPACITY = 16;
+
+    private final long capacity;
+    private final Unit unit;
+    private final BoundedHandoff.OverflowPolicy policy;
+
+    public BackpressureSettings(long capacity, Unit unit, BoundedHandoff.OverflowPolicy policy) {
+        this.capacity = capacity;
+        this.unit = unit;
+        this.policy = policy;
+    }
+
+    public static BackpressureSettings defaults() {
+        return new BackpressureSettings(DEFAULT_CAPACITY, Unit.FRAMES, BoundedHandoff.OverflowPolicy.BLOCK);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public BoundedHandoff.OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Creates handoff sized according to these settings
+     * @param imageExtractor - returns image held by queued element
+     * @param dropListener - invoked with every dropped element
+     */
+    public <T> BoundedHandoff<T> createHandoff(Function<T, BufferedImage> imageExtractor, Consumer<T> dropListener) {
+        ToLongFunction<T> weigher = unit == Unit.FRAMES
+                ? element -> 1L
+                : element -> imageBytes(imageExtractor.apply(element));
+        return new BoundedHandoff<>(capacity, weigher, policy, dropListener);
+    }
+
+    /**
+     * Estimates heap occupied by image pixel data
+     */
+    public static long imageBytes(BufferedImage image) {
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    @Override
+    public String toString() {
+        return capacity + " " + unit + " " + policy;
+    }
+}
@@ -0,0 +1,256 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.cli.*;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline mode splitting local MKV files into images without SQS and Kinesis Video.
+ * Files are memory mapped and processed in parallel, each one through the same {@link FramePublishingDecoder} path
+ * as live streams. Images are written to S3 bucket or local directory, below a directory named after the file.
+ * Renditions listed in the settings get their own directories inside it.
+ */
+public class BatchFrameSplitter {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchFrameSplitter.class);
+    private static final String REGION = "REGION";
+    private static final String MKV_EXTENSION = ".mkv";
+
+    private final FrameSink sink;
+    private final String directory;
+    private final int fileThreads;
+    private final int imagePublisherThreads;
+    private final ProcessingRequest settings;
+    private final ImageConverter imageConverter;
+    private final StreamMetrics metrics = new StreamMetrics();
+
+    /**
+     * @param sink - destination of images
+     * @param directory - prefix of image keys, images of file.mkv are stored below directory/file/
+     * @param fileThreads - number of files processed at the same time
+     * @param imagePublisherThreads - number of image publisher threads of every file
+     * @param settings - sampling, image, encoder, output and rendition settings, stream and bucket are ignored
+     */
+    public BatchFrameSplitter(FrameSink sink, String directory, int fileThreads, int imagePublisherThreads, ProcessingRequest settings) {
+        if (fileThreads <= 0 || imagePublisherThreads <= 0) {
+            throw new IllegalArgumentException("fileThreads and imagePublisherThreads must be > 0");
+        }
+        this.sink = sink;
+        this.directory = StringUtils.isEmpty(directory) || directory.endsWith("/") ? StringUtils.defaultString(directory) : directory + "/";
+        this.fileThreads = fileThreads;
+        this.imagePublisherThreads = imagePublisherThreads;
+        this.settings = settings;
+        this.imageConverter = ImageConverter.forDecoding(settings.effectiveRenditions());
+    }
+
+    /**
+     * Splits given files, blocks until all of them are processed
+     * @param files - MKV files
+     * @return number of files which failed
+     */
+    public int process(List<Path> files) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(fileThreads, Math.max(1, files.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(executorService.submit(() -> {
+                    processFile(file);
+                    return null;
+                }));
+            }
+            int failed = 0;
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    LOG.error("Failed to split file: " + files.get(i), e.getCause());
+                }
+            }
+            return failed;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Counters of all processed files, a file is added once it finished
+     */
+    public StreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void processFile(Path file) throws IOException, MkvElementVisitException {
+        LOG.info("Splitting file: " + file);
+        long start = System.nanoTime();
+        // Files processed at the same time have their own counters, so the log of every file counts only its images
+        StreamMetrics fileMetrics = new StreamMetrics();
+        ImagePublisher imagePublisher = new ImagePublisher(sink, renditionsOf(file), imagePublisherThreads,
+                BackpressureSettings.defaults(), settings.getOutput(), fileMetrics);
+        try (MappedFileByteSource source = new MappedFileByteSource(file)) {
+            FramePublishingDecoder frameDecoder = new FramePublishingDecoder(imagePublisher, fragment -> { },
+                    new FrameSampler(settings.getSampling()), null, imageConverter);
+            StreamingMkvReader.createDefault(source).apply(new FrameSliceVisitor(frameDecoder, 1L));
+            frameDecoder.flush();
+        } finally {
+            imagePublisher.close();
+            metrics.add(fileMetrics);
+        }
+        LOG.info("Finished file: " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms, images published: "
+                + fileMetrics.getFramesPublished());
+    }
+
+    /**
+     * Renditions of the settings moved below the directory of the file
+     */
+    private List<Rendition> renditionsOf(Path file) {
+        String fileDirectory = directory + baseName(file);
+        boolean single = settings.getRenditions() == null || settings.getRenditions().isEmpty();
+        List<Rendition> renditions = new ArrayList<>();
+        for (Rendition rendition : settings.effectiveRenditions()) {
+            Rendition fileRendition = new Rendition();
+            fileRendition.setS3Directory(single ? fileDirectory : fileDirectory + "/" + rendition.getS3Directory());
+            fileRendition.setImage(rendition.getImage());
+            fileRendition.setEncoder(rendition.getEncoder());
+            renditions.add(fileRendition);
+        }
+        return renditions;
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        return name.toLowerCase().endsWith(MKV_EXTENSION) ? name.substring(0, name.length() - MKV_EXTENSION.length()) : name;
+    }
+
+    /**
+     * Expands directories to MKV files they contain, sorted by name
+     */
+    static List<Path> collectFiles(List<String> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs) {
+            Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    files.addAll(children
+                            .filter(Files::isRegularFile)
+                            .filter(child -> child.getFileName().toString().toLowerCase().endsWith(MKV_EXTENSION))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else if (Files.isRegularFile(path)) {
+                files.add(path);
+            } else {
+                throw new IllegalArgumentException("Input file not found: " + input);
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) throws ParseException, IOException, InterruptedException {
+        CommandLineParser parser = new DefaultParser();
+        Option inputOption = Option.builder("i").required().longOpt("input").hasArgs().type(String.class)
+                .desc("MKV files or directories containing MKV files").build();
+        Option outputDirOption = Option.builder("o").required(false).longOpt("output-dir").hasArg().type(String.class)
+                .desc("Local directory where images are written. Images are uploaded to S3 bucket when not set").build();
+        Option bucketOption = Option.builder("b").required(false).longOpt("bucket").hasArg().type(String.class)
+                .desc("S3 bucket where images are uploaded").build();
+        Option directoryOption = Option.builder("d").required(false).longOpt("directory").hasArg().type(String.class)
+                .desc("Prefix of image keys, images of every file are stored below a directory named after the file").build();
+        Option settingsOption = Option.builder("s").required(false).longOpt("settings").hasArg().type(String.class)
+                .desc("JSON file with sampling, image, encoder, output and rendition settings in processing request format").build();
+        Option fileThreadsOption = Option.builder("ft").required(false).longOpt("file-threads").hasArg().type(Integer.class)
+                .desc("Number of files processed at the same time. Defaults to number of processors").build();
+        Option imagePublisherThreadsOption = Option.builder("pt").required(false).longOpt("publisher-threads").hasArg().type(Integer.class)
+                .desc("Number of image publisher threads of every file").build();
+        Option profileOption = Option.builder("p").required(false).longOpt("profile").hasArg().type(String.class)
+                .desc("AWS credentials profile").build();
+        Option regionOption = Option.builder("r").required(false).longOpt("region").hasArg().type(String.class)
+                .desc("AWS region where S3 bucket is located").build();
+
+        Options options = new Options()
+                .addOption(inputOption)
+                .addOption(outputDirOption)
+                .addOption(bucketOption)
+                .addOption(directoryOption)
+                .addOption(settingsOption)
+                .addOption(fileThreadsOption)
+                .addOption(imagePublisherThreadsOption)
+                .addOption(profileOption)
+                .addOption(regionOption);
+        CommandLine commandLine = parser.parse(options, args);
+
+        List<Path> files = collectFiles(List.of(commandLine.getOptionValues(inputOption.getOpt())));
+        String outputDir = commandLine.getOptionValue(outputDirOption.getOpt());
+        String bucket = commandLine.getOptionValue(bucketOption.getOpt());
+        String directory = commandLine.getOptionValue(directoryOption.getOpt(), "");
+        int fileThreads = Integer.parseInt(commandLine.getOptionValue(fileThreadsOption.getOpt(), String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int imagePublisherThreads = Integer.parseInt(commandLine.getOptionValue(imagePublisherThreadsOption.getOpt(), "1"));
+        String settingsFile = commandLine.getOptionValue(settingsOption.getOpt());
+        ProcessingRequest settings = settingsFile != null
+                ? new ObjectMapper().readValue(Paths.get(settingsFile).toFile(), ProcessingRequest.class)
+                : new ProcessingRequest();
+        if (StringUtils.isBlank(outputDir) == StringUtils.isBlank(bucket)) {
+            throw new IllegalArgumentException("Exactly one of output directory and bucket is required");
+        }
+
+        FrameSink sink;
+        S3Client s3Client = null;
+        if (StringUtils.isNotBlank(outputDir)) {
+            sink = new LocalDirectorySink(Paths.get(outputDir));
+        } else {
+            String profile = commandLine.getOptionValue(profileOption.getOpt());
+            String regionStr = commandLine.getOptionValue(regionOption.getOpt(), System.getenv(REGION));
+            if (StringUtils.isBlank(regionStr)) {
+                throw new IllegalArgumentException("Region is required for S3 output");
+            }
+            AwsCredentialsProvider credentialsProvider = profile != null ? ProfileCredentialsProvider.create(profile) : DefaultCredentialsProvider.create();
+            s3Client = S3Client.builder().credentialsProvider(credentialsProvider).region(Region.of(regionStr)).build();
+            sink = new S3FrameSink(s3Client, null, bucket);
+        }
+
+        LOG.info(StringUtils.joinWith(" ",
+                "Batch Frame Splitter params:",
+                "files:", files.size(), "|",
+                "output:", StringUtils.isNotBlank(outputDir) ? outputDir : "s3://" + bucket, "|",
+                "directory:", directory, "|",
+                "fileThreads:", fileThreads, "|",
+                "imagePublisherThreads:", imagePublisherThreads));
+
+        BatchFrameSplitter batchFrameSplitter = new BatchFrameSplitter(sink, directory, fileThreads, imagePublisherThreads, settings);
+        long start = System.nanoTime();
+        int failed = batchFrameSplitter.process(files);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        StreamMetrics metrics = batchFrameSplitter.getMetrics();
+        LOG.info("Split " + (files.size() - failed) + " of " + files.size() + " files in " + millis + " ms, images published: "
+                + metrics.getFramesPublished() + ", failed: " + metrics.getFramesFailed()
+                + ", images per second: " + metrics.getFramesPublished() * 1000 / millis);
+        sink.close();
+        if (s3Client != null) {
+            s3Client.close();
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
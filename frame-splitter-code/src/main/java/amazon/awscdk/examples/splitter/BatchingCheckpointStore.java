@@ -0,0 +1,86 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link CheckpointStore} collecting checkpoints in memory and writing them to the delegate
+ * once every N saved fragments or when T elapsed since the last write, whichever comes first.
+ * After a crash processing resumes at most N fragments or T before the last processed one.
+ */
+public class BatchingCheckpointStore implements CheckpointStore {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingCheckpointStore.class);
+    private final CheckpointStore delegate;
+    private final int maxFragments;
+    private final Duration maxDelay;
+    private final Clock clock;
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    private int pendingFragments;
+    private long lastFlushMillis;
+
+    /**
+     * @param delegate - store checkpoints are written to
+     * @param maxFragments - number of saved fragments triggering write, 1 to write every fragment
+     * @param maxDelay - maximum time checkpoint stays in memory while new fragments are saved
+     */
+    public BatchingCheckpointStore(CheckpointStore delegate, int maxFragments, Duration maxDelay) {
+        this(delegate, maxFragments, maxDelay, Clock.systemUTC());
+    }
+
+    BatchingCheckpointStore(CheckpointStore delegate, int maxFragments, Duration maxDelay, Clock clock) {
+        if (maxFragments <= 0 || maxDelay.isNegative()) {
+            throw new IllegalArgumentException("maxFragments must be > 0 and maxDelay must be >= 0");
+        }
+        this.delegate = delegate;
+        this.maxFragments = maxFragments;
+        this.maxDelay = maxDelay;
+        this.clock = clock;
+        this.lastFlushMillis = clock.millis();
+    }
+
+    @Override
+    public synchronized Optional<String> load(String streamARN) {
+        String fragmentNumber = pending.get(streamARN);
+        return fragmentNumber != null ? Optional.of(fragmentNumber) : delegate.load(streamARN);
+    }
+
+    @Override
+    public synchronized void save(String streamARN, String fragmentNumber) {
+        pending.put(streamARN, fragmentNumber);
+        pendingFragments++;
+        if (pendingFragments >= maxFragments || clock.millis() - lastFlushMillis >= maxDelay.toMillis()) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        Iterator<Map.Entry<String, String>> checkpoints = pending.entrySet().iterator();
+        while (checkpoints.hasNext()) {
+            Map.Entry<String, String> checkpoint = checkpoints.next();
+            try {
+                delegate.save(checkpoint.getKey(), checkpoint.getValue());
+                checkpoints.remove();
+            } catch (RuntimeException e) {
+                // Kept in memory and retried on the next flush
+                LOG.error("Failed to save checkpoint of stream " + checkpoint.getKey(), e);
+            }
+        }
+        pendingFragments = 0;
+        lastFlushMillis = clock.millis();
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        delegate.close();
+    }
+}
@@ -0,0 +1,210 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded queue used to hand elements over from a producing thread to consuming threads.
+ * Capacity is expressed in units computed by the weigher (e.g. 1 per frame or number of bytes per frame).
+ * When the queue is full the configured {@link OverflowPolicy} decides whether the producer waits or which element is dropped.
+ * A single element heavier than the whole capacity is still accepted when the queue is empty, so the producer never gets stuck.
+ *
+ * @param <T> type of queued elements
+ */
+public class BoundedHandoff<T> {
+    public enum OverflowPolicy {
+        /**
+         * Producer waits until consumers free enough capacity
+         */
+        BLOCK,
+        /**
+         * Oldest queued elements are discarded to make room for the new one
+         */
+        DROP_OLDEST,
+        /**
+         * New element is discarded
+         */
+        DROP_NEWEST
+    }
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final long capacity;
+    private final ToLongFunction<T> weigher;
+    private final OverflowPolicy policy;
+    private final Consumer<T> dropListener;
+    private long weight;
+    private long dropped;
+    private boolean closed;
+
+    public BoundedHandoff(long capacity, ToLongFunction<T> weigher, OverflowPolicy policy) {
+        this(capacity, weigher, policy, element -> {
+        });
+    }
+
+    /**
+     * @param dropListener - invoked with every element discarded because of overflow policy
+     */
+    public BoundedHandoff(long capacity, ToLongFunction<T> weigher, OverflowPolicy policy, Consumer<T> dropListener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.weigher = weigher;
+        this.policy = policy;
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * Adds element to the queue applying overflow policy when there is no room for it.
+     * @param element - element to add
+     * @return true if element was queued, false if it was dropped or the handoff is closed
+     * @throws InterruptedException if interrupted while waiting for capacity
+     */
+    public boolean offer(T element) throws InterruptedException {
+        long elementWeight = weigher.applyAsLong(element);
+        lock.lockInterruptibly();
+        try {
+            while (!closed && !queue.isEmpty() && weight + elementWeight > capacity) {
+                switch (policy) {
+                    case BLOCK:
+                        notFull.await();
+                        break;
+                    case DROP_OLDEST:
+                        T oldest = queue.pollFirst();
+                        weight -= weigher.applyAsLong(oldest);
+                        dropped++;
+                        dropListener.accept(oldest);
+                        break;
+                    case DROP_NEWEST:
+                        dropped++;
+                        dropListener.accept(element);
+                        return false;
+                }
+            }
+            if (closed) {
+                return false;
+            }
+            queue.addLast(element);
+            weight += elementWeight;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the oldest element, waiting for one if necessary.
+     * @return next element or null once the handoff is closed and drained
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            T element = queue.pollFirst();
+            if (element != null) {
+                weight -= weigher.applyAsLong(element);
+                notFull.signalAll();
+            }
+            return element;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the oldest element, waiting at most given time for one.
+     * @param timeoutNanos - maximum time to wait, 0 to return immediately
+     * @return next element, null once the handoff is closed and drained or when the time elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public T poll(long timeoutNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = timeoutNanos;
+            while (queue.isEmpty() && !closed && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            T element = queue.pollFirst();
+            if (element != null) {
+                weight -= weigher.applyAsLong(element);
+                notFull.signalAll();
+            }
+            return element;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until {@link #take()} would return without waiting, because an element is queued or the handoff is closed
+     * @param timeoutNanos - maximum time to wait
+     * @return false if the time elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTakeable(long timeoutNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = timeoutNanos;
+            while (queue.isEmpty() && !closed) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting new elements. Already queued elements can still be taken.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long weight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long droppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.ebml.ParserByteSource;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ParserByteSource} reading GetMedia responses in bulk into a large reusable buffer. Replaces
+ * {@code InputStreamParserByteSource}, whose synchronized single byte reads and mark/reset end of stream checks
+ * show up in parse profiles. Single byte reads of the parser are served from the buffer without calls to the stream.
+ * <p>
+ * Buffers are heap buffers, because the parser copies element content into a heap buffer anyway and heap to heap copies
+ * are plain array copies. They are taken from a shared pool and returned on {@link #close()}, so reconnecting streams
+ * don't allocate new ones.
+ */
+public class BufferedMediaByteSource implements ParserByteSource, AutoCloseable {
+    static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final Queue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final InputStream input;
+    private ByteBuffer buffer;
+    private boolean endOfStream;
+    private long readNanos;
+
+    public BufferedMediaByteSource(InputStream input) {
+        this.input = input;
+        this.buffer = acquire();
+    }
+
+    @Override
+    public int readByte() {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int available() {
+        if (buffer.hasRemaining() || endOfStream) {
+            return buffer.remaining();
+        }
+        try {
+            return input.available();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to check available media bytes", e);
+        }
+    }
+
+    @Override
+    public int readBytes(ByteBuffer dest, int length) {
+        Validate.isTrue(dest.remaining() >= length);
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int read = Math.min(length, buffer.remaining());
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(slice.position() + read);
+        dest.put(slice);
+        buffer.position(buffer.position() + read);
+        return read;
+    }
+
+    @Override
+    public boolean eof() {
+        return !ensureAvailable();
+    }
+
+    /**
+     * Total time spent reading the input stream, so callers can tell parsing from waiting for data
+     */
+    public long readNanos() {
+        return readNanos;
+    }
+
+    /**
+     * Returns the buffer to the pool, input stream is closed by its owner
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Refills the buffer once it is consumed. Blocks for the first read only, then takes whatever else the stream
+     * has already received, up to the buffer size.
+     * @return false at the end of stream
+     */
+    private boolean ensureAvailable() {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        if (endOfStream) {
+            return false;
+        }
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset();
+        int filled = 0;
+        long readStart = System.nanoTime();
+        try {
+            do {
+                int read = input.read(array, offset + filled, array.length - offset - filled);
+                if (read < 0) {
+                    endOfStream = true;
+                    break;
+                }
+                filled += read;
+            } while (filled < buffer.capacity() && input.available() > 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read media", e);
+        } finally {
+            readNanos += System.nanoTime() - readStart;
+        }
+        buffer.clear();
+        buffer.limit(filled);
+        return filled > 0;
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer pooled = POOL.poll();
+        if (pooled != null) {
+            POOLED.decrementAndGet();
+        }
+        ByteBuffer buffer = pooled != null ? pooled : ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.clear().limit(0);
+        return buffer;
+    }
+
+    private static void release(ByteBuffer buffer) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            POOL.add(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.Optional;
+
+/**
+ * Stores number of the last processed fragment of every stream, so processing can resume after restart
+ * instead of starting from the beginning of stream retention period.
+ * Implementations must be thread safe, a single store is shared by all {@link ProcessingTask}s.
+ */
+public interface CheckpointStore extends AutoCloseable {
+
+    /**
+     * @param streamARN - stream ARN
+     * @return number of the last processed fragment, empty if stream was never checkpointed
+     */
+    Optional<String> load(String streamARN);
+
+    /**
+     * Records fragment as processed. Depending on implementation it may be persisted later, see {@link #flush()}.
+     * @param streamARN - stream ARN
+     * @param fragmentNumber - number of the processed fragment
+     */
+    void save(String streamARN, String fragmentNumber);
+
+    /**
+     * Persists checkpoints which were saved but not yet written
+     */
+    void flush();
+
+    @Override
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,101 @@
+package amazon.awscdk.examples.splitter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Detects near duplicate frames of a static scene before they are encoded and uploaded.
+ * Every image is reduced to a signature of {@value #GRID}x{@value #GRID} block luma averages, sampled on a sparse
+ * pixel grid so computing it costs a small fraction of encoding. An image is a duplicate when the mean absolute difference
+ * of its signature to the signature of the last published image is below the threshold. Suppressed images don't replace
+ * the reference, so a slow change is published once it adds up over several frames.
+ * <p>
+ * Not thread safe, images of a stream must be checked in frame order.
+ */
+public class DuplicateFilter {
+    static final int GRID = 16;
+    /**
+     * Distance between sampled pixels inside a block in both directions
+     */
+    private static final int SAMPLE_STEP = 4;
+
+    private final double threshold;
+    private int[] reference;
+
+    /**
+     * @param threshold - mean luma difference on 0-255 scale below which images are duplicates
+     */
+    public DuplicateFilter(double threshold) {
+        if (!(threshold > 0 && threshold <= 255)) {
+            throw new IllegalArgumentException("duplicateThreshold must be > 0 and <= 255");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return true when the image should be suppressed, otherwise it becomes the new reference
+     */
+    public boolean isDuplicate(BufferedImage image) {
+        int[] signature = signature(image);
+        if (reference != null && difference(reference, signature) < threshold) {
+            return true;
+        }
+        reference = signature;
+        return false;
+    }
+
+    /**
+     * Mean absolute difference of two signatures
+     */
+    static double difference(int[] first, int[] second) {
+        long sum = 0;
+        for (int i = 0; i < first.length; i++) {
+            sum += Math.abs(first[i] - second[i]);
+        }
+        return (double) sum / first.length;
+    }
+
+    /**
+     * Average luma of every block in row order
+     */
+    static int[] signature(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] data = null;
+        int pixelStride = 0;
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            pixelStride = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? 1 : 3;
+        }
+        int[] signature = new int[GRID * GRID];
+        for (int blockY = 0; blockY < GRID; blockY++) {
+            int y0 = blockY * height / GRID;
+            int y1 = Math.max(y0 + 1, (blockY + 1) * height / GRID);
+            for (int blockX = 0; blockX < GRID; blockX++) {
+                int x0 = blockX * width / GRID;
+                int x1 = Math.max(x0 + 1, (blockX + 1) * width / GRID);
+                long sum = 0;
+                int count = 0;
+                for (int y = y0; y < y1; y += SAMPLE_STEP) {
+                    for (int x = x0; x < x1; x += SAMPLE_STEP) {
+                        sum += data != null ? luma(data, (y * width + x) * pixelStride, pixelStride) : luma(image.getRGB(x, y));
+                        count++;
+                    }
+                }
+                signature[blockY * GRID + blockX] = (int) (sum / count);
+            }
+        }
+        return signature;
+    }
+
+    private static int luma(byte[] data, int offset, int pixelStride) {
+        if (pixelStride == 1) {
+            return data[offset] & 0xFF;
+        }
+        return (29 * (data[offset] & 0xFF) + 150 * (data[offset + 1] & 0xFF) + 77 * (data[offset + 2] & 0xFF)) >> 8;
+    }
+
+    private static int luma(int rgb) {
+        return (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+    }
+}
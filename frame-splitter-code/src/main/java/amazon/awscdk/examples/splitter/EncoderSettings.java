@@ -0,0 +1,62 @@
+package amazon.awscdk.examples.splitter;
+
+/**
+ * Part of {@link ProcessingRequest} describing how images are encoded.
+ * Example: <code>{ "format": "JPEG", "quality": 0.8 }</code> or <code>{ "format": "PNG", "compressionLevel": 1 }</code>
+ */
+public class EncoderSettings {
+    public enum Format {
+        PNG("png", "image/png"),
+        JPEG("jpg", "image/jpeg");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private Format format = Format.PNG;
+    /**
+     * PNG deflate level from 0 (no compression, fastest) to 9 (best compression). Encoder default is used when not set.
+     */
+    private Integer compressionLevel;
+    /**
+     * JPEG quality from 0.0 to 1.0. Encoder default is used when not set.
+     */
+    private Float quality;
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public Integer getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(Integer compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public Float getQuality() {
+        return quality;
+    }
+
+    public void setQuality(Float quality) {
+        this.quality = quality;
+    }
+}
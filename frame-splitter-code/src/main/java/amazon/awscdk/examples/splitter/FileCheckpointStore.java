@@ -0,0 +1,73 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * {@link CheckpointStore} keeping every stream checkpoint in a separate file of a local directory.
+ * Files are replaced atomically, so a crash during write leaves the previous checkpoint intact.
+ * Every {@link #save(String, String)} writes the file, wrap the store with {@link BatchingCheckpointStore} to limit number of writes.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private static final Logger LOG = LoggerFactory.getLogger(FileCheckpointStore.class);
+    private final Path directory;
+
+    public FileCheckpointStore(Path directory) {
+        try {
+            this.directory = Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create checkpoint directory " + directory, e);
+        }
+    }
+
+    @Override
+    public Optional<String> load(String streamARN) {
+        try {
+            String fragmentNumber = new String(Files.readAllBytes(file(streamARN)), StandardCharsets.UTF_8).trim();
+            return fragmentNumber.isEmpty() ? Optional.empty() : Optional.of(fragmentNumber);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read checkpoint of stream " + streamARN, e);
+        }
+    }
+
+    @Override
+    public synchronized void save(String streamARN, String fragmentNumber) {
+        Path file = file(streamARN);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, fragmentNumber.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOG.debug("Checkpoint of stream " + streamARN + " saved: " + fragmentNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write checkpoint of stream " + streamARN, e);
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Stream ARNs contain ':' and '/', so file name is URL safe Base64 of the ARN
+     */
+    private Path file(String streamARN) {
+        return directory.resolve(Base64.getUrlEncoder().withoutPadding().encodeToString(streamARN.getBytes(StandardCharsets.UTF_8)));
+    }
+}
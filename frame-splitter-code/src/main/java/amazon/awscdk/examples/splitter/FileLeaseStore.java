@@ -0,0 +1,201 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link LeaseStore} keeping every lease and every owner heartbeat in a separate file of a directory.
+ * Operations hold an exclusive lock of the directory, so tasks sharing the directory on one host or on a file system
+ * with working locks (e.g. EFS) see consistent leases. Files are replaced atomically like in {@link FileCheckpointStore}.
+ */
+public class FileLeaseStore implements LeaseStore {
+    /**
+     * File locks are held by the whole process and can't be taken twice by one process,
+     * so stores of the same process serialize on this monitor first
+     */
+    private static final Object PROCESS_LOCK = new Object();
+    private static final String TMP_SUFFIX = ".tmp";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path leases;
+    private final Path owners;
+    private final Path lockFile;
+    private final Clock clock;
+
+    public FileLeaseStore(Path directory) {
+        this(directory, Clock.systemUTC());
+    }
+
+    FileLeaseStore(Path directory, Clock clock) {
+        try {
+            this.leases = Files.createDirectories(directory.resolve("leases"));
+            this.owners = Files.createDirectories(directory.resolve("owners"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create lease directory " + directory, e);
+        }
+        this.lockFile = directory.resolve(".lock");
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<StreamLease> acquire(String streamARN, String owner, String request, Duration ttl) {
+        return locked(() -> {
+            StreamLease lease = read(streamARN);
+            long now = clock.millis();
+            if (lease != null && !lease.isAvailable(now) && !owner.equals(lease.getOwner())) {
+                return Optional.empty();
+            }
+            StreamLease acquired = new StreamLease(streamARN, owner, now + ttl.toMillis(),
+                    request != null || lease == null ? request : lease.getRequest());
+            write(leases.resolve(encode(streamARN)), objectMapper.writeValueAsBytes(acquired));
+            return Optional.of(acquired);
+        });
+    }
+
+    @Override
+    public boolean renew(String streamARN, String owner, Duration ttl) {
+        return locked(() -> {
+            StreamLease lease = read(streamARN);
+            if (lease == null || !owner.equals(lease.getOwner())) {
+                return false;
+            }
+            lease.setExpiresAtMillis(clock.millis() + ttl.toMillis());
+            write(leases.resolve(encode(streamARN)), objectMapper.writeValueAsBytes(lease));
+            return true;
+        });
+    }
+
+    @Override
+    public void release(String streamARN, String owner) {
+        locked(() -> {
+            StreamLease lease = read(streamARN);
+            if (lease != null && owner.equals(lease.getOwner())) {
+                lease.setOwner(null);
+                write(leases.resolve(encode(streamARN)), objectMapper.writeValueAsBytes(lease));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(String streamARN, String owner) {
+        locked(() -> {
+            StreamLease lease = read(streamARN);
+            if (lease != null && owner.equals(lease.getOwner())) {
+                Files.deleteIfExists(leases.resolve(encode(streamARN)));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<StreamLease> list() {
+        return locked(() -> {
+            List<StreamLease> all = new ArrayList<>();
+            for (Path file : files(leases)) {
+                all.add(objectMapper.readValue(Files.readAllBytes(file), StreamLease.class));
+            }
+            return all;
+        });
+    }
+
+    @Override
+    public void heartbeat(String owner, Duration ttl) {
+        locked(() -> {
+            write(owners.resolve(encode(owner)), String.valueOf(clock.millis() + ttl.toMillis()).getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+    }
+
+    @Override
+    public void leave(String owner) {
+        locked(() -> Files.deleteIfExists(owners.resolve(encode(owner))));
+    }
+
+    @Override
+    public Set<String> liveOwners() {
+        return locked(() -> {
+            long now = clock.millis();
+            Set<String> live = new HashSet<>();
+            for (Path file : files(owners)) {
+                long expiresAtMillis = Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+                if (expiresAtMillis > now) {
+                    live.add(new String(Base64.getUrlDecoder().decode(file.getFileName().toString()), StandardCharsets.UTF_8));
+                }
+            }
+            return live;
+        });
+    }
+
+    private StreamLease read(String streamARN) throws IOException {
+        try {
+            return objectMapper.readValue(Files.readAllBytes(leases.resolve(encode(streamARN))), StreamLease.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(file -> !file.getFileName().toString().endsWith(TMP_SUFFIX)).forEach(files::add);
+        }
+        return files;
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+        Files.write(tmp, content);
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private <T> T locked(LockedOperation<T> operation) {
+        synchronized (PROCESS_LOCK) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return operation.run();
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Lease store operation failed in " + lockFile.getParent(), e);
+            }
+        }
+    }
+
+    /**
+     * Stream ARNs contain ':' and '/', so file name is URL safe Base64 of the ARN or owner
+     */
+    private static String encode(String name) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface LockedOperation<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,253 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tar archive collecting encoded frames of one MKV fragment or time window, so they can be stored as a single S3 object.
+ * Frames are appended in the order publisher threads finish encoding them. The index lists them by frame number
+ * with offset and length of the data inside the archive, so a single frame can be read with a range GET.
+ * <p>
+ * {@link ImagePublisher} calls {@link #expect()} for every frame queued for the archive and {@link #seal()} when the window ends.
+ * Once sealed and all expected frames are added or skipped, the completion callback is invoked exactly once.
+ * After the archive is written, {@link #stored(Throwable)} notifies the frames added to it.
+ */
+public class FrameArchive {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int BLOCK_SIZE = 512;
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final String key;
+    private final Consumer<FrameArchive> onComplete;
+    private final ReusableOutputStream tar = new ReusableOutputStream(INITIAL_BUFFER_SIZE);
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Runnable> onStored = new ArrayList<>();
+    private volatile Throwable storeError;
+    private int pending;
+    private boolean sealed;
+    private boolean completed;
+
+    /**
+     * @param key - object key without extension, e.g. <code>directory/archive-1591272811234</code>
+     * @param onComplete - invoked when all frames of the archive are written
+     */
+    public FrameArchive(String key, Consumer<FrameArchive> onComplete) {
+        this.key = key;
+        this.onComplete = onComplete;
+    }
+
+    public String getTarKey() {
+        return key + ".tar";
+    }
+
+    public String getIndexKey() {
+        return key + ".index.json";
+    }
+
+    /**
+     * Registers frame which will be added or skipped later
+     */
+    public synchronized void expect() {
+        if (sealed) {
+            throw new IllegalStateException("Archive " + key + " is sealed");
+        }
+        pending++;
+    }
+
+    /**
+     * Appends encoded frame to the archive
+     * @param frameNumber - frame number
+     * @param metadata - frame metadata
+     * @param name - file name inside the archive
+     * @param bytes - encoded image, copied into the archive
+     * @return offset of the image data inside the archive
+     */
+    public long add(long frameNumber, FrameMetadata metadata, String name, ByteBuffer bytes) {
+        return add(frameNumber, metadata, name, bytes, null);
+    }
+
+    /**
+     * Appends encoded frame to the archive
+     * @param onStored - invoked by {@link #stored(Throwable)}, null if not needed. {@link #getStoreError()} tells whether the write succeeded
+     * @return offset of the image data inside the archive
+     */
+    public synchronized long add(long frameNumber, FrameMetadata metadata, String name, ByteBuffer bytes, Runnable onStored) {
+        int length = bytes.remaining();
+        tar.write(header(name, length, metadata.getTimestampMillis() / 1000), 0, BLOCK_SIZE);
+        long offset = tar.size();
+        if (bytes.hasArray()) {
+            tar.write(bytes.array(), bytes.arrayOffset() + bytes.position(), length);
+        } else {
+            byte[] copy = new byte[length];
+            bytes.duplicate().get(copy);
+            tar.write(copy, 0, length);
+        }
+        tar.write(new byte[padding(length)], 0, padding(length));
+        entries.add(new Entry(frameNumber, metadata, name, offset, length));
+        if (onStored != null) {
+            this.onStored.add(onStored);
+        }
+        pending--;
+        completeIfDone();
+        return offset;
+    }
+
+    /**
+     * Marks expected frame as not available, e.g. dropped or failed to encode
+     */
+    public synchronized void skip() {
+        pending--;
+        completeIfDone();
+    }
+
+    /**
+     * Marks end of the archive window, no more frames are expected after already registered ones
+     */
+    public synchronized void seal() {
+        sealed = true;
+        completeIfDone();
+    }
+
+    /**
+     * Invokes callbacks of the added frames once the archive is written or failed to be written
+     * @param error - null when the archive and its index were written
+     */
+    public void stored(Throwable error) {
+        storeError = error;
+        List<Runnable> callbacks;
+        synchronized (this) {
+            callbacks = new ArrayList<>(onStored);
+            onStored.clear();
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+    /**
+     * @return error of the archive write reported by {@link #stored(Throwable)}, null when it succeeded
+     */
+    public Throwable getStoreError() {
+        return storeError;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return archive content, available after completion
+     */
+    public synchronized ByteBuffer tarBytes() {
+        return tar.view();
+    }
+
+    /**
+     * @return JSON index of archived frames, available after completion
+     */
+    public synchronized byte[] indexBytes() throws JsonProcessingException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(Entry::getFrameNumber));
+        Map<String, Object> index = new LinkedHashMap<>();
+        index.put("archive", getTarKey());
+        index.put("frames", sorted);
+        return OBJECT_MAPPER.writeValueAsBytes(index);
+    }
+
+    private void completeIfDone() {
+        if (sealed && pending == 0 && !completed) {
+            completed = true;
+            // End of archive marker
+            tar.write(new byte[2 * BLOCK_SIZE], 0, 2 * BLOCK_SIZE);
+            onComplete.accept(this);
+        }
+    }
+
+    private static int padding(int length) {
+        return (BLOCK_SIZE - length % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    /**
+     * Builds ustar header of a regular file
+     */
+    private static byte[] header(String name, long size, long modificationTimeSeconds) {
+        byte[] header = new byte[BLOCK_SIZE];
+        put(header, 0, 100, name);
+        put(header, 100, 8, "0000644");
+        put(header, 108, 8, "0000000");
+        put(header, 116, 8, "0000000");
+        put(header, 124, 12, String.format("%011o", size));
+        put(header, 136, 12, String.format("%011o", Math.max(0, modificationTimeSeconds)));
+        header[156] = '0';
+        put(header, 257, 6, "ustar");
+        put(header, 263, 2, "00");
+        // Checksum is computed with checksum field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        put(header, 148, 6, String.format("%06o", checksum));
+        header[154] = 0;
+        return header;
+    }
+
+    private static void put(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    /**
+     * Index entry of a single frame
+     */
+    public static class Entry {
+        private final long frameNumber;
+        private final String fragmentNumber;
+        private final long timestampMillis;
+        private final String name;
+        private final long offset;
+        private final long length;
+
+        Entry(long frameNumber, FrameMetadata metadata, String name, long offset, long length) {
+            this.frameNumber = frameNumber;
+            this.fragmentNumber = metadata.getFragmentNumber();
+            this.timestampMillis = metadata.getTimestampMillis();
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getFrameNumber() {
+            return frameNumber;
+        }
+
+        public String getFragmentNumber() {
+            return fragmentNumber;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+}
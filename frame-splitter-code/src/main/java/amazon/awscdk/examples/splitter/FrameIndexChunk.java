@@ -0,0 +1,238 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Part of the per-stream frame index covering one time window, stored as <code>directory/index/START/FIRST-LAST.json</code>
+ * where START is the window start and FIRST and LAST are timestamps of the first and last listed frame, all in epoch milliseconds.
+ * Consumers compute prefixes of the windows they need from the time range and list only those, so published images
+ * can be found without listing the directory. A window has several chunks when its frames were published by several tasks,
+ * e.g. after a resume or takeover, chunks never replace each other and consumers merge them by frame timestamp.
+ * <p>
+ * Same life cycle as {@link FrameArchive}: {@link ImagePublisher} calls {@link #expect()} for every frame of the window
+ * and {@link #seal()} when the window ends, every expected frame is then added once written or skipped when it failed.
+ * The completion callback is invoked exactly once, after the last one. After the chunk is written, {@link #stored()}
+ * notifies the frames added to it, so a frame counts as published only once the index lists it.
+ */
+public class FrameIndexChunk {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String prefix;
+    private final long windowStartMillis;
+    private final long windowMillis;
+    private final Consumer<FrameIndexChunk> onComplete;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Runnable> onStored = new ArrayList<>();
+    private int pending;
+    private boolean sealed;
+    private boolean completed;
+    private boolean active;
+
+    /**
+     * @param directory - directory of indexed images, ending with a slash
+     * @param windowStartMillis - start of the time window
+     * @param windowMillis - length of the time window
+     * @param onComplete - invoked when all frames of the window are written or skipped
+     */
+    public FrameIndexChunk(String directory, long windowStartMillis, long windowMillis, Consumer<FrameIndexChunk> onComplete) {
+        this.prefix = prefixOf(directory, windowStartMillis);
+        this.windowStartMillis = windowStartMillis;
+        this.windowMillis = windowMillis;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * Common prefix of keys of all chunks covering given window
+     */
+    public static String prefixOf(String directory, long windowStartMillis) {
+        return directory + "index/" + windowStartMillis + "/";
+    }
+
+    /**
+     * Key derived from the listed frames, so chunks of different tasks don't overwrite each other
+     * and a chunk rewritten with the same frames keeps its key. Available after completion of a chunk which is not empty.
+     */
+    public synchronized String getKey() {
+        LongSummaryStatistics timestamps = entries.stream().mapToLong(Entry::getTimestampMillis).summaryStatistics();
+        return prefix + timestamps.getMin() + "-" + timestamps.getMax() + ".json";
+    }
+
+    public long getWindowStartMillis() {
+        return windowStartMillis;
+    }
+
+    /**
+     * Registers frame which will be added or skipped later
+     * @return false when the chunk is already sealed, e.g. because its window timed out, and the frame can't be listed in it
+     */
+    public synchronized boolean expect() {
+        if (sealed) {
+            return false;
+        }
+        pending++;
+        active = true;
+        return true;
+    }
+
+    /**
+     * Adds written image stored as a separate object
+     * @param onStored - invoked by {@link #stored()}, null if not needed
+     */
+    public synchronized void add(long frameNumber, FrameMetadata metadata, String objectKey, long length, Runnable onStored) {
+        add(new Entry(frameNumber, metadata, objectKey, null, length), onStored);
+    }
+
+    /**
+     * Adds image stored inside a tar archive
+     * @param onStored - invoked by {@link #stored()}, null if not needed
+     */
+    public synchronized void add(long frameNumber, FrameMetadata metadata, String archiveKey, long offset, long length, Runnable onStored) {
+        add(new Entry(frameNumber, metadata, archiveKey, offset, length), onStored);
+    }
+
+    private void add(Entry entry, Runnable onStored) {
+        entries.add(entry);
+        active = true;
+        if (onStored != null) {
+            this.onStored.add(onStored);
+        }
+        pending--;
+        completeIfDone();
+    }
+
+    /**
+     * Marks expected frame as not published
+     */
+    public synchronized void skip() {
+        pending--;
+        active = true;
+        completeIfDone();
+    }
+
+    /**
+     * Marks end of the window, no more frames are expected after already registered ones
+     */
+    public synchronized void seal() {
+        sealed = true;
+        completeIfDone();
+    }
+
+    /**
+     * Invokes callbacks of the added frames once the chunk is written or failed to be written
+     */
+    public void stored() {
+        List<Runnable> callbacks;
+        synchronized (this) {
+            callbacks = new ArrayList<>(onStored);
+            onStored.clear();
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+    /**
+     * Seals the chunk when no frame was expected, added or skipped since the previous call
+     * @return true when the chunk is sealed
+     */
+    public synchronized boolean sealIfIdle() {
+        if (!active) {
+            seal();
+        }
+        active = false;
+        return sealed;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return JSON of indexed frames ordered by frame number, available after completion
+     */
+    public synchronized byte[] bytes() throws JsonProcessingException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(Entry::getFrameNumber));
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("windowStartMillis", windowStartMillis);
+        chunk.put("windowMillis", windowMillis);
+        chunk.put("frames", sorted);
+        return OBJECT_MAPPER.writeValueAsBytes(chunk);
+    }
+
+    private void completeIfDone() {
+        if (sealed && pending == 0 && !completed) {
+            completed = true;
+            onComplete.accept(this);
+        }
+    }
+
+    /**
+     * Index entry of a single frame, offset is set only for images inside archives
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+        private final long frameNumber;
+        private final String fragmentNumber;
+        private final long producerTimestampMillis;
+        private final long serverTimestampMillis;
+        private final long timestampMillis;
+        private final String key;
+        private final Long offset;
+        private final long length;
+
+        Entry(long frameNumber, FrameMetadata metadata, String key, Long offset, long length) {
+            this.frameNumber = frameNumber;
+            this.fragmentNumber = metadata.getFragmentNumber();
+            this.producerTimestampMillis = metadata.getProducerTimestampMillis();
+            this.serverTimestampMillis = metadata.getServerTimestampMillis();
+            this.timestampMillis = metadata.getTimestampMillis();
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getFrameNumber() {
+            return frameNumber;
+        }
+
+        public String getFragmentNumber() {
+            return fragmentNumber;
+        }
+
+        public long getProducerTimestampMillis() {
+            return producerTimestampMillis;
+        }
+
+        public long getServerTimestampMillis() {
+            return serverTimestampMillis;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        /**
+         * Key of the image object or of the archive containing it
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public Long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+}
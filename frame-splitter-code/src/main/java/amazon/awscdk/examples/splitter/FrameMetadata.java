@@ -0,0 +1,57 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
+
+import java.util.Optional;
+
+/**
+ * Information about origin of a decoded frame passed along with the image to {@link ImagePublisher}.
+ */
+public class FrameMetadata {
+    private final String fragmentNumber;
+    private final long producerTimestampMillis;
+    private final long serverTimestampMillis;
+    private final long timestampMillis;
+
+    public FrameMetadata(String fragmentNumber, long producerTimestampMillis, long serverTimestampMillis, long timestampMillis) {
+        this.fragmentNumber = fragmentNumber;
+        this.producerTimestampMillis = producerTimestampMillis;
+        this.serverTimestampMillis = serverTimestampMillis;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public static FrameMetadata of(Optional<FragmentMetadata> fragmentMetadata, long timestampMillis) {
+        return fragmentMetadata
+                .map(fragment -> new FrameMetadata(fragment.getFragmentNumberString(), fragment.getProducerSideTimestampMillis(),
+                        fragment.getServerSideTimestampMillis(), timestampMillis))
+                .orElseGet(() -> new FrameMetadata(null, 0, 0, timestampMillis));
+    }
+
+    /**
+     * Number of the fragment containing the frame, null if not known
+     */
+    public String getFragmentNumber() {
+        return fragmentNumber;
+    }
+
+    /**
+     * Producer side timestamp of the fragment containing the frame
+     */
+    public long getProducerTimestampMillis() {
+        return producerTimestampMillis;
+    }
+
+    /**
+     * Server side timestamp of the fragment containing the frame
+     */
+    public long getServerTimestampMillis() {
+        return serverTimestampMillis;
+    }
+
+    /**
+     * Absolute timestamp of the frame computed from cluster and block timecodes
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+}
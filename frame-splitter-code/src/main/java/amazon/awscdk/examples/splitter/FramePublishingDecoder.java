@@ -1,44 +1,286 @@
 package amazon.awscdk.examples.splitter;
 
 import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.FrameProcessException;
 import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
-import com.amazonaws.kinesisvideo.parser.utilities.H264FrameDecoder;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadataVisitor;
 import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+import org.jcodec.common.model.Picture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 /**
  * This class is an image saving wrapper for {@link com.amazonaws.kinesisvideo.parser.utilities.H264FrameDecoder}.
+ * With {@link GopDecoder} frames are collected into groups of pictures decoded in parallel. Images are published
+ * and metadata callback is invoked in the original frame order once the GOP is decoded, so they lag one GOP behind the input.
+ * Frames of a GOP are copied into buffers of the GOP, which are reused once the GOP is published, so frames received as slices
+ * of the parser buffer from {@link FrameSliceVisitor} stay valid until decoded.
  */
-public class FramePublishingDecoder extends H264FrameDecoder {
+public class FramePublishingDecoder extends YuvFrameDecoder {
     private static final Logger LOG = LoggerFactory.getLogger(FramePublishingDecoder.class);
+    private static final BigInteger DEFAULT_TIMESCALE_NANOS = BigInteger.valueOf(1_000_000);
+    private static final BigInteger NANOS_PER_MILLI = BigInteger.valueOf(1_000_000);
+    private static final int GOP_BUFFER_BYTES = 1024 * 1024;
     private final ImagePublisher imagePublisher;
     private final Consumer<Optional<FragmentMetadata>> callback;
+    private final FrameSampler sampler;
+    private final GopDecoder gopDecoder;
+    private final ImageConverter imageConverter;
+    private final Deque<PendingGop> pendingGops = new ArrayDeque<>();
+    private List<PendingFrame> gop = new ArrayList<>();
+    private List<ByteBuffer> gopBuffers = new ArrayList<>();
+    private final Deque<ByteBuffer> idleGopBuffers = new ArrayDeque<>();
 
     public FramePublishingDecoder(ImagePublisher bufferedImageConsumer, Consumer<Optional<FragmentMetadata>> callback) {
+        this(bufferedImageConsumer, callback, new FrameSampler(new SamplingPolicy()));
+    }
+
+    public FramePublishingDecoder(ImagePublisher bufferedImageConsumer, Consumer<Optional<FragmentMetadata>> callback, FrameSampler sampler) {
+        this(bufferedImageConsumer, callback, sampler, null);
+    }
+
+    /**
+     * @param gopDecoder - pool decoding GOPs in parallel, null to decode frames on the calling thread
+     */
+    public FramePublishingDecoder(ImagePublisher bufferedImageConsumer, Consumer<Optional<FragmentMetadata>> callback, FrameSampler sampler,
+                                  GopDecoder gopDecoder) {
+        this(bufferedImageConsumer, callback, sampler, gopDecoder, new ImageConverter(new ImageSettings()));
+    }
+
+    /**
+     * @param imageConverter - color and size of published images
+     */
+    public FramePublishingDecoder(ImagePublisher bufferedImageConsumer, Consumer<Optional<FragmentMetadata>> callback, FrameSampler sampler,
+                                  GopDecoder gopDecoder, ImageConverter imageConverter) {
         this.imagePublisher = bufferedImageConsumer;
         this.callback = callback;
+        this.sampler = sampler;
+        this.gopDecoder = gopDecoder;
+        this.imageConverter = imageConverter;
+    }
+
+    /**
+     * Computes absolute frame timestamp from cluster timecode and passes the frame on for processing
+     */
+    @Override
+    public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata,
+                        Optional<FragmentMetadataVisitor.MkvTagProcessor> tagProcessor, Optional<BigInteger> timescale, Optional<BigInteger> fragmentTimecode)
+            throws FrameProcessException {
+        long timestampMillis = fragmentTimecode
+                .map(timecode -> timecode.add(BigInteger.valueOf(frame.getTimeCode()))
+                        .multiply(timescale.orElse(DEFAULT_TIMESCALE_NANOS))
+                        .divide(NANOS_PER_MILLI).longValue())
+                .orElseGet(() -> fallbackTimestamp(frame, fragmentMetadata));
+        process(frame, trackMetadata, fragmentMetadata, timestampMillis);
+    }
+
+    @Override
+    public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata) throws FrameProcessException {
+        process(frame, trackMetadata, fragmentMetadata, fallbackTimestamp(frame, fragmentMetadata));
     }
 
     /**
-     * Decodes received frame to {@link java.awt.image.BufferedImage} and publishes it using {@link amazon.awscdk.examples.splitter.ImagePublisher}
+     * Decodes received frame to {@link java.awt.image.BufferedImage} and publishes it using {@link amazon.awscdk.examples.splitter.ImagePublisher}.
+     * Frames rejected by {@link FrameSampler} are decoded only when needed as reference for following frames and are never published.
      * @param frame
      * @param trackMetadata
      * @param fragmentMetadata
+     * @param timestampMillis
+     * @throws FrameProcessException when decoding of a previous GOP failed or the thread was interrupted while waiting for it
      */
-    @Override
-    public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata) {
-        LOG.info("Decoding frame: " + frame);
-        BufferedImage bufferedImage = super.decodeH264Frame(frame, trackMetadata);
-        LOG.info("Frame decoded: " + frame);
-
-        imagePublisher.publish(bufferedImage);
+    private void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata, long timestampMillis)
+            throws FrameProcessException {
+        FrameSampler.Decision decision = sampler.sample(frame, trackMetadata, timestampMillis);
+        if (gopDecoder != null) {
+            if (frame.isKeyFrame() && !gop.isEmpty()) {
+                submitGop();
+            }
+            Frame retained = decision == FrameSampler.Decision.SKIP ? frame : retain(frame);
+            gop.add(new PendingFrame(retained, trackMetadata, fragmentMetadata, timestampMillis, decision));
+            publishDecoded(Integer.MAX_VALUE);
+            return;
+        }
+        if (decision == FrameSampler.Decision.SKIP) {
+            LOG.debug("Skipping frame: " + frame);
+        } else {
+            BufferedImage bufferedImage = decode(this, frame, trackMetadata, decision == FrameSampler.Decision.PUBLISH);
+            if (decision == FrameSampler.Decision.PUBLISH) {
+                publish(bufferedImage, fragmentMetadata, timestampMillis);
+            }
+        }
 
-        LOG.info("Invoking frame metadata callback");
+        LOG.debug("Invoking frame metadata callback");
         callback.accept(fragmentMetadata);
     }
+
+    /**
+     * Decodes the last GOP and publishes all pending images. Must be called when no more frames will arrive,
+     * otherwise frames of the last GOP are never published.
+     */
+    public void flush() throws FrameProcessException {
+        if (gopDecoder == null) {
+            return;
+        }
+        if (!gop.isEmpty()) {
+            submitGop();
+        }
+        publishDecoded(0);
+    }
+
+    /**
+     * @param publish - false when the frame is decoded only as reference, gray images are not produced then
+     * @return image of published frame, null for other frames
+     */
+    private BufferedImage decode(YuvFrameDecoder decoder, Frame frame, MkvTrackMetadata trackMetadata, boolean publish) {
+        LOG.debug("Decoding frame: " + frame);
+        long decodeStart = System.nanoTime();
+        BufferedImage bufferedImage = null;
+        if (imageConverter.isGray()) {
+            Picture picture = decoder.decodeYuv(frame, trackMetadata);
+            if (publish) {
+                bufferedImage = imageConverter.luma(picture, trackMetadata.getPixelWidth().get().intValue(), trackMetadata.getPixelHeight().get().intValue());
+            }
+        } else {
+            BufferedImage rgb = decoder.decodeH264Frame(frame, trackMetadata);
+            if (publish) {
+                bufferedImage = imageConverter.scale(rgb);
+            }
+        }
+        PipelineMetrics.latency(PipelineMetrics.Stage.DECODE).recordNanos(System.nanoTime() - decodeStart);
+        imagePublisher.getMetrics().frameDecoded();
+        LOG.debug("Frame decoded: " + frame);
+        return bufferedImage;
+    }
+
+    /**
+     * Sends collected GOP to the pool. Number of GOPs waiting for publishing is limited to the number of decoder threads,
+     * so a stream can't hold more decoded images than the pool can produce at once.
+     */
+    private void submitGop() throws FrameProcessException {
+        List<PendingFrame> frames = gop;
+        List<ByteBuffer> buffers = gopBuffers;
+        gop = new ArrayList<>();
+        gopBuffers = new ArrayList<>();
+        publishDecoded(gopDecoder.getThreads() - 1);
+        pendingGops.add(new PendingGop(frames, buffers, gopDecoder.submit(decoder -> decodeGop(decoder, frames))));
+    }
+
+    /**
+     * Copies frame data into the buffers of the current GOP
+     */
+    private Frame retain(Frame frame) {
+        ByteBuffer data = frame.getFrameData().duplicate();
+        ByteBuffer buffer = gopBuffers.isEmpty() ? null : gopBuffers.get(gopBuffers.size() - 1);
+        if (buffer == null || buffer.remaining() < data.remaining()) {
+            buffer = idleGopBuffers.peek() != null && idleGopBuffers.peek().capacity() >= data.remaining()
+                    ? idleGopBuffers.poll()
+                    : ByteBuffer.allocate(Math.max(GOP_BUFFER_BYTES, data.remaining()));
+            gopBuffers.add(buffer);
+        }
+        ByteBuffer copy = buffer.slice();
+        copy.put(data).flip();
+        buffer.position(buffer.position() + copy.limit());
+        return frame.toBuilder().frameData(copy).build();
+    }
+
+    /**
+     * Runs on a pool thread
+     * @return images of published frames, null for other frames
+     */
+    private List<BufferedImage> decodeGop(YuvFrameDecoder decoder, List<PendingFrame> frames) {
+        List<BufferedImage> images = new ArrayList<>(frames.size());
+        for (PendingFrame pending : frames) {
+            BufferedImage bufferedImage = null;
+            if (pending.decision != FrameSampler.Decision.SKIP) {
+                bufferedImage = decode(decoder, pending.frame, pending.trackMetadata, pending.decision == FrameSampler.Decision.PUBLISH);
+            }
+            images.add(bufferedImage);
+        }
+        return images;
+    }
+
+    /**
+     * Publishes GOPs in order while the oldest one is decoded, or waits for it while more than maxPending GOPs are in the pool
+     */
+    private void publishDecoded(int maxPending) throws FrameProcessException {
+        while (!pendingGops.isEmpty() && (pendingGops.size() > maxPending || pendingGops.peek().images.isDone())) {
+            PendingGop pendingGop = pendingGops.poll();
+            List<BufferedImage> images;
+            try {
+                images = pendingGop.images.get();
+            } catch (ExecutionException e) {
+                throw new FrameProcessException("Failed to decode GOP", e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FrameProcessException("Interrupted while waiting for decoded GOP", e);
+            }
+            for (int i = 0; i < images.size(); i++) {
+                PendingFrame pending = pendingGop.frames.get(i);
+                if (images.get(i) != null) {
+                    publish(images.get(i), pending.fragmentMetadata, pending.timestampMillis);
+                }
+                callback.accept(pending.fragmentMetadata);
+            }
+            for (ByteBuffer buffer : pendingGop.buffers) {
+                idleGopBuffers.add(buffer.clear());
+            }
+        }
+    }
+
+    /**
+     * Publishes the image unless it is a near duplicate of the previous one
+     */
+    private void publish(BufferedImage bufferedImage, Optional<FragmentMetadata> fragmentMetadata, long timestampMillis) {
+        if (sampler.isDuplicate(bufferedImage)) {
+            LOG.debug("Suppressing duplicate frame at: " + timestampMillis);
+            imagePublisher.getMetrics().frameSuppressed();
+            return;
+        }
+        imagePublisher.publish(bufferedImage, FrameMetadata.of(fragmentMetadata, timestampMillis));
+    }
+
+    private static long fallbackTimestamp(Frame frame, Optional<FragmentMetadata> fragmentMetadata) {
+        return fragmentMetadata.map(FragmentMetadata::getProducerSideTimestampMillis).orElse(0L) + frame.getTimeCode();
+    }
+
+    private static class PendingFrame {
+        private final Frame frame;
+        private final MkvTrackMetadata trackMetadata;
+        private final Optional<FragmentMetadata> fragmentMetadata;
+        private final long timestampMillis;
+        private final FrameSampler.Decision decision;
+
+        PendingFrame(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata, long timestampMillis,
+                     FrameSampler.Decision decision) {
+            this.frame = frame;
+            this.trackMetadata = trackMetadata;
+            this.fragmentMetadata = fragmentMetadata;
+            this.timestampMillis = timestampMillis;
+            this.decision = decision;
+        }
+    }
+
+    private static class PendingGop {
+        private final List<PendingFrame> frames;
+        private final List<ByteBuffer> buffers;
+        private final Future<List<BufferedImage>> images;
+
+        PendingGop(List<PendingFrame> frames, List<ByteBuffer> buffers, Future<List<BufferedImage>> images) {
+            this.frames = frames;
+            this.buffers = buffers;
+            this.images = images;
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * Decides for every frame of a single stream whether it should be published according to {@link SamplingPolicy}.
+ * Frames which are not published are still decoded when other frames may reference them, otherwise decoding is skipped.
+ * Decoded frames selected for publishing are finally checked against the last published one by {@link DuplicateFilter}.
+ */
+public class FrameSampler {
+    public enum Decision {
+        /**
+         * Frame should be decoded and published
+         */
+        PUBLISH,
+        /**
+         * Frame should be decoded to keep decoder reference pictures valid, but not published
+         */
+        DECODE_ONLY,
+        /**
+         * Frame can be ignored
+         */
+        SKIP
+    }
+
+    private static final int NAL_TYPE_SLICE = 1;
+    private static final int NAL_TYPE_IDR_SLICE = 5;
+
+    private final SamplingPolicy.Mode mode;
+    private final int everyNth;
+    private final long intervalMicros;
+    private final long startTimestampMillis;
+    private final long endTimestampMillis;
+    private final DuplicateFilter duplicateFilter;
+    private long frameIndex;
+    private long nextTimestampMicros = Long.MIN_VALUE;
+
+    public FrameSampler(SamplingPolicy policy) {
+        this(policy, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param startTimestampMillis - frames before this timestamp are not published, only decoded when following frames may reference them
+     * @param endTimestampMillis - frames from this timestamp on are neither published nor decoded
+     */
+    public FrameSampler(SamplingPolicy policy, long startTimestampMillis, long endTimestampMillis) {
+        this.startTimestampMillis = startTimestampMillis;
+        this.endTimestampMillis = endTimestampMillis;
+        this.mode = policy.getMode();
+        this.everyNth = policy.getEveryNth();
+        if (mode == SamplingPolicy.Mode.EVERY_NTH && everyNth < 1) {
+            throw new IllegalArgumentException("everyNth must be >= 1");
+        }
+        if (mode == SamplingPolicy.Mode.TARGET_FPS && !(policy.getFps() > 0)) {
+            throw new IllegalArgumentException("fps must be > 0");
+        }
+        this.intervalMicros = mode == SamplingPolicy.Mode.TARGET_FPS ? Math.round(1_000_000 / policy.getFps()) : 0;
+        this.duplicateFilter = policy.getDuplicateThreshold() != 0 ? new DuplicateFilter(policy.getDuplicateThreshold()) : null;
+    }
+
+    /**
+     * @param frame - frame to check
+     * @param trackMetadata - metadata of the frame's track
+     * @param timestampMillis - absolute frame timestamp, used in {@link SamplingPolicy.Mode#TARGET_FPS} mode
+     */
+    public Decision sample(Frame frame, MkvTrackMetadata trackMetadata, long timestampMillis) {
+        if (timestampMillis >= endTimestampMillis) {
+            return Decision.SKIP;
+        }
+        if (timestampMillis < startTimestampMillis) {
+            return mode == SamplingPolicy.Mode.KEYFRAMES || isDisposable(frame, trackMetadata) ? Decision.SKIP : Decision.DECODE_ONLY;
+        }
+        boolean selected;
+        switch (mode) {
+            case KEYFRAMES:
+                return frame.isKeyFrame() ? Decision.PUBLISH : Decision.SKIP;
+            case EVERY_NTH:
+                selected = frameIndex++ % everyNth == 0;
+                break;
+            case TARGET_FPS:
+                selected = selectByTime(timestampMillis * 1000);
+                break;
+            default:
+                return Decision.PUBLISH;
+        }
+        if (selected) {
+            return Decision.PUBLISH;
+        }
+        return isDisposable(frame, trackMetadata) ? Decision.SKIP : Decision.DECODE_ONLY;
+    }
+
+    /**
+     * Must be called in frame order for decoded images of frames with {@link Decision#PUBLISH} decision
+     * @return true when the image is a near duplicate of the last published one and should not be published
+     */
+    public boolean isDuplicate(BufferedImage image) {
+        return duplicateFilter != null && duplicateFilter.isDuplicate(image);
+    }
+
+    private boolean selectByTime(long timestampMicros) {
+        // Timestamps going back mean that stream was restarted, so sampling starts over
+        if (nextTimestampMicros == Long.MIN_VALUE || timestampMicros < nextTimestampMicros - intervalMicros) {
+            nextTimestampMicros = timestampMicros + intervalMicros;
+            return true;
+        }
+        if (timestampMicros < nextTimestampMicros) {
+            return false;
+        }
+        nextTimestampMicros += intervalMicros;
+        if (nextTimestampMicros <= timestampMicros) {
+            nextTimestampMicros = timestampMicros + intervalMicros;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether no other frame can reference this one, i.e. the block is marked discardable or all its H.264 slices have nal_ref_idc equal to 0.
+     */
+    static boolean isDisposable(Frame frame, MkvTrackMetadata trackMetadata) {
+        if (frame.isDiscardable()) {
+            return true;
+        }
+        if (frame.isKeyFrame()) {
+            return false;
+        }
+        ByteBuffer codecPrivateData = trackMetadata.getCodecPrivateData();
+        if (codecPrivateData == null || codecPrivateData.limit() < 5) {
+            return false;
+        }
+        int lengthSize = (codecPrivateData.get(4) & 0x3) + 1;
+        ByteBuffer data = frame.getFrameData();
+        int position = data.position();
+        boolean sliceFound = false;
+        while (position + lengthSize < data.limit()) {
+            int nalLength = 0;
+            for (int i = 0; i < lengthSize; i++) {
+                nalLength = (nalLength << 8) | (data.get(position + i) & 0xFF);
+            }
+            position += lengthSize;
+            if (nalLength <= 0 || position + nalLength > data.limit()) {
+                return false;
+            }
+            int header = data.get(position) & 0xFF;
+            int nalType = header & 0x1F;
+            if (nalType == NAL_TYPE_SLICE || nalType == NAL_TYPE_IDR_SLICE) {
+                if ((header & 0x60) != 0) {
+                    return false;
+                }
+                sliceFound = true;
+            }
+            position += nalLength;
+        }
+        return sliceFound;
+    }
+}
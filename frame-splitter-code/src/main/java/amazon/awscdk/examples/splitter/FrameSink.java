@@ -0,0 +1,34 @@
+package amazon.awscdk.examples.splitter;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Destination of encoded images and archives written by {@link ImagePublisher}.
+ */
+public interface FrameSink extends AutoCloseable {
+
+    /**
+     * Stores an object. Synchronous sinks invoke the callback before returning.
+     * @param key - object key, e.g. images/1.jpg
+     * @param bytes - content, must not be modified until the callback runs
+     * @param contentType - MIME type of the content
+     * @param onComplete - invoked once with null on success or with the failure
+     * @throws InterruptedException if interrupted while waiting for free capacity, the callback is not invoked then
+     */
+    void write(String key, ByteBuffer bytes, String contentType, Consumer<Throwable> onComplete) throws InterruptedException;
+
+    /**
+     * Location of the object used in log messages
+     */
+    default String describe(String key) {
+        return key;
+    }
+
+    /**
+     * Releases resources owned by the sink. Shared clients are not closed.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,91 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.ebml.MkvTypeInfos;
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvDataElement;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitor;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvEndMasterElement;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvStartMasterElement;
+import com.amazonaws.kinesisvideo.parser.mkv.visitors.CompositeMkvElementVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadataVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.FrameVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Same as {@link FrameVisitor} without a tag processor, but frames are not copied out of the parser. Frame data is
+ * a slice of the parser's read buffer, valid only until the processor returns, because the buffer is reused for the
+ * next element. Processors keeping frames for later, like {@link FramePublishingDecoder} decoding whole GOPs,
+ * must copy them.
+ * <p>
+ * Visitor can be reused for consecutive GetMedia responses of one stream, track metadata is kept until a response replaces it.
+ * A response resumed with a continuation token may start without Tracks, its frames use the metadata of the previous one.
+ */
+public class FrameSliceVisitor extends CompositeMkvElementVisitor {
+    private final FragmentMetadataVisitor fragmentMetadataVisitor;
+    private final FrameVisitor.FrameProcessor frameProcessor;
+    private final long trackNumber;
+    private MkvTrackMetadata trackMetadata;
+    private Optional<BigInteger> timescale = Optional.empty();
+    private Optional<BigInteger> fragmentTimecode = Optional.empty();
+
+    /**
+     * @param frameProcessor - receives frames of the track
+     * @param trackNumber - frames of other tracks are ignored
+     */
+    public FrameSliceVisitor(FrameVisitor.FrameProcessor frameProcessor, long trackNumber) {
+        this(FragmentMetadataVisitor.create(), frameProcessor, trackNumber);
+    }
+
+    private FrameSliceVisitor(FragmentMetadataVisitor fragmentMetadataVisitor, FrameVisitor.FrameProcessor frameProcessor, long trackNumber) {
+        super(fragmentMetadataVisitor);
+        this.fragmentMetadataVisitor = fragmentMetadataVisitor;
+        this.frameProcessor = frameProcessor;
+        this.trackNumber = trackNumber;
+        childVisitors.add(new Internal());
+    }
+
+    /**
+     * Token of the position where the last GetMedia response ended, present once a response sent it
+     */
+    public Optional<String> getContinuationToken() {
+        return fragmentMetadataVisitor.getContinuationToken();
+    }
+
+    private class Internal extends MkvElementVisitor {
+        @Override
+        public void visit(MkvStartMasterElement startMasterElement) {
+        }
+
+        @Override
+        public void visit(MkvEndMasterElement endMasterElement) {
+        }
+
+        @Override
+        public void visit(MkvDataElement dataElement) throws MkvElementVisitException {
+            if (MkvTypeInfos.TIMECODESCALE.equals(dataElement.getElementMetaData().getTypeInfo())) {
+                timescale = Optional.of((BigInteger) dataElement.getValueCopy().getVal());
+            } else if (MkvTypeInfos.TIMECODE.equals(dataElement.getElementMetaData().getTypeInfo())) {
+                fragmentTimecode = Optional.of((BigInteger) dataElement.getValueCopy().getVal());
+            } else if (MkvTypeInfos.SIMPLEBLOCK.equals(dataElement.getElementMetaData().getTypeInfo())) {
+                ByteBuffer data = dataElement.getDataBuffer().duplicate();
+                data.rewind();
+                Frame frame = Frame.withoutCopy(data);
+                if (frame.getTrackNumber() != trackNumber) {
+                    return;
+                }
+                // Parser forgets tracks at each segment start, keep the last ones seen
+                MkvTrackMetadata current = fragmentMetadataVisitor.getMkvTrackMetadata(trackNumber);
+                if (current != null) {
+                    trackMetadata = current;
+                }
+                frameProcessor.process(frame, trackMetadata,
+                        fragmentMetadataVisitor.getCurrentFragmentMetadata(), Optional.empty(), timescale, fragmentTimecode);
+            }
+        }
+    }
+}
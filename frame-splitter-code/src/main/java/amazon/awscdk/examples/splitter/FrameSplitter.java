@@ -9,24 +9,32 @@ import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.kinesisvideo.KinesisVideoClient;
-import software.amazon.awssdk.services.kinesisvideo.model.APIName;
-import software.amazon.awssdk.services.kinesisvideo.model.GetDataEndpointRequest;
-import software.amazon.awssdk.services.kinesisvideo.model.GetDataEndpointResponse;
 import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
 import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
 import software.amazon.awssdk.services.sqs.model.Message;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
-import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
 
-import java.net.URI;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class for the application. Its main purpose is to listen for incoming Amazon SQS messages and triggering processing.
@@ -44,77 +52,366 @@ public class FrameSplitter {
     private static final String REGION = "REGION";
     private static final String FRAME_SPLITTER_THREADS = "FRAME_SPLITTER_THREADS";
     private static final String IMAGE_PUBLISHER_THREADS = "IMAGE_PUBLISHER_THREADS";
+    private static final String PUBLISHER_BUFFER_CAPACITY = "PUBLISHER_BUFFER_CAPACITY";
+    private static final String PUBLISHER_BUFFER_UNIT = "PUBLISHER_BUFFER_UNIT";
+    private static final String PUBLISHER_BUFFER_POLICY = "PUBLISHER_BUFFER_POLICY";
+    private static final String ENDPOINT_CACHE_TTL_SECONDS = "ENDPOINT_CACHE_TTL_SECONDS";
+    private static final String ENDPOINT_CACHE_SIZE = "ENDPOINT_CACHE_SIZE";
+    private static final String UPLOAD_MODE = "UPLOAD_MODE";
+    private static final String UPLOAD_MAX_IN_FLIGHT = "UPLOAD_MAX_IN_FLIGHT";
+    private static final String UPLOAD_MAX_ATTEMPTS = "UPLOAD_MAX_ATTEMPTS";
+    private static final String CHECKPOINT_DIR = "CHECKPOINT_DIR";
+    private static final String CHECKPOINT_FRAGMENTS = "CHECKPOINT_FRAGMENTS";
+    private static final String CHECKPOINT_INTERVAL_SECONDS = "CHECKPOINT_INTERVAL_SECONDS";
+    private static final String MAX_STREAMS = "MAX_STREAMS";
+    private static final String STREAM_SLICE_MILLIS = "STREAM_SLICE_MILLIS";
+    private static final String IDLE_BACKOFF_MAX_MILLIS = "IDLE_BACKOFF_MAX_MILLIS";
+    private static final String METRICS_PORT = "METRICS_PORT";
+    private static final String DECODER_THREADS = "DECODER_THREADS";
+    private static final String MEDIA_BUFFER_BYTES = "MEDIA_BUFFER_BYTES";
+    private static final String ARCHIVE_FETCH_CONCURRENCY = "ARCHIVE_FETCH_CONCURRENCY";
+    private static final String OUTPUT_DIR = "OUTPUT_DIR";
+    private static final String LEASE_DIR = "LEASE_DIR";
+    private static final String LEASE_TTL_SECONDS = "LEASE_TTL_SECONDS";
+
+    /**
+     * Maximum number of messages SQS returns from single receive request
+     */
+    private static final int MAX_RECEIVE_BATCH = 10;
 
     private static final String WAIT_SECONDS_DEFAULT = "20";
     private static final String IMAGE_PUBLISHER_THREADS_DEFAULT = "1";
     private static final String FRAME_SPLITTER_THREADS_DEFAULT = "1";
+    private static final String PUBLISHER_BUFFER_CAPACITY_DEFAULT = String.valueOf(BackpressureSettings.DEFAULT_CAPACITY);
+    private static final String PUBLISHER_BUFFER_UNIT_DEFAULT = BackpressureSettings.Unit.FRAMES.name();
+    private static final String PUBLISHER_BUFFER_POLICY_DEFAULT = BoundedHandoff.OverflowPolicy.BLOCK.name();
+    private static final String ENDPOINT_CACHE_TTL_SECONDS_DEFAULT = "300";
+    private static final String ENDPOINT_CACHE_SIZE_DEFAULT = "100";
+    private static final String UPLOAD_MODE_SYNC = "SYNC";
+    private static final String UPLOAD_MODE_ASYNC = "ASYNC";
+    private static final String UPLOAD_MAX_IN_FLIGHT_DEFAULT = "64";
+    private static final String UPLOAD_MAX_ATTEMPTS_DEFAULT = "5";
+    private static final String CHECKPOINT_FRAGMENTS_DEFAULT = "10";
+    private static final String CHECKPOINT_INTERVAL_SECONDS_DEFAULT = "30";
+    private static final String STREAM_SLICE_MILLIS_DEFAULT = "1000";
+    private static final String IDLE_BACKOFF_MAX_MILLIS_DEFAULT = "10000";
+    private static final String METRICS_PORT_DEFAULT = "0";
+    private static final String DECODER_THREADS_DEFAULT = "0";
+    // Without prefetching a slice of a stream with no new data blocks its frame splitter thread
+    private static final String MEDIA_BUFFER_BYTES_DEFAULT = "8388608";
+    private static final String ARCHIVE_FETCH_CONCURRENCY_DEFAULT = "4";
+    private static final String LEASE_TTL_SECONDS_DEFAULT = "30";
+    // ECS kills the container 30 seconds after SIGTERM unless the task definition sets a longer stop timeout
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(20);
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final AwsCredentialsProvider credentialsProvider;
-    private final ExecutorService executorService;
+    private final KinesisVideoClientRegistry clientRegistry;
+    private final StreamScheduler streamScheduler;
     private final SqsClient sqsClient;
     private final S3Client s3Client;
+    private final AsyncUploader asyncUploader;
     private final String queueUrl;
     private final int waitSeconds;
     private final int imagePublisherThreads;
-    private final Region region;
+    private final BackpressureSettings backpressureSettings;
+    private final CheckpointStore checkpointStore;
+    private final Semaphore freeSlots;
+    private final GopDecoder gopDecoder;
+    private final MediaPrefetcher mediaPrefetcher;
+    private final ArchiveFetcher archiveFetcher;
+    private final Path outputDir;
+    private final LeaseCoordinator leaseCoordinator;
+    private final Set<ProcessingTask> running = new HashSet<>();
+    private volatile boolean stopping;
 
-    public FrameSplitter(Region region, AwsCredentialsProvider credentialsProvider, SqsClient sqsClient, S3Client s3Client, String queueUrl, int waitSeconds, int frameSplitterThreads, int imagePublisherThreads) {
-        executorService = Executors.newFixedThreadPool(frameSplitterThreads);
-        this.region = region;
-        this.credentialsProvider = credentialsProvider;
+    /**
+     * @param streamScheduler - runs processing tasks on frame splitter threads
+     * @param maxStreams - maximum number of streams processed at the same time
+     * @param checkpointStore - store of processed fragments, null to process every stream from the earliest fragment
+     * @param gopDecoder - pool decoding GOPs in parallel, null to decode on frame splitter threads
+     * @param mediaPrefetcher - reads GetMedia responses ahead, null to read on frame splitter threads
+     * @param archiveFetcher - fetches fragments of requests selecting archived video
+     * @param outputDir - local directory where images are written below a directory named after the bucket, null to upload to S3
+     * @param leaseCoordinator - shares live streams with other tasks, null to process every received stream until it ends
+     */
+    public FrameSplitter(KinesisVideoClientRegistry clientRegistry, SqsClient sqsClient, S3Client s3Client, AsyncUploader asyncUploader, String queueUrl, int waitSeconds,
+                         StreamScheduler streamScheduler, int maxStreams, int imagePublisherThreads, BackpressureSettings backpressureSettings, CheckpointStore checkpointStore,
+                         GopDecoder gopDecoder, MediaPrefetcher mediaPrefetcher, ArchiveFetcher archiveFetcher, Path outputDir,
+                         LeaseCoordinator leaseCoordinator) {
+        this.streamScheduler = streamScheduler;
+        freeSlots = new Semaphore(maxStreams);
+        this.clientRegistry = clientRegistry;
         this.sqsClient = sqsClient;
         this.s3Client = s3Client;
+        this.asyncUploader = asyncUploader;
         this.waitSeconds = waitSeconds;
         this.queueUrl = queueUrl;
         this.imagePublisherThreads = imagePublisherThreads;
+        this.backpressureSettings = backpressureSettings;
+        this.checkpointStore = checkpointStore;
+        this.gopDecoder = gopDecoder;
+        this.mediaPrefetcher = mediaPrefetcher;
+        this.archiveFetcher = archiveFetcher;
+        this.outputDir = outputDir;
+        this.leaseCoordinator = leaseCoordinator;
+        PipelineMetrics.gauge("activeStreams", () -> maxStreams - freeSlots.availablePermits());
+        PipelineMetrics.gauge("queuedStreams", streamScheduler::queuedStreams);
+        if (asyncUploader != null) {
+            PipelineMetrics.gauge("uploadsInFlight", asyncUploader::inFlight);
+        }
+        if (gopDecoder != null) {
+            PipelineMetrics.gauge("queuedGops", gopDecoder::queuedGops);
+        }
+        if (mediaPrefetcher != null) {
+            PipelineMetrics.gauge("prefetchingStreams", mediaPrefetcher::activeStreams);
+        }
+    }
+
+    /**
+     * Receives processing requests only when there are free stream slots, so requests not yet accepted stay visible in SQS
+     * and queue based autoscaling can react. Messages are deleted in batches once their tasks are accepted.
+     * With a lease coordinator streams released or abandoned by other tasks are taken over in the background.
+     */
+    void start() {
+        if (leaseCoordinator != null) {
+            leaseCoordinator.start(this::takeOver);
+        }
+        while (!stopping) {
+            receive();
+        }
+    }
+
+    /**
+     * Stops all tasks and waits until they stored their images and flushed their checkpoints, then flushes the checkpoint store
+     * and releases leases. Streams are taken over by other tasks right away instead of after lease expiry,
+     * and resume after the last fragment whose images were stored.
+     * @param timeout - time to wait for tasks, leases of tasks still running afterwards are released anyway
+     */
+    void shutdown(Duration timeout) {
+        stopping = true;
+        if (leaseCoordinator != null) {
+            leaseCoordinator.handOverAll();
+        }
+        synchronized (this) {
+            running.forEach(ProcessingTask::stop);
+            long deadline = System.nanoTime() + timeout.toNanos();
+            try {
+                long remaining;
+                while (!running.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!running.isEmpty()) {
+                LOG.warn(running.size() + " streams did not finish within " + timeout + ", their checkpoints may be behind");
+            }
+        }
+        if (checkpointStore != null) {
+            checkpointStore.close();
+        }
+        if (leaseCoordinator != null) {
+            leaseCoordinator.close();
+        }
     }
 
-    private void start() {
+    /**
+     * Task submitted while shutting down is stopped right away
+     */
+    private synchronized void track(ProcessingTask task) {
+        // Checked under the lock shutdown stops running tasks with
+        if (stopping) {
+            task.stop();
+        }
+        running.add(task);
+    }
+
+    private synchronized void finished(ProcessingTask task) {
+        running.remove(task);
+        notifyAll();
+    }
+
+    /**
+     * Single receive: waits for free slots, receives at most that many messages, starts their processing and deletes accepted ones.
+     * Slots are taken per received message, not during the receive, so streams released by other tasks can be taken over meanwhile.
+     */
+    void receive() {
+        int slots = awaitFreeSlots();
         ReceiveMessageRequest request = ReceiveMessageRequest.builder()
                 .queueUrl(queueUrl)
                 .visibilityTimeout(10)
                 .waitTimeSeconds(waitSeconds)
+                .maxNumberOfMessages(slots)
                 .build();
+        List<Message> messages = sqsClient.receiveMessage(request).messages();
+        if (messages.isEmpty()) {
+            LOG.info("No messages");
+        }
+        List<DeleteMessageBatchRequestEntry> accepted = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (stopping || !freeSlots.tryAcquire()) {
+                // Message becomes visible again after visibility timeout and is processed once a slot is free, here or by another task
+                LOG.info("No free slot for message [" + message.messageId() + "]");
+                continue;
+            }
+            if (accept(message)) {
+                accepted.add(DeleteMessageBatchRequestEntry.builder()
+                        .id(String.valueOf(accepted.size()))
+                        .receiptHandle(message.receiptHandle())
+                        .build());
+            }
+        }
+        deleteMessages(accepted);
+    }
+
+    /**
+     * Waits for at least one free stream slot
+     * @return number of free slots, up to the SQS batch limit
+     */
+    private int awaitFreeSlots() {
+        freeSlots.acquireUninterruptibly();
+        int slots = Math.min(MAX_RECEIVE_BATCH, 1 + freeSlots.availablePermits());
+        freeSlots.release();
+        return slots;
+    }
+
+    /**
+     * Starts processing of the request. Slot taken for the message is released when processing ends or could not be started.
+     * @return true when the message should be deleted: task was submitted or the message can never be processed
+     */
+    private boolean accept(Message message) {
+        LOG.info("Received message [" + message.messageId() + "] from SQS: " + message.body());
+        try {
+            ProcessingRequest processingRequest = objectMapper.readValue(message.body(), ProcessingRequest.class);
+            if (processingRequest.getArchive() != null) {
+                submitArchived(processingRequest);
+            } else {
+                submitLive(processingRequest, message.body());
+            }
+            LOG.info("Message [" + message.messageId() + "] submitter for processing");
+            return true;
+        } catch (JsonProcessingException e) {
+            LOG.error("Can't deserialize message body: " + message.body(), e);
+            //We could send it to dead letter queue or raise and alert
+            freeSlots.release();
+            return true;
+        } catch (IllegalArgumentException e) {
+            LOG.error("Invalid processing request: " + message.body(), e);
+            freeSlots.release();
+            return true;
+        } catch (RuntimeException e) {
+            // Message becomes visible again after visibility timeout and is retried
+            LOG.error("Can't start processing of message [" + message.messageId() + "]", e);
+            freeSlots.release();
+            return false;
+        }
+    }
+
+    /**
+     * Requests of streams already leased by a live task are dropped, the stream is processed there
+     */
+    private void submitLive(ProcessingRequest processingRequest, String request) {
+        String streamARN = processingRequest.getStreamARN();
+        if (leaseCoordinator != null && !leaseCoordinator.claim(streamARN, request)) {
+            if (stopping) {
+                // Message is not deleted, another task processes the stream
+                throw new IllegalStateException("Shutting down, stream " + streamARN + " is left to other tasks");
+            }
+            LOG.info("Stream " + streamARN + " is already processed by another task");
+            freeSlots.release();
+            return;
+        }
+        try {
+            startLive(processingRequest);
+        } catch (RuntimeException e) {
+            if (leaseCoordinator != null) {
+                leaseCoordinator.release(streamARN);
+            }
+            throw e;
+        }
+    }
 
-        while (true) {
-            ReceiveMessageResponse response = sqsClient.receiveMessage(request);
-            List<Message> messages = response.messages();
-            if (messages.isEmpty()) {
-                LOG.info("No messages");
+    /**
+     * Starts processing of a stream whose lease was taken over from another task. Processing resumes from the last checkpoint.
+     * @return false when there is no free stream slot or the stored request can't be processed
+     */
+    private boolean takeOver(StreamLease streamLease) {
+        if (stopping || !freeSlots.tryAcquire()) {
+            return false;
+        }
+        try {
+            startLive(objectMapper.readValue(streamLease.getRequest(), ProcessingRequest.class));
+            return true;
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOG.error("Can't take over stream " + streamLease.getStreamARN() + " with request: " + streamLease.getRequest(), e);
+            freeSlots.release();
+            return false;
+        }
+    }
+
+    private void startLive(ProcessingRequest processingRequest) {
+        KinesisVideoClientRegistry.ClientLease<KinesisVideoMediaClient> lease = clientRegistry.acquireMediaClient(processingRequest.getStreamARN());
+        try {
+            ProcessingTask task = new ProcessingTask(processingRequest, sinkFor(processingRequest), lease.client(), imagePublisherThreads, backpressureSettings,
+                    checkpointStore, gopDecoder, mediaPrefetcher, null);
+            if (leaseCoordinator != null) {
+                leaseCoordinator.started(task.getStreamARN(), task);
             }
-            for (Message message : messages) {
-                LOG.info("Received message [" + message.messageId() + "] from SQS: " + message.body());
-                try {
-                    ProcessingRequest processingRequest = objectMapper.readValue(message.body(), ProcessingRequest.class);
-
-                    KinesisVideoClient client = KinesisVideoClient.builder()
-                            .credentialsProvider(credentialsProvider).region(region).build();
-
-                    GetDataEndpointRequest getDataEndpointRequest = GetDataEndpointRequest.builder()
-                            .apiName(APIName.GET_MEDIA)
-                            .streamARN(processingRequest.getStreamARN()).build();
-                    GetDataEndpointResponse dataEndpoint = client.getDataEndpoint(getDataEndpointRequest);
-
-                    KinesisVideoMediaClient mediaClient = KinesisVideoMediaClient.builder()
-                            .endpointOverride(URI.create(dataEndpoint.dataEndpoint()))
-                            .credentialsProvider(credentialsProvider).region(region).build();
-
-                    ProcessingTask task = new ProcessingTask(processingRequest.getStreamARN(), s3Client, mediaClient,
-                            processingRequest.getBucket(), processingRequest.getS3Directory(), imagePublisherThreads);
-                    executorService.submit(task);
-                    LOG.info("Message [" + message.messageId() + "] submitter for processing");
-                } catch (JsonProcessingException e) {
-                    LOG.error("Can't deserialize message body: " + message.body(), e);
-                    //We could send it to dead letter queue or raise and alert
-                } finally {
-                    sqsClient.deleteMessage(builder -> builder.queueUrl(queueUrl).receiptHandle(message.receiptHandle()));
+            track(task);
+            streamScheduler.submit(task, () -> {
+                finished(task);
+                if (leaseCoordinator != null) {
+                    leaseCoordinator.finished(task.getStreamARN(), task);
                 }
+                lease.close();
+                freeSlots.release();
+            });
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Archived video is not checkpointed, checkpoints belong to the task tailing the live stream
+     */
+    private void submitArchived(ProcessingRequest processingRequest) {
+        ArchivedFragments fragments = archiveFetcher.open(processingRequest.getStreamARN(), processingRequest.getArchive());
+        try {
+            ProcessingTask task = new ProcessingTask(processingRequest, sinkFor(processingRequest), null, imagePublisherThreads, backpressureSettings,
+                    null, gopDecoder, null, fragments);
+            track(task);
+            streamScheduler.submit(task, () -> {
+                finished(task);
+                freeSlots.release();
+            });
+        } catch (RuntimeException e) {
+            fragments.close();
+            throw e;
+        }
+    }
+
+    private FrameSink sinkFor(ProcessingRequest processingRequest) {
+        return outputDir != null
+                ? new LocalDirectorySink(LocalDirectorySink.resolveBelow(outputDir, StringUtils.defaultString(processingRequest.getBucket())))
+                : new S3FrameSink(s3Client, asyncUploader, processingRequest.getBucket());
+    }
+
+    private void deleteMessages(List<DeleteMessageBatchRequestEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            DeleteMessageBatchResponse response = sqsClient.deleteMessageBatch(builder -> builder.queueUrl(queueUrl).entries(entries));
+            for (BatchResultErrorEntry failed : response.failed()) {
+                LOG.error("Failed to delete message " + failed.id() + " of the batch: " + failed.code() + " " + failed.message());
             }
+        } catch (RuntimeException e) {
+            LOG.error("Failed to delete " + entries.size() + " messages", e);
         }
     }
 
-    public static void main(String[] args) throws ParseException {
+    public static void main(String[] args) throws ParseException, IOException {
         LOG.info("Starting Frame Splitter");
 
         CommandLineParser parser = new DefaultParser();
@@ -130,6 +427,49 @@ public class FrameSplitter {
                 .desc("AWS region where SQS is located").build();
         Option waitSecondsOption = Option.builder("w").required(false).longOpt("wait").hasArg().type(Integer.class)
                 .desc("Number of seconds to wait for SQS message on single loop. Must be >= 0 and <= 20").build();
+        Option bufferCapacityOption = Option.builder("bc").required(false).longOpt("buffer-capacity").hasArg().type(Long.class)
+                .desc("Maximum number of frames or bytes of decoded images waiting for publisher threads").build();
+        Option bufferUnitOption = Option.builder("bu").required(false).longOpt("buffer-unit").hasArg().type(String.class)
+                .desc("Unit of buffer capacity: FRAMES or BYTES").build();
+        Option bufferPolicyOption = Option.builder("bp").required(false).longOpt("buffer-policy").hasArg().type(String.class)
+                .desc("Action taken when buffer is full: BLOCK, DROP_OLDEST or DROP_NEWEST").build();
+        Option endpointTtlOption = Option.builder("et").required(false).longOpt("endpoint-ttl").hasArg().type(Integer.class)
+                .desc("Number of seconds Kinesis Video data endpoints are cached for").build();
+        Option endpointCacheSizeOption = Option.builder("es").required(false).longOpt("endpoint-cache-size").hasArg().type(Integer.class)
+                .desc("Maximum number of cached Kinesis Video data endpoints").build();
+        Option uploadModeOption = Option.builder("um").required(false).longOpt("upload-mode").hasArg().type(String.class)
+                .desc("S3 upload mode: SYNC uploads from publisher threads, ASYNC uses non-blocking S3 client").build();
+        Option uploadMaxInFlightOption = Option.builder("uf").required(false).longOpt("upload-max-in-flight").hasArg().type(Integer.class)
+                .desc("Maximum number of S3 uploads in flight in ASYNC upload mode").build();
+        Option uploadMaxAttemptsOption = Option.builder("ua").required(false).longOpt("upload-max-attempts").hasArg().type(Integer.class)
+                .desc("Maximum number of attempts of single S3 upload in ASYNC upload mode").build();
+        Option checkpointDirOption = Option.builder("cd").required(false).longOpt("checkpoint-dir").hasArg().type(String.class)
+                .desc("Directory where last processed fragment of every stream is stored. Streams are always processed from the earliest fragment when not set").build();
+        Option checkpointFragmentsOption = Option.builder("cf").required(false).longOpt("checkpoint-fragments").hasArg().type(Integer.class)
+                .desc("Number of processed fragments after which checkpoints are written").build();
+        Option checkpointIntervalOption = Option.builder("ci").required(false).longOpt("checkpoint-interval").hasArg().type(Integer.class)
+                .desc("Maximum number of seconds between checkpoint writes").build();
+        Option maxStreamsOption = Option.builder("ms").required(false).longOpt("max-streams").hasArg().type(Integer.class)
+                .desc("Maximum number of streams processed at the same time by frame splitter threads. Defaults to number of frame splitter threads").build();
+        Option streamSliceOption = Option.builder("sl").required(false).longOpt("stream-slice").hasArg().type(Long.class)
+                .desc("Number of milliseconds a stream is processed before frame splitter thread switches to another stream").build();
+        Option idleBackoffOption = Option.builder("ib").required(false).longOpt("idle-backoff").hasArg().type(Long.class)
+                .desc("Maximum number of milliseconds between retries of a stream without data").build();
+        Option decoderThreadsOption = Option.builder("dt").required(false).longOpt("decoder-threads").hasArg().type(Integer.class)
+                .desc("Number of threads decoding groups of pictures of all streams in parallel. Frames are decoded on frame splitter threads when 0").build();
+        Option mediaBufferOption = Option.builder("mb").required(false).longOpt("media-buffer").hasArg().type(Long.class)
+                .desc("Number of bytes of GetMedia response read ahead of parsing on a separate thread per stream. Media is read on frame splitter threads when 0, "
+                        + "then a stream without new data holds its thread until data arrives").build();
+        Option archiveFetchOption = Option.builder("af").required(false).longOpt("archive-fetch-concurrency").hasArg().type(Integer.class)
+                .desc("Maximum number of archived fragments fetched at the same time for requests selecting archived video").build();
+        Option outputDirOption = Option.builder("od").required(false).longOpt("output-dir").hasArg().type(String.class)
+                .desc("Local directory where images are written instead of S3, images of every request are stored below a directory named after its bucket").build();
+        Option leaseDirOption = Option.builder("ld").required(false).longOpt("lease-dir").hasArg().type(String.class)
+                .desc("Directory shared by all tasks where leases of live streams are stored, so streams are balanced between tasks and taken over from stopped ones. Requires checkpoint dir shared the same way. Every task keeps its streams when not set").build();
+        Option leaseTtlOption = Option.builder("lt").required(false).longOpt("lease-ttl").hasArg().type(Integer.class)
+                .desc("Number of seconds after which streams of a task which stopped renewing its leases are taken over").build();
+        Option metricsPortOption = Option.builder("mp").required(false).longOpt("metrics-port").hasArg().type(Integer.class)
+                .desc("Port of HTTP endpoint serving pipeline metrics as JSON at /metrics. Endpoint is disabled when 0").build();
 
         Options options = new Options()
                 .addOption(queueNameOption)
@@ -137,7 +477,28 @@ public class FrameSplitter {
                 .addOption(imagePublsherThreadsOption)
                 .addOption(profileOption)
                 .addOption(regionOption)
-                .addOption(waitSecondsOption);
+                .addOption(waitSecondsOption)
+                .addOption(bufferCapacityOption)
+                .addOption(bufferUnitOption)
+                .addOption(bufferPolicyOption)
+                .addOption(endpointTtlOption)
+                .addOption(endpointCacheSizeOption)
+                .addOption(uploadModeOption)
+                .addOption(uploadMaxInFlightOption)
+                .addOption(uploadMaxAttemptsOption)
+                .addOption(checkpointDirOption)
+                .addOption(checkpointFragmentsOption)
+                .addOption(checkpointIntervalOption)
+                .addOption(maxStreamsOption)
+                .addOption(streamSliceOption)
+                .addOption(idleBackoffOption)
+                .addOption(decoderThreadsOption)
+                .addOption(mediaBufferOption)
+                .addOption(archiveFetchOption)
+                .addOption(outputDirOption)
+                .addOption(leaseDirOption)
+                .addOption(leaseTtlOption)
+                .addOption(metricsPortOption);
         CommandLine commandLine = parser.parse(options, args);
 
         String profile = commandLine.getOptionValue(profileOption.getOpt());
@@ -149,6 +510,58 @@ public class FrameSplitter {
         }
         int frameSplitterThreads = Integer.parseInt(commandLine.getOptionValue(frameSplitterThreadsOption.getOpt(), Optional.ofNullable(System.getenv(FRAME_SPLITTER_THREADS)).orElse(FRAME_SPLITTER_THREADS_DEFAULT)));
         int imagePublisherThreads = Integer.parseInt(commandLine.getOptionValue(imagePublsherThreadsOption.getOpt(), Optional.ofNullable(System.getenv(IMAGE_PUBLISHER_THREADS)).orElse(IMAGE_PUBLISHER_THREADS_DEFAULT)));
+        long bufferCapacity = Long.parseLong(commandLine.getOptionValue(bufferCapacityOption.getOpt(), Optional.ofNullable(System.getenv(PUBLISHER_BUFFER_CAPACITY)).orElse(PUBLISHER_BUFFER_CAPACITY_DEFAULT)));
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("bufferCapacity must be > 0");
+        }
+        BackpressureSettings.Unit bufferUnit = BackpressureSettings.Unit.valueOf(commandLine.getOptionValue(bufferUnitOption.getOpt(), Optional.ofNullable(System.getenv(PUBLISHER_BUFFER_UNIT)).orElse(PUBLISHER_BUFFER_UNIT_DEFAULT)));
+        BoundedHandoff.OverflowPolicy bufferPolicy = BoundedHandoff.OverflowPolicy.valueOf(commandLine.getOptionValue(bufferPolicyOption.getOpt(), Optional.ofNullable(System.getenv(PUBLISHER_BUFFER_POLICY)).orElse(PUBLISHER_BUFFER_POLICY_DEFAULT)));
+        BackpressureSettings backpressureSettings = new BackpressureSettings(bufferCapacity, bufferUnit, bufferPolicy);
+        int endpointTtlSeconds = Integer.parseInt(commandLine.getOptionValue(endpointTtlOption.getOpt(), Optional.ofNullable(System.getenv(ENDPOINT_CACHE_TTL_SECONDS)).orElse(ENDPOINT_CACHE_TTL_SECONDS_DEFAULT)));
+        int endpointCacheSize = Integer.parseInt(commandLine.getOptionValue(endpointCacheSizeOption.getOpt(), Optional.ofNullable(System.getenv(ENDPOINT_CACHE_SIZE)).orElse(ENDPOINT_CACHE_SIZE_DEFAULT)));
+        if (endpointTtlSeconds < 0 || endpointCacheSize <= 0) {
+            throw new IllegalArgumentException("endpointTtl must be >= 0 and endpointCacheSize must be > 0");
+        }
+        String uploadMode = commandLine.getOptionValue(uploadModeOption.getOpt(), Optional.ofNullable(System.getenv(UPLOAD_MODE)).orElse(UPLOAD_MODE_SYNC));
+        if (!UPLOAD_MODE_SYNC.equals(uploadMode) && !UPLOAD_MODE_ASYNC.equals(uploadMode)) {
+            throw new IllegalArgumentException("uploadMode must be " + UPLOAD_MODE_SYNC + " or " + UPLOAD_MODE_ASYNC);
+        }
+        int uploadMaxInFlight = Integer.parseInt(commandLine.getOptionValue(uploadMaxInFlightOption.getOpt(), Optional.ofNullable(System.getenv(UPLOAD_MAX_IN_FLIGHT)).orElse(UPLOAD_MAX_IN_FLIGHT_DEFAULT)));
+        int uploadMaxAttempts = Integer.parseInt(commandLine.getOptionValue(uploadMaxAttemptsOption.getOpt(), Optional.ofNullable(System.getenv(UPLOAD_MAX_ATTEMPTS)).orElse(UPLOAD_MAX_ATTEMPTS_DEFAULT)));
+        int maxStreams = Integer.parseInt(commandLine.getOptionValue(maxStreamsOption.getOpt(), Optional.ofNullable(System.getenv(MAX_STREAMS)).orElse(String.valueOf(frameSplitterThreads))));
+        if (maxStreams <= 0) {
+            throw new IllegalArgumentException("maxStreams must be > 0");
+        }
+        long streamSliceMillis = Long.parseLong(commandLine.getOptionValue(streamSliceOption.getOpt(), Optional.ofNullable(System.getenv(STREAM_SLICE_MILLIS)).orElse(STREAM_SLICE_MILLIS_DEFAULT)));
+        long idleBackoffMaxMillis = Long.parseLong(commandLine.getOptionValue(idleBackoffOption.getOpt(), Optional.ofNullable(System.getenv(IDLE_BACKOFF_MAX_MILLIS)).orElse(IDLE_BACKOFF_MAX_MILLIS_DEFAULT)));
+        int decoderThreads = Integer.parseInt(commandLine.getOptionValue(decoderThreadsOption.getOpt(), Optional.ofNullable(System.getenv(DECODER_THREADS)).orElse(DECODER_THREADS_DEFAULT)));
+        if (decoderThreads < 0) {
+            throw new IllegalArgumentException("decoderThreads must be >= 0");
+        }
+        long mediaBufferBytes = Long.parseLong(commandLine.getOptionValue(mediaBufferOption.getOpt(), Optional.ofNullable(System.getenv(MEDIA_BUFFER_BYTES)).orElse(MEDIA_BUFFER_BYTES_DEFAULT)));
+        if (mediaBufferBytes < 0) {
+            throw new IllegalArgumentException("mediaBufferBytes must be >= 0");
+        }
+        int archiveFetchConcurrency = Integer.parseInt(commandLine.getOptionValue(archiveFetchOption.getOpt(), Optional.ofNullable(System.getenv(ARCHIVE_FETCH_CONCURRENCY)).orElse(ARCHIVE_FETCH_CONCURRENCY_DEFAULT)));
+        if (archiveFetchConcurrency <= 0) {
+            throw new IllegalArgumentException("archiveFetchConcurrency must be > 0");
+        }
+        int metricsPort = Integer.parseInt(commandLine.getOptionValue(metricsPortOption.getOpt(), Optional.ofNullable(System.getenv(METRICS_PORT)).orElse(METRICS_PORT_DEFAULT)));
+        if (metricsPort < 0) {
+            throw new IllegalArgumentException("metricsPort must be >= 0");
+        }
+        String outputDir = commandLine.getOptionValue(outputDirOption.getOpt(), System.getenv(OUTPUT_DIR));
+        String checkpointDir = commandLine.getOptionValue(checkpointDirOption.getOpt(), System.getenv(CHECKPOINT_DIR));
+        int checkpointFragments = Integer.parseInt(commandLine.getOptionValue(checkpointFragmentsOption.getOpt(), Optional.ofNullable(System.getenv(CHECKPOINT_FRAGMENTS)).orElse(CHECKPOINT_FRAGMENTS_DEFAULT)));
+        int checkpointIntervalSeconds = Integer.parseInt(commandLine.getOptionValue(checkpointIntervalOption.getOpt(), Optional.ofNullable(System.getenv(CHECKPOINT_INTERVAL_SECONDS)).orElse(CHECKPOINT_INTERVAL_SECONDS_DEFAULT)));
+        String leaseDir = commandLine.getOptionValue(leaseDirOption.getOpt(), System.getenv(LEASE_DIR));
+        int leaseTtlSeconds = Integer.parseInt(commandLine.getOptionValue(leaseTtlOption.getOpt(), Optional.ofNullable(System.getenv(LEASE_TTL_SECONDS)).orElse(LEASE_TTL_SECONDS_DEFAULT)));
+        if (leaseTtlSeconds <= 0) {
+            throw new IllegalArgumentException("leaseTtl must be > 0");
+        }
+        if (StringUtils.isNotBlank(leaseDir) && StringUtils.isBlank(checkpointDir)) {
+            throw new IllegalArgumentException("leaseDir requires checkpointDir, streams taken over resume from the last checkpoint");
+        }
 
         if (StringUtils.isBlank(regionStr) || StringUtils.isBlank(queueName)) {
             throw new IllegalArgumentException("Region and queue name is required");
@@ -161,6 +574,28 @@ public class FrameSplitter {
         GetQueueUrlResponse queueUrlResponse = sqsClient.getQueueUrl(builder -> builder.queueName(queueName));
 
         S3Client s3Client = S3Client.builder().credentialsProvider(credentialsProvider).region(region).build();
+        AsyncUploader asyncUploader = null;
+        if (UPLOAD_MODE_ASYNC.equals(uploadMode)) {
+            // Retries are done by AsyncUploader with jittered backoff
+            S3AsyncClient s3AsyncClient = S3AsyncClient.builder().credentialsProvider(credentialsProvider).region(region)
+                    .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(uploadMaxInFlight))
+                    .overrideConfiguration(builder -> builder.retryPolicy(RetryPolicy.none()))
+                    .build();
+            asyncUploader = new AsyncUploader(s3AsyncClient, uploadMaxInFlight, uploadMaxAttempts);
+        }
+        CheckpointStore checkpointStore = null;
+        if (StringUtils.isNotBlank(checkpointDir)) {
+            checkpointStore = new BatchingCheckpointStore(new FileCheckpointStore(Paths.get(checkpointDir)), checkpointFragments, Duration.ofSeconds(checkpointIntervalSeconds));
+        }
+        LeaseCoordinator leaseCoordinator = null;
+        if (StringUtils.isNotBlank(leaseDir)) {
+            leaseCoordinator = new LeaseCoordinator(new FileLeaseStore(Paths.get(leaseDir)), UUID.randomUUID().toString(), Duration.ofSeconds(leaseTtlSeconds));
+        }
+        GopDecoder gopDecoder = decoderThreads > 0 ? new GopDecoder(decoderThreads) : null;
+        MediaPrefetcher mediaPrefetcher = mediaBufferBytes > 0 ? new MediaPrefetcher(mediaBufferBytes) : null;
+        StreamScheduler streamScheduler = new StreamScheduler(frameSplitterThreads, streamSliceMillis, idleBackoffMaxMillis);
+        KinesisVideoClientRegistry clientRegistry = new KinesisVideoClientRegistry(region, credentialsProvider, Duration.ofSeconds(endpointTtlSeconds), endpointCacheSize);
+        ArchiveFetcher archiveFetcher = new ArchiveFetcher(clientRegistry, archiveFetchConcurrency);
 
         String paramsStr = StringUtils.joinWith(" ",
                 "profile: ", profile, "|",
@@ -169,9 +604,37 @@ public class FrameSplitter {
                 "queueUrl:", queueUrlResponse.queueUrl(), "|",
                 "waitSeconds:", waitSeconds, "|",
                 "frameSplitterThreads:", frameSplitterThreads, "|",
-                "imagePublisherThreads:", imagePublisherThreads);
+                "imagePublisherThreads:", imagePublisherThreads, "|",
+                "publisherBuffer:", backpressureSettings, "|",
+                "endpointTtlSeconds:", endpointTtlSeconds, "|",
+                "endpointCacheSize:", endpointCacheSize, "|",
+                "uploadMode:", uploadMode, "|",
+                "uploadMaxInFlight:", uploadMaxInFlight, "|",
+                "uploadMaxAttempts:", uploadMaxAttempts, "|",
+                "checkpointDir:", checkpointDir, "|",
+                "checkpointFragments:", checkpointFragments, "|",
+                "checkpointIntervalSeconds:", checkpointIntervalSeconds, "|",
+                "maxStreams:", maxStreams, "|",
+                "streamSliceMillis:", streamSliceMillis, "|",
+                "idleBackoffMaxMillis:", idleBackoffMaxMillis, "|",
+                "decoderThreads:", decoderThreads, "|",
+                "mediaBufferBytes:", mediaBufferBytes, "|",
+                "archiveFetchConcurrency:", archiveFetchConcurrency, "|",
+                "outputDir:", outputDir, "|",
+                "leaseDir:", leaseDir, "|",
+                "leaseTtlSeconds:", leaseTtlSeconds, "|",
+                "metricsPort:", metricsPort);
         LOG.info("Running with params: " + paramsStr);
-        new FrameSplitter(region, credentialsProvider, sqsClient, s3Client, queueUrlResponse.queueUrl(), waitSeconds, frameSplitterThreads, imagePublisherThreads).start();
+        if (metricsPort > 0) {
+            MetricsServer metricsServer = new MetricsServer(metricsPort);
+            Runtime.getRuntime().addShutdownHook(new Thread(metricsServer::close));
+        }
+        FrameSplitter frameSplitter = new FrameSplitter(clientRegistry, sqsClient, s3Client, asyncUploader, queueUrlResponse.queueUrl(), waitSeconds,
+                streamScheduler, maxStreams, imagePublisherThreads, backpressureSettings, checkpointStore, gopDecoder, mediaPrefetcher, archiveFetcher,
+                StringUtils.isNotBlank(outputDir) ? Paths.get(outputDir) : null, leaseCoordinator);
+        // Container is stopped with SIGTERM on redeploy and scale-in: tasks are stopped, checkpoints written, then leases released
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> frameSplitter.shutdown(SHUTDOWN_TIMEOUT)));
+        frameSplitter.start();
     }
 
 }
@@ -0,0 +1,59 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pool of H.264 decoders shared by all streams. {@link FramePublishingDecoder} sends every group of pictures (GOP),
+ * a keyframe with the frames depending on it, to a single decoder, so GOPs of one stream are decoded in parallel.
+ * Every pool thread owns one decoder. Decoder state does not leak between GOPs because decoding restarts at the keyframe.
+ */
+public class GopDecoder implements AutoCloseable {
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final ThreadLocal<YuvFrameDecoder> decoders = ThreadLocal.withInitial(YuvFrameDecoder::new);
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+
+    /**
+     * @param threads - number of decoder threads, usually number of cores
+     */
+    public GopDecoder(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be > 0");
+        }
+        this.threads = threads;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "gop-decoder-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of GOPs waiting for a free decoder
+     */
+    public int queuedGops() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Runs decoding of a single GOP on a pool thread
+     * @param gop - decodes frames of the GOP in order with given decoder, which must not be used after the function returns
+     */
+    public <T> Future<T> submit(Function<YuvFrameDecoder, T> gop) {
+        return executor.submit(() -> gop.apply(decoders.get()));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,174 @@
+package amazon.awscdk.examples.splitter;
+
+import org.jcodec.common.model.Picture;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.List;
+
+/**
+ * Produces images described by {@link ImageSettings}.
+ * Gray images are sampled straight from the Y plane of the decoded picture, every target pixel averaging the source pixels it covers,
+ * so scaling happens in the same pass and no full size image is allocated. Color images are scaled after RGB conversion.
+ * With several {@link Rendition}s the frame is decoded once by {@link #forDecoding(List)} converter and every rendition
+ * is derived from that image with {@link #convert(BufferedImage)}.
+ */
+public class ImageConverter {
+    private final ImageSettings.Color color;
+    private final int width;
+    private final int height;
+
+    public ImageConverter(ImageSettings settings) {
+        if (settings.getColor() == null || settings.getWidth() < 0 || settings.getHeight() < 0) {
+            throw new IllegalArgumentException("color is required, width and height must be >= 0");
+        }
+        this.color = settings.getColor();
+        this.width = settings.getWidth();
+        this.height = settings.getHeight();
+    }
+
+    /**
+     * Converter producing the image all renditions are derived from: decoded straight to the rendition size when all renditions
+     * agree on it, and to gray when no rendition needs color
+     */
+    public static ImageConverter forDecoding(List<Rendition> renditions) {
+        Rendition first = renditions.get(0);
+        ImageSettings settings = new ImageSettings();
+        boolean sameSize = renditions.stream().allMatch(rendition -> rendition.getImage().getWidth() == first.getImage().getWidth()
+                && rendition.getImage().getHeight() == first.getImage().getHeight());
+        if (sameSize) {
+            settings.setWidth(first.getImage().getWidth());
+            settings.setHeight(first.getImage().getHeight());
+        }
+        if (renditions.stream().allMatch(rendition -> rendition.getImage().getColor() == ImageSettings.Color.GRAY)) {
+            settings.setColor(ImageSettings.Color.GRAY);
+        }
+        return new ImageConverter(settings);
+    }
+
+    public boolean isGray() {
+        return color == ImageSettings.Color.GRAY;
+    }
+
+    /**
+     * @param picture - decoded YUV picture, null gives a black image
+     * @param sourceWidth - visible width of the picture
+     * @param sourceHeight - visible height of the picture
+     * @return 8 bit gray image of the target size
+     */
+    public BufferedImage luma(Picture picture, int sourceWidth, int sourceHeight) {
+        int targetWidth = targetWidth(sourceWidth, sourceHeight);
+        int targetHeight = targetHeight(sourceWidth, sourceHeight);
+        BufferedImage image = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_BYTE_GRAY);
+        if (picture == null) {
+            return image;
+        }
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        byte[] luma = picture.getPlaneData(0);
+        int stride = picture.getPlaneWidth(0);
+        int visibleWidth = Math.min(sourceWidth, stride);
+        int visibleHeight = Math.min(sourceHeight, picture.getPlaneHeight(0));
+        // jcodec stores samples shifted to signed range
+        if (targetWidth == visibleWidth && targetHeight == visibleHeight) {
+            for (int y = 0; y < targetHeight; y++) {
+                int row = y * stride;
+                int target = y * targetWidth;
+                for (int x = 0; x < targetWidth; x++) {
+                    pixels[target + x] = (byte) (luma[row + x] + 128);
+                }
+            }
+            return image;
+        }
+        int[] columnStarts = new int[targetWidth + 1];
+        for (int x = 0; x <= targetWidth; x++) {
+            columnStarts[x] = (int) ((long) x * visibleWidth / targetWidth);
+        }
+        for (int y = 0; y < targetHeight; y++) {
+            int rowStart = (int) ((long) y * visibleHeight / targetHeight);
+            int rowEnd = Math.max(rowStart + 1, (int) ((long) (y + 1) * visibleHeight / targetHeight));
+            for (int x = 0; x < targetWidth; x++) {
+                int columnStart = columnStarts[x];
+                int columnEnd = Math.max(columnStart + 1, columnStarts[x + 1]);
+                int sum = 0;
+                for (int row = rowStart; row < rowEnd; row++) {
+                    int offset = row * stride;
+                    for (int column = columnStart; column < columnEnd; column++) {
+                        sum += luma[offset + column] + 128;
+                    }
+                }
+                pixels[y * targetWidth + x] = (byte) (sum / ((rowEnd - rowStart) * (columnEnd - columnStart)));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Derives rendition from decoded image, color images are turned to gray when the rendition is gray
+     * @return given image when it already has the target size and color
+     */
+    public BufferedImage convert(BufferedImage image) {
+        BufferedImage scaled = scale(image);
+        if (!isGray() || scaled.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return scaled;
+        }
+        BufferedImage gray = new BufferedImage(scaled.getWidth(), scaled.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        if (scaled.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] bgr = ((DataBufferByte) scaled.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = (byte) luminance(bgr[3 * i + 2] & 0xFF, bgr[3 * i + 1] & 0xFF, bgr[3 * i] & 0xFF);
+            }
+        } else {
+            for (int y = 0; y < scaled.getHeight(); y++) {
+                for (int x = 0; x < scaled.getWidth(); x++) {
+                    int rgb = scaled.getRGB(x, y);
+                    pixels[y * scaled.getWidth() + x] = (byte) luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                }
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * BT.601 luma, the weights used by H.264 for Y
+     */
+    private static int luminance(int red, int green, int blue) {
+        return (77 * red + 150 * green + 29 * blue) >> 8;
+    }
+
+    /**
+     * @return given image when no target size is set, otherwise a scaled copy
+     */
+    public BufferedImage scale(BufferedImage image) {
+        int targetWidth = targetWidth(image.getWidth(), image.getHeight());
+        int targetHeight = targetHeight(image.getWidth(), image.getHeight());
+        if (targetWidth == image.getWidth() && targetHeight == image.getHeight()) {
+            return image;
+        }
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, image.getType());
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    int targetWidth(int sourceWidth, int sourceHeight) {
+        if (width > 0) {
+            return width;
+        }
+        return height > 0 ? Math.max(1, Math.round((float) sourceWidth * height / sourceHeight)) : sourceWidth;
+    }
+
+    int targetHeight(int sourceWidth, int sourceHeight) {
+        if (height > 0) {
+            return height;
+        }
+        return width > 0 ? Math.max(1, Math.round((float) sourceHeight * width / sourceWidth)) : sourceHeight;
+    }
+}
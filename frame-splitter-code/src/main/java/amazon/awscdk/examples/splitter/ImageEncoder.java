@@ -0,0 +1,83 @@
+package amazon.awscdk.examples.splitter;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Encodes images according to {@link EncoderSettings}. {@link ImageWriter} and output buffer are reused between images,
+ * so a single instance must be used by one thread at a time.
+ */
+public class ImageEncoder implements AutoCloseable {
+    private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+
+    private final EncoderSettings.Format format;
+    private final ImageWriter writer;
+    private final ImageWriteParam writeParam;
+    private final ReusableOutputStream buffer = new ReusableOutputStream(INITIAL_BUFFER_SIZE);
+
+    public ImageEncoder(EncoderSettings settings) {
+        this.format = settings.getFormat();
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.name().toLowerCase());
+        if (!writers.hasNext()) {
+            throw new IllegalArgumentException("No image writer for format " + format);
+        }
+        writer = writers.next();
+        writeParam = writer.getDefaultWriteParam();
+        Float compressionQuality = null;
+        if (format == EncoderSettings.Format.PNG && settings.getCompressionLevel() != null) {
+            int level = settings.getCompressionLevel();
+            if (level < 0 || level > 9) {
+                throw new IllegalArgumentException("compressionLevel must be >= 0 and <= 9");
+            }
+            // PNG writer maps quality 1.0 to deflate level 0 and quality 0.0 to level 9
+            compressionQuality = 1.0f - level / 9.0f;
+        } else if (format == EncoderSettings.Format.JPEG && settings.getQuality() != null) {
+            if (settings.getQuality() < 0 || settings.getQuality() > 1) {
+                throw new IllegalArgumentException("quality must be >= 0.0 and <= 1.0");
+            }
+            compressionQuality = settings.getQuality();
+        }
+        if (compressionQuality != null && writeParam.canWriteCompressed()) {
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(compressionQuality);
+        }
+    }
+
+    public String extension() {
+        return format.getExtension();
+    }
+
+    public String contentType() {
+        return format.getContentType();
+    }
+
+    /**
+     * Encodes image into internal buffer
+     * @param image - image to encode
+     * @return view of encoded bytes, valid until next call of this method
+     * @throws IOException when image can't be encoded
+     */
+    public ByteBuffer encode(BufferedImage image) throws IOException {
+        buffer.reset();
+        try (ImageOutputStream outputStream = new MemoryCacheImageOutputStream(buffer)) {
+            writer.setOutput(outputStream);
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+        } finally {
+            writer.setOutput(null);
+        }
+        return buffer.view();
+    }
+
+    @Override
+    public void close() {
+        writer.dispose();
+    }
+}
@@ -1,89 +1,633 @@
 package amazon.awscdk.examples.splitter;
 
-import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Optional;
-import java.util.concurrent.Callable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Class used to publish images to S3 bucket.
+ * Class used to publish images to S3 bucket or other {@link FrameSink}.
+ * Images are passed to publisher threads through a {@link BoundedHandoff}, so the amount of decoded images kept in memory
+ * does not depend on upload speed.
+ * When the sink writes asynchronously, publisher threads only encode images and uploads run in the background.
+ * In {@link OutputSettings.Mode#ARCHIVE} mode encoded images are collected in {@link FrameArchive}s instead of being uploaded one by one.
+ * Every published frame produces an image per {@link Rendition}, each rendition is converted and encoded as a separate task
+ * on publisher threads.
+ * With {@link OutputSettings#getIndexWindowMillis()} set, written images of every rendition are listed in {@link FrameIndexChunk}s.
+ * An image then counts as stored for {@link #checkpoint(Runnable)} only once its chunk is written, so a saved checkpoint
+ * never skips frames missing from the index.
+ * <p>
+ * Images and archives are named after the frame timestamp, so a stream resumed from a checkpoint or taken over by another
+ * instance writes frames it has already seen under the same names instead of overwriting earlier images.
  */
 public class ImagePublisher {
     private static final Logger LOG = LoggerFactory.getLogger(ImagePublisher.class);
-    private final S3Client s3Client;
-    private final String bucket;
-    private String directory;
+    private static final String ARCHIVE_CONTENT_TYPE = "application/x-tar";
+    private static final String INDEX_CONTENT_TYPE = "application/json";
+    private final FrameSink sink;
+    private final List<RenditionOutput> outputs = new ArrayList<>();
     private final ExecutorService executorService;
+    private final BoundedHandoff<InternalTask> handoff;
+    private final Phaser pendingUploads = new Phaser(1);
+    private final OutputSettings outputSettings;
+    /**
+     * Writes archives and index chunks in order and seals timed out index windows, null when neither archives nor index are enabled
+     */
+    private final ScheduledExecutorService backgroundExecutor;
+    private final StreamMetrics metrics;
+    /**
+     * Images published since each {@link #checkpoint(Runnable)} call, the last one collects newly published images
+     */
+    private final Deque<PendingCheckpoint> checkpoints = new ArrayDeque<>();
     private BigInteger counter = BigInteger.ONE;
+    private long lastTimestampMillis = Long.MIN_VALUE;
+    private int sameTimestampFrames;
 
     public ImagePublisher(S3Client s3Client, String bucket, String directory, int threadsNumber) {
-        this.s3Client = s3Client;
-        this.bucket = bucket;
-        this.directory = directory;
+        this(new S3FrameSink(s3Client, null, bucket), createRequest(directory).effectiveRenditions(), threadsNumber, BackpressureSettings.defaults(),
+                new OutputSettings(), new StreamMetrics());
+    }
+
+    /**
+     * @param sink - destination of encoded images, e.g. {@link S3FrameSink}
+     * @param renditions - images published for every frame, directories must differ
+     * @param metrics - counters of the published stream
+     */
+    public ImagePublisher(FrameSink sink, List<Rendition> renditions, int threadsNumber, BackpressureSettings backpressureSettings, OutputSettings outputSettings,
+                          StreamMetrics metrics) {
+        // Fail fast on invalid settings instead of in publisher threads
+        if (outputSettings.getWindowMillis() < 0 || outputSettings.getIndexWindowMillis() < 0) {
+            throw new IllegalArgumentException("windowMillis and indexWindowMillis must be >= 0");
+        }
+        if (renditions.isEmpty()) {
+            throw new IllegalArgumentException("At least one rendition is required");
+        }
+        Set<String> directories = new HashSet<>();
+        for (Rendition rendition : renditions) {
+            if (rendition.getS3Directory() == null) {
+                throw new IllegalArgumentException("s3Directory is required");
+            }
+            RenditionOutput output = new RenditionOutput(rendition);
+            if (!directories.add(output.directory)) {
+                throw new IllegalArgumentException("Renditions must have different s3Directory: " + rendition.getS3Directory());
+            }
+            outputs.add(output);
+        }
+        this.outputSettings = outputSettings;
+        this.metrics = metrics;
+        this.sink = sink;
+        checkpoints.add(new PendingCheckpoint());
+        handoff = backpressureSettings.createHandoff(task -> task.bufferedImage, task -> {
+            task.outcome.dropped();
+            task.dropped();
+        });
+        metrics.setPublisherQueueDepth(handoff::size);
+        backgroundExecutor = outputSettings.getMode() == OutputSettings.Mode.ARCHIVE || outputSettings.getIndexWindowMillis() > 0
+                ? createBackgroundExecutor() : null;
         executorService = Executors.newFixedThreadPool(threadsNumber);
+        for (int i = 0; i < threadsNumber; i++) {
+            executorService.submit(this::drain);
+        }
     }
 
     /**
-     * Converts received image bytes to image file and stores it in S3 bucket
+     * Timers of index windows are dropped on shutdown, {@link #close()} seals remaining windows itself
+     */
+    private static ScheduledExecutorService createBackgroundExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    private static ProcessingRequest createRequest(String directory) {
+        ProcessingRequest processingRequest = new ProcessingRequest();
+        processingRequest.setS3Directory(directory);
+        return processingRequest;
+    }
+
+    /**
+     * Converts received image bytes to image files of all renditions and stores them in the sink.
+     * Depending on {@link BoundedHandoff.OverflowPolicy} it waits for free capacity or drops images when publisher threads fall behind.
      * @param bufferedImage - image bytes
+     * @param metadata - origin of the image
      */
-    public void publish(BufferedImage bufferedImage) {
-        LOG.info("Publishing image no.: " + counter.toString());
-        directory = directory.endsWith("/") ? directory : directory + "/";
-        String key = directory +counter.toString();
-        executorService.submit(new InternalTask(bufferedImage, s3Client, bucket, key, "png"));
+    public void publish(BufferedImage bufferedImage, FrameMetadata metadata) {
+        LOG.debug("Publishing image no.: " + counter.toString());
+        String name = frameName(metadata);
+        FrameOutcome outcome = new FrameOutcome(metrics, outputs.size());
+        for (int i = 0; i < outputs.size(); i++) {
+            RenditionOutput output = outputs.get(i);
+            PendingCheckpoint checkpoint = register();
+            InternalTask task = new InternalTask(bufferedImage, sink, output, name, counter.longValue(), metadata,
+                    archiveFor(output, metadata, name), indexChunkFor(output, metadata), outcome, () -> release(checkpoint));
+            try {
+                if (!handoff.offer(task)) {
+                    LOG.debug("Image no. " + counter + " dropped, publisher queue is full");
+                }
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while waiting for publisher queue, image no. " + counter + " dropped");
+                // Renditions which were not offered are dropped as well
+                for (int skipped = i; skipped < outputs.size(); skipped++) {
+                    outcome.dropped();
+                }
+                task.dropped();
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
         counter = counter.add(BigInteger.ONE);
     }
 
-    private static class InternalTask implements Callable<Boolean> {
+    /**
+     * Name of the image derived from its position in the stream. Frames sharing a timestamp are numbered in the order of publishing.
+     */
+    private String frameName(FrameMetadata metadata) {
+        long timestampMillis = metadata.getTimestampMillis();
+        if (timestampMillis == lastTimestampMillis) {
+            return timestampMillis + "-" + (++sameTimestampFrames);
+        }
+        lastTimestampMillis = timestampMillis;
+        sameTimestampFrames = 0;
+        return String.valueOf(timestampMillis);
+    }
+
+    /**
+     * Runs the action once every image published before the call is stored, dropped or failed. Archived images are stored
+     * when their archive is written, indexed images when their index chunk is written. Actions run in the order of calls, on the thread finishing the last image,
+     * or right away when no image is pending.
+     * @param action - e.g. saving checkpoint of the fragment whose images were published
+     */
+    public void checkpoint(Runnable action) {
+        PendingCheckpoint sealed;
+        synchronized (checkpoints) {
+            sealed = checkpoints.peekLast();
+            sealed.action = action;
+            checkpoints.add(new PendingCheckpoint());
+        }
+        release(sealed);
+    }
+
+    private PendingCheckpoint register() {
+        synchronized (checkpoints) {
+            PendingCheckpoint checkpoint = checkpoints.peekLast();
+            checkpoint.pending++;
+            return checkpoint;
+        }
+    }
+
+    private void release(PendingCheckpoint checkpoint) {
+        synchronized (checkpoints) {
+            checkpoint.pending--;
+            // The last checkpoint is not sealed yet and always has a pending slot
+            while (checkpoints.peek().pending == 0) {
+                try {
+                    checkpoints.poll().action.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Checkpoint action failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of images dropped because publisher queue was full
+     */
+    public long getDroppedCount() {
+        return handoff.droppedCount();
+    }
+
+    public StreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops accepting new images and waits until already queued images are published
+     */
+    public void close() {
+        handoff.close();
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Image publisher threads did not finish in time");
+            }
+            if (backgroundExecutor != null) {
+                for (RenditionOutput output : outputs) {
+                    if (output.archive != null) {
+                        output.archive.seal();
+                        output.archive = null;
+                    }
+                    if (output.indexChunk != null) {
+                        output.indexChunk.seal();
+                        output.indexChunk = null;
+                    }
+                }
+                // Index chunks complete when the last write of their window does, background thread must still accept them
+                try {
+                    pendingUploads.awaitAdvanceInterruptibly(pendingUploads.arrive(), 1, TimeUnit.MINUTES);
+                } catch (TimeoutException e) {
+                    LOG.warn("Index chunks did not complete in time");
+                }
+                backgroundExecutor.shutdown();
+                if (!backgroundExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOG.warn("Archive and index uploads did not finish in time");
+                }
+            }
+            pendingUploads.awaitAdvanceInterruptibly(pendingUploads.arrive(), 1, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            LOG.warn("Image uploads did not finish in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (RenditionOutput output : outputs) {
+            ImageEncoder encoder;
+            while ((encoder = output.idleEncoders.poll()) != null) {
+                encoder.close();
+            }
+        }
+    }
+
+    /**
+     * Returns archive collecting given frame, sealing the previous one when the frame starts a new fragment or time window
+     * @return archive or null when images are published as separate objects
+     */
+    private FrameArchive archiveFor(RenditionOutput output, FrameMetadata metadata, String name) {
+        if (outputSettings.getMode() != OutputSettings.Mode.ARCHIVE) {
+            return null;
+        }
+        Object window = outputSettings.getWindowMillis() > 0
+                ? Math.floorDiv(metadata.getTimestampMillis(), outputSettings.getWindowMillis())
+                : metadata.getFragmentNumber();
+        if (output.archive == null || !Objects.equals(window, output.archiveWindow)) {
+            if (output.archive != null) {
+                output.archive.seal();
+            }
+            output.archive = new FrameArchive(output.directory + "archive-" + name, completed -> backgroundExecutor.submit(() -> uploadArchive(completed)));
+            output.archiveWindow = window;
+        }
+        output.archive.expect();
+        return output.archive;
+    }
+
+    /**
+     * Returns index chunk listing given frame, sealing the previous one when the frame starts a new index window.
+     * A live stream may not publish the next window for a long time, so a chunk is also sealed once no frame of it arrived
+     * for a window length. Later frames of its window go to a new chunk of the same window.
+     * Every chunk is a pending upload until it is written, so {@link #close()} can wait for chunks completed by write callbacks.
+     * @return chunk or null when no index is written
+     */
+    private FrameIndexChunk indexChunkFor(RenditionOutput output, FrameMetadata metadata) {
+        long indexWindowMillis = outputSettings.getIndexWindowMillis();
+        if (indexWindowMillis == 0) {
+            return null;
+        }
+        long windowStart = Math.floorDiv(metadata.getTimestampMillis(), indexWindowMillis) * indexWindowMillis;
+        if (output.indexChunk != null && output.indexChunk.getWindowStartMillis() == windowStart && output.indexChunk.expect()) {
+            return output.indexChunk;
+        }
+        if (output.indexChunk != null) {
+            output.indexChunk.seal();
+        }
+        pendingUploads.register();
+        FrameIndexChunk chunk = new FrameIndexChunk(output.directory, windowStart, indexWindowMillis,
+                completed -> backgroundExecutor.submit(() -> uploadIndexChunk(completed)));
+        chunk.expect();
+        sealWhenIdle(chunk, indexWindowMillis);
+        output.indexChunk = chunk;
+        return chunk;
+    }
+
+    private void sealWhenIdle(FrameIndexChunk chunk, long indexWindowMillis) {
+        backgroundExecutor.schedule(() -> {
+            if (!chunk.sealIfIdle()) {
+                sealWhenIdle(chunk, indexWindowMillis);
+            }
+        }, indexWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stores completed index chunk, runs on the background thread.
+     * Images listed in the chunk are stored once the write finishes, successfully or not.
+     */
+    private void uploadIndexChunk(FrameIndexChunk completed) {
+        CompletableFuture<Void> write = CompletableFuture.completedFuture(null);
+        try {
+            if (!completed.isEmpty()) {
+                write = upload(completed.getKey(), ByteBuffer.wrap(completed.bytes()), INDEX_CONTENT_TYPE);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to write index chunk: " + sink.describe(completed.getKey()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            write.whenComplete((result, error) -> completed.stored());
+            pendingUploads.arriveAndDeregister();
+        }
+    }
+
+    /**
+     * Stores completed archive and its index, runs on the background thread so archives are written in order.
+     * Images of the archive are stored once both writes finish, successfully or not.
+     */
+    private void uploadArchive(FrameArchive completed) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        try {
+            if (!completed.isEmpty()) {
+                writes.add(upload(completed.getTarKey(), completed.tarBytes(), ARCHIVE_CONTENT_TYPE));
+                writes.add(upload(completed.getIndexKey(), ByteBuffer.wrap(completed.indexBytes()), INDEX_CONTENT_TYPE));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to write archive: " + sink.describe(completed.getTarKey()), e);
+            writes.add(CompletableFuture.failedFuture(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writes.add(CompletableFuture.failedFuture(e));
+        }
+        CompletableFuture.allOf(writes.toArray(CompletableFuture<?>[]::new)).whenComplete((result, error) -> completed.stored(error));
+    }
+
+    /**
+     * @return completed when the write finished, exceptionally when it failed
+     */
+    private CompletableFuture<Void> upload(String key, ByteBuffer bytes, String contentType) throws InterruptedException {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        pendingUploads.register();
+        try {
+            sink.write(key, bytes, contentType, error -> {
+                if (error != null) {
+                    LOG.error("Failed to write: " + sink.describe(key), error);
+                    written.completeExceptionally(error);
+                } else {
+                    LOG.debug("Successfully published: " + sink.describe(key));
+                    written.complete(null);
+                }
+                pendingUploads.arriveAndDeregister();
+            });
+        } catch (InterruptedException e) {
+            pendingUploads.arriveAndDeregister();
+            throw e;
+        }
+        return written;
+    }
+
+    /**
+     * Publisher thread loop. {@link ImageEncoder}s are reused, so image writers and buffers are not created for every image.
+     * An encoder stays borrowed until upload of its buffer completes.
+     */
+    private void drain() {
+        try {
+            InternalTask task;
+            while ((task = handoff.take()) != null) {
+                RenditionOutput output = task.output;
+                ImageEncoder encoder = output.borrowEncoder();
+                // Archived images are copied into the archive, so encoder is free right after encoding
+                if (task.archive != null) {
+                    try {
+                        task.archive(encoder);
+                    } catch (IOException | RuntimeException e) {
+                        task.outcome.failed();
+                        LOG.error("Failed to publish image " + task.key, e);
+                    } finally {
+                        output.idleEncoders.add(encoder);
+                    }
+                } else {
+                    pendingUploads.register();
+                    try {
+                        task.call(encoder, () -> {
+                            output.idleEncoders.add(encoder);
+                            pendingUploads.arriveAndDeregister();
+                        });
+                    } catch (IOException | RuntimeException e) {
+                        task.outcome.failed();
+                        LOG.error("Failed to publish image " + task.key, e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Per rendition state: converter, pooled encoders and the archive being collected
+     */
+    private static class RenditionOutput {
+        private final String directory;
+        private final EncoderSettings encoderSettings;
+        private final ImageConverter converter;
+        private final ConcurrentLinkedQueue<ImageEncoder> idleEncoders = new ConcurrentLinkedQueue<>();
+        private FrameArchive archive;
+        private Object archiveWindow;
+        private FrameIndexChunk indexChunk;
+
+        RenditionOutput(Rendition rendition) {
+            String directory = rendition.getS3Directory();
+            this.directory = directory.endsWith("/") ? directory : directory + "/";
+            this.encoderSettings = rendition.getEncoder();
+            this.converter = new ImageConverter(rendition.getImage());
+            idleEncoders.add(new ImageEncoder(encoderSettings));
+        }
+
+        ImageEncoder borrowEncoder() {
+            ImageEncoder encoder = idleEncoders.poll();
+            return encoder != null ? encoder : new ImageEncoder(encoderSettings);
+        }
+    }
+
+    /**
+     * Images published between two {@link #checkpoint(Runnable)} calls. One pending slot is held until the checkpoint is sealed.
+     */
+    private static class PendingCheckpoint {
+        private int pending = 1;
+        private Runnable action;
+    }
+
+    /**
+     * Results of all renditions of a single frame, the frame is counted once in {@link StreamMetrics} after its last rendition.
+     * It counts as failed when any rendition failed, as dropped when any rendition was dropped and as published otherwise.
+     */
+    private static class FrameOutcome {
+        private final StreamMetrics metrics;
+        private int pending;
+        private boolean dropped;
+        private boolean failed;
+
+        FrameOutcome(StreamMetrics metrics, int renditions) {
+            this.metrics = metrics;
+            this.pending = renditions;
+        }
+
+        void published() {
+            finished(false, false);
+        }
+
+        void dropped() {
+            finished(true, false);
+        }
+
+        void failed() {
+            finished(false, true);
+        }
+
+        private synchronized void finished(boolean dropped, boolean failed) {
+            this.dropped |= dropped;
+            this.failed |= failed;
+            if (--pending > 0) {
+                return;
+            }
+            if (this.failed) {
+                metrics.frameFailed();
+            } else if (this.dropped) {
+                metrics.frameDropped();
+            } else {
+                metrics.framePublished();
+            }
+        }
+    }
+
+    private static class InternalTask {
         private static final Logger LOG = LoggerFactory.getLogger(InternalTask.class);
         private final BufferedImage bufferedImage;
-        private final S3Client s3Client;
-        private final String bucket;
+        private final FrameSink sink;
+        private final RenditionOutput output;
+        private final String name;
         private final String key;
-        private final String extension;
+        private final long frameNumber;
+        private final FrameMetadata metadata;
+        private final FrameArchive archive;
+        private final FrameIndexChunk indexChunk;
+        private final FrameOutcome outcome;
+        /**
+         * Invoked exactly once, when the image is stored, dropped or failed. Indexed images are stored when their index chunk is written.
+         */
+        private final Runnable onDone;
 
-        InternalTask(BufferedImage bufferedImage, S3Client s3Client, String bucket, String key, String extension) {
+        InternalTask(BufferedImage bufferedImage, FrameSink sink, RenditionOutput output, String name, long frameNumber, FrameMetadata metadata,
+                     FrameArchive archive, FrameIndexChunk indexChunk, FrameOutcome outcome, Runnable onDone) {
             this.bufferedImage = bufferedImage;
-            this.s3Client = s3Client;
-            this.bucket = bucket;
-            this.key = key;
-            this.extension = extension;
+            this.sink = sink;
+            this.output = output;
+            this.name = name;
+            this.key = output.directory + name;
+            this.frameNumber = frameNumber;
+            this.metadata = metadata;
+            this.archive = archive;
+            this.indexChunk = indexChunk;
+            this.outcome = outcome;
+            this.onDone = onDone;
         }
 
         /**
-         * Converts received image bytes to image file and stores it in S3 bucket
-         * @return
-         * @throws IOException
+         * Releases archive, index and checkpoint slots of an image which will not be published
          */
-        @Override
-        public Boolean call() throws IOException {
-            LOG.info("Start internal image publish: " + bucket + key + "." + extension);
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                ImageIO.write(bufferedImage, extension, baos);
-                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                        .bucket(bucket).key(key + "." + extension)
-                        .build();
-                RequestBody requestBody = RequestBody.fromBytes(baos.toByteArray());
-                s3Client.putObject(putObjectRequest, requestBody);
-            } catch (IOException e) {
-                LOG.error("Failed to write frame to S3", e);
-                throw new IOException("Failed to write frame to S3", e);
-            }
-            LOG.info("Successfully published image: " + bucket + key + "." + extension);
-            return true;
+        void dropped() {
+            if (archive != null) {
+                archive.skip();
+            }
+            if (indexChunk != null) {
+                indexChunk.skip();
+            }
+            onDone.run();
+        }
+
+        /**
+         * Converts received image bytes to image file and appends it to the archive
+         * @param encoder - encoder owned by the calling thread
+         * @throws IOException when image can't be encoded
+         */
+        public void archive(ImageEncoder encoder) throws IOException {
+            String objectKey = key + "." + encoder.extension();
+            try {
+                ByteBuffer bytes = encode(encoder);
+                int length = bytes.remaining();
+                AtomicLong offset = new AtomicLong();
+                // Index points to the archive only once it is written
+                offset.set(archive.add(frameNumber, metadata, name + "." + encoder.extension(), bytes, () -> {
+                    if (indexChunk == null) {
+                        onDone.run();
+                    } else if (archive.getStoreError() == null) {
+                        indexChunk.add(frameNumber, metadata, archive.getTarKey(), offset.get(), length, onDone);
+                    } else {
+                        indexChunk.skip();
+                        onDone.run();
+                    }
+                }));
+            } catch (IOException | RuntimeException e) {
+                dropped();
+                throw e;
+            }
+            outcome.published();
+            LOG.debug("Archived image: " + objectKey);
+        }
+
+        private ByteBuffer encode(ImageEncoder encoder) throws IOException {
+            long encodeStart = System.nanoTime();
+            ByteBuffer bytes = encoder.encode(output.converter.convert(bufferedImage));
+            PipelineMetrics.latency(PipelineMetrics.Stage.ENCODE).recordNanos(System.nanoTime() - encodeStart);
+            return bytes;
+        }
+
+        /**
+         * Encodes image and writes it to the sink
+         * @param encoder - encoder borrowed by the calling thread, its buffer is in use until onComplete runs
+         * @param onComplete - invoked when write finished, successfully or not
+         * @throws IOException when image can't be encoded
+         * @throws InterruptedException if interrupted while waiting for free upload slot
+         */
+        public void call(ImageEncoder encoder, Runnable onComplete) throws IOException, InterruptedException {
+            String objectKey = key + "." + encoder.extension();
+            LOG.debug("Start internal image publish: " + sink.describe(objectKey));
+            ByteBuffer bytes;
+            try {
+                bytes = encode(encoder);
+            } catch (IOException | RuntimeException e) {
+                dropped();
+                onComplete.run();
+                throw e;
+            }
+            int length = bytes.remaining();
+            try {
+                sink.write(objectKey, bytes, encoder.contentType(), error -> {
+                    if (error != null) {
+                        outcome.failed();
+                        dropped();
+                        LOG.error("Failed to write frame: " + sink.describe(objectKey), error);
+                    } else {
+                        outcome.published();
+                        if (indexChunk != null) {
+                            indexChunk.add(frameNumber, metadata, objectKey, length, onDone);
+                        } else {
+                            onDone.run();
+                        }
+                        LOG.debug("Successfully published image: " + sink.describe(objectKey));
+                    }
+                    onComplete.run();
+                });
+            } catch (InterruptedException e) {
+                dropped();
+                onComplete.run();
+                throw e;
+            }
         }
     }
 }
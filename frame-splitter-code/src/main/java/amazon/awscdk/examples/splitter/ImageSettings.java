@@ -0,0 +1,52 @@
+package amazon.awscdk.examples.splitter;
+
+/**
+ * Part of {@link ProcessingRequest} describing color and size of published images.
+ * Example: <code>{ "color": "GRAY", "width": 320 }</code> publishes luma thumbnails 320 pixels wide keeping the aspect ratio
+ */
+public class ImageSettings {
+    public enum Color {
+        /**
+         * Full color image
+         */
+        RGB,
+        /**
+         * Brightness only, taken from the Y plane of the decoded picture without color conversion
+         */
+        GRAY
+    }
+
+    private Color color = Color.RGB;
+    /**
+     * Width of published images, 0 to keep the video width or to scale it with the height
+     */
+    private int width;
+    /**
+     * Height of published images, 0 to keep the video height or to scale it with the width
+     */
+    private int height;
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+}
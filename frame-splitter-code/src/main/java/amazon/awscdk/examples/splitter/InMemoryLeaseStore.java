@@ -0,0 +1,102 @@
+package amazon.awscdk.examples.splitter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LeaseStore} kept in memory, shared only by coordinators of the same process. Used by tests and single task deployments.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+    private final Clock clock;
+    private final Map<String, StreamLease> leases = new HashMap<>();
+    private final Map<String, Long> owners = new HashMap<>();
+
+    public InMemoryLeaseStore() {
+        this(Clock.systemUTC());
+    }
+
+    InMemoryLeaseStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized Optional<StreamLease> acquire(String streamARN, String owner, String request, Duration ttl) {
+        StreamLease lease = leases.get(streamARN);
+        long now = clock.millis();
+        if (lease != null && !lease.isAvailable(now) && !owner.equals(lease.getOwner())) {
+            return Optional.empty();
+        }
+        StreamLease acquired = new StreamLease(streamARN, owner, now + ttl.toMillis(),
+                request != null || lease == null ? request : lease.getRequest());
+        leases.put(streamARN, acquired);
+        return Optional.of(copy(acquired));
+    }
+
+    @Override
+    public synchronized boolean renew(String streamARN, String owner, Duration ttl) {
+        StreamLease lease = leases.get(streamARN);
+        if (lease == null || !owner.equals(lease.getOwner())) {
+            return false;
+        }
+        lease.setExpiresAtMillis(clock.millis() + ttl.toMillis());
+        return true;
+    }
+
+    @Override
+    public synchronized void release(String streamARN, String owner) {
+        StreamLease lease = leases.get(streamARN);
+        if (lease != null && owner.equals(lease.getOwner())) {
+            lease.setOwner(null);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String streamARN, String owner) {
+        StreamLease lease = leases.get(streamARN);
+        if (lease != null && owner.equals(lease.getOwner())) {
+            leases.remove(streamARN);
+        }
+    }
+
+    @Override
+    public synchronized List<StreamLease> list() {
+        List<StreamLease> copies = new ArrayList<>(leases.size());
+        for (StreamLease lease : leases.values()) {
+            copies.add(copy(lease));
+        }
+        return copies;
+    }
+
+    @Override
+    public synchronized void heartbeat(String owner, Duration ttl) {
+        owners.put(owner, clock.millis() + ttl.toMillis());
+    }
+
+    @Override
+    public synchronized void leave(String owner) {
+        owners.remove(owner);
+    }
+
+    @Override
+    public synchronized Set<String> liveOwners() {
+        long now = clock.millis();
+        return owners.entrySet().stream()
+                .filter(entry -> entry.getValue() > now)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Callers get copies, so stored leases change only under the store lock
+     */
+    private static StreamLease copy(StreamLease lease) {
+        return new StreamLease(lease.getStreamARN(), lease.getOwner(), lease.getExpiresAtMillis(), lease.getRequest());
+    }
+}
@@ -0,0 +1,286 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.kinesisvideo.KinesisVideoClient;
+import software.amazon.awssdk.services.kinesisvideo.model.APIName;
+import software.amazon.awssdk.services.kinesisvideo.model.GetDataEndpointRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.KinesisVideoArchivedMediaClient;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Shares Kinesis Video clients between processing tasks.
+ * Data endpoints returned by GetDataEndpoint are cached per API and stream ARN with TTL and size limit.
+ * Media and archived media clients are pooled per data endpoint and closed once their endpoint is evicted from the cache and no task uses them.
+ * GetDataEndpoint is called outside the registry lock, so a slow lookup only delays callers waiting for the same endpoint.
+ */
+public class KinesisVideoClientRegistry implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(KinesisVideoClientRegistry.class);
+
+    private final KinesisVideoClient kinesisVideoClient;
+    private final BiFunction<APIName, String, String> endpointLookup;
+    private final Function<String, KinesisVideoMediaClient> mediaClientFactory;
+    private final Function<String, KinesisVideoArchivedMediaClient> archivedMediaClientFactory;
+    private final Clock clock;
+    private final Duration endpointTtl;
+    private final int maxEndpoints;
+    private final LinkedHashMap<String, CachedEndpoint> endpoints = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, PooledClient<KinesisVideoMediaClient>> mediaClients = new HashMap<>();
+    private final Map<String, PooledClient<KinesisVideoArchivedMediaClient>> archivedMediaClients = new HashMap<>();
+
+    public KinesisVideoClientRegistry(Region region, AwsCredentialsProvider credentialsProvider, Duration endpointTtl, int maxEndpoints) {
+        this(KinesisVideoClient.builder().credentialsProvider(credentialsProvider).region(region).build(), region, credentialsProvider, endpointTtl, maxEndpoints);
+    }
+
+    private KinesisVideoClientRegistry(KinesisVideoClient kinesisVideoClient, Region region, AwsCredentialsProvider credentialsProvider,
+                                       Duration endpointTtl, int maxEndpoints) {
+        this(kinesisVideoClient, (apiName, streamARN) -> kinesisVideoClient.getDataEndpoint(GetDataEndpointRequest.builder()
+                        .apiName(apiName)
+                        .streamARN(streamARN).build()).dataEndpoint(),
+                endpoint -> KinesisVideoMediaClient.builder()
+                        .endpointOverride(URI.create(endpoint))
+                        .credentialsProvider(credentialsProvider).region(region).build(),
+                endpoint -> KinesisVideoArchivedMediaClient.builder()
+                        .endpointOverride(URI.create(endpoint))
+                        .credentialsProvider(credentialsProvider).region(region).build(),
+                Clock.systemUTC(), endpointTtl, maxEndpoints);
+    }
+
+    /**
+     * Registry of live media clients only, endpoint lookup is the same for all APIs
+     */
+    KinesisVideoClientRegistry(KinesisVideoClient kinesisVideoClient, Function<String, String> endpointLookup,
+                               Function<String, KinesisVideoMediaClient> mediaClientFactory, Clock clock, Duration endpointTtl, int maxEndpoints) {
+        this(kinesisVideoClient, (apiName, streamARN) -> endpointLookup.apply(streamARN), mediaClientFactory, null, clock, endpointTtl, maxEndpoints);
+    }
+
+    /**
+     * @param endpointLookup - returns data endpoint of given API and stream ARN
+     * @param archivedMediaClientFactory - creates archived media clients, null when archived video is not processed
+     */
+    KinesisVideoClientRegistry(KinesisVideoClient kinesisVideoClient, BiFunction<APIName, String, String> endpointLookup,
+                               Function<String, KinesisVideoMediaClient> mediaClientFactory,
+                               Function<String, KinesisVideoArchivedMediaClient> archivedMediaClientFactory,
+                               Clock clock, Duration endpointTtl, int maxEndpoints) {
+        if (maxEndpoints <= 0) {
+            throw new IllegalArgumentException("maxEndpoints must be > 0");
+        }
+        this.kinesisVideoClient = kinesisVideoClient;
+        this.endpointLookup = endpointLookup;
+        this.mediaClientFactory = mediaClientFactory;
+        this.archivedMediaClientFactory = archivedMediaClientFactory;
+        this.clock = clock;
+        this.endpointTtl = endpointTtl;
+        this.maxEndpoints = maxEndpoints;
+    }
+
+    /**
+     * Returns media client connected to data endpoint of given stream. Client must be released with {@link ClientLease#close()}
+     * @param streamARN - stream ARN
+     */
+    public ClientLease<KinesisVideoMediaClient> acquireMediaClient(String streamARN) {
+        String endpoint = getDataEndpoint(APIName.GET_MEDIA, streamARN);
+        synchronized (this) {
+            return acquire(mediaClients, mediaClientFactory, endpoint);
+        }
+    }
+
+    /**
+     * Returns archived media client connected to GetMediaForFragmentList data endpoint of given stream,
+     * also used for ListFragments. Client must be released with {@link ClientLease#close()}
+     * @param streamARN - stream ARN
+     */
+    public ClientLease<KinesisVideoArchivedMediaClient> acquireArchivedMediaClient(String streamARN) {
+        if (archivedMediaClientFactory == null) {
+            throw new IllegalStateException("Archived media clients are not configured");
+        }
+        String endpoint = getDataEndpoint(APIName.GET_MEDIA_FOR_FRAGMENT_LIST, streamARN);
+        synchronized (this) {
+            return acquire(archivedMediaClients, archivedMediaClientFactory, endpoint);
+        }
+    }
+
+    String getDataEndpoint(String streamARN) {
+        return getDataEndpoint(APIName.GET_MEDIA, streamARN);
+    }
+
+    /**
+     * The first caller of an endpoint missing in the cache looks it up, concurrent callers of the same endpoint wait for its result.
+     * Failed lookup is not cached.
+     */
+    private String getDataEndpoint(APIName apiName, String streamARN) {
+        String key = cacheKey(apiName, streamARN);
+        CachedEndpoint cached;
+        boolean lookup = false;
+        synchronized (this) {
+            evictExpired();
+            cached = endpoints.get(key);
+            if (cached == null) {
+                cached = new CachedEndpoint();
+                endpoints.put(key, cached);
+                evictEldest();
+                lookup = true;
+            }
+        }
+        if (lookup) {
+            try {
+                String endpoint = endpointLookup.apply(apiName, streamARN);
+                LOG.info(apiName + " data endpoint for stream " + streamARN + ": " + endpoint);
+                synchronized (this) {
+                    cached.expiresAtMillis = clock.instant().plus(endpointTtl).toEpochMilli();
+                }
+                cached.endpoint.complete(endpoint);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    endpoints.remove(key, cached);
+                }
+                cached.endpoint.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return cached.endpoint.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    synchronized int pooledMediaClients() {
+        return mediaClients.size();
+    }
+
+    synchronized int pooledArchivedMediaClients() {
+        return archivedMediaClients.size();
+    }
+
+    private <T extends SdkAutoCloseable> ClientLease<T> acquire(Map<String, PooledClient<T>> pool, Function<String, T> factory, String endpoint) {
+        PooledClient<T> pooled = pool.computeIfAbsent(endpoint, key -> {
+            LOG.info("Creating client for endpoint: " + key);
+            return new PooledClient<>(factory.apply(key));
+        });
+        pooled.references++;
+        return new ClientLease<>(endpoint, pooled);
+    }
+
+    private static String cacheKey(APIName apiName, String streamARN) {
+        return apiName + " " + streamARN;
+    }
+
+    private void evictExpired() {
+        long now = clock.millis();
+        Iterator<CachedEndpoint> iterator = endpoints.values().iterator();
+        while (iterator.hasNext()) {
+            CachedEndpoint cached = iterator.next();
+            if (cached.expiresAtMillis <= now) {
+                iterator.remove();
+                closeIfUnused(cached.endpoint.getNow(null));
+            }
+        }
+    }
+
+    private void evictEldest() {
+        Iterator<CachedEndpoint> iterator = endpoints.values().iterator();
+        while (endpoints.size() > maxEndpoints) {
+            CachedEndpoint eldest = iterator.next();
+            iterator.remove();
+            closeIfUnused(eldest.endpoint.getNow(null));
+        }
+    }
+
+    /**
+     * @param endpoint - endpoint no longer cached for some stream, null when its lookup has not finished yet
+     */
+    private void closeIfUnused(String endpoint) {
+        if (endpoint == null) {
+            return;
+        }
+        for (CachedEndpoint cached : endpoints.values()) {
+            if (endpoint.equals(cached.endpoint.getNow(null))) {
+                return;
+            }
+        }
+        closeIfUnused(mediaClients, endpoint);
+        closeIfUnused(archivedMediaClients, endpoint);
+    }
+
+    private static void closeIfUnused(Map<String, ? extends PooledClient<?>> pool, String endpoint) {
+        PooledClient<?> pooled = pool.get(endpoint);
+        if (pooled == null || pooled.references > 0) {
+            return;
+        }
+        pool.remove(endpoint);
+        LOG.info("Closing client for endpoint: " + endpoint);
+        pooled.client.close();
+    }
+
+    @Override
+    public synchronized void close() {
+        mediaClients.values().forEach(pooled -> pooled.client.close());
+        mediaClients.clear();
+        archivedMediaClients.values().forEach(pooled -> pooled.client.close());
+        archivedMediaClients.clear();
+        endpoints.clear();
+        kinesisVideoClient.close();
+    }
+
+    /**
+     * Client borrowed from the registry
+     */
+    public class ClientLease<T extends SdkAutoCloseable> implements AutoCloseable {
+        private final String endpoint;
+        private final PooledClient<T> pooled;
+        private boolean released;
+
+        private ClientLease(String endpoint, PooledClient<T> pooled) {
+            this.endpoint = endpoint;
+            this.pooled = pooled;
+        }
+
+        public T client() {
+            return pooled.client;
+        }
+
+        @Override
+        public void close() {
+            synchronized (KinesisVideoClientRegistry.this) {
+                if (!released) {
+                    released = true;
+                    pooled.references--;
+                    closeIfUnused(endpoint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Endpoint being looked up doesn't expire until the lookup finished, failed lookups are removed before they complete
+     */
+    private static class CachedEndpoint {
+        private final CompletableFuture<String> endpoint = new CompletableFuture<>();
+        private long expiresAtMillis = Long.MAX_VALUE;
+    }
+
+    private static class PooledClient<T extends SdkAutoCloseable> {
+        private final T client;
+        private int references;
+
+        PooledClient(T client) {
+            this.client = client;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of two buckets in microseconds.
+ * Percentiles are reported as the upper bound of the bucket they fall into, so they are accurate within a factor of 2.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos - measured duration, e.g. difference of two {@link System#nanoTime()} calls
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param quantile - value between 0 and 1
+     * @return upper bound of the bucket containing given quantile, 0 when nothing was recorded
+     */
+    public long percentileMicros(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(maxMicros.get(), (1L << i) - 1);
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public Map<String, Object> snapshot() {
+        long count = count();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", count);
+        snapshot.put("meanMicros", count == 0 ? 0 : totalMicros.sum() / count);
+        snapshot.put("p50Micros", percentileMicros(0.5));
+        snapshot.put("p90Micros", percentileMicros(0.9));
+        snapshot.put("p99Micros", percentileMicros(0.99));
+        snapshot.put("maxMicros", maxMicros.get());
+        return snapshot;
+    }
+}
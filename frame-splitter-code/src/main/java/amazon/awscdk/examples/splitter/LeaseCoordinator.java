@@ -0,0 +1,255 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Coordinates ownership of live streams between frame splitter tasks through a shared {@link LeaseStore}.
+ * Every third of the lease ttl the coordinator renews leases of streams processed by this task and stops streams whose lease was lost.
+ * Then it balances streams between live owners: a task holding more than its fair share stops the excess streams and releases
+ * their leases once they finished, a task holding less takes released and expired leases over.
+ * Taken over streams resume from the last checkpoint, so tasks must share the {@link CheckpointStore} as well.
+ * A stream is reserved in this coordinator before its lease is acquired, so a claimed stream is never taken over by the same task twice.
+ */
+public class LeaseCoordinator implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(LeaseCoordinator.class);
+    private final LeaseStore store;
+    private final String owner;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Map<String, OwnedStream> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lease-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Predicate<StreamLease> takeOver = lease -> false;
+    private volatile boolean closing;
+
+    /**
+     * @param owner - identifier of this task, unique among all tasks sharing the store
+     * @param ttl - time after which leases and heartbeat of a task which stopped renewing them expire
+     */
+    public LeaseCoordinator(LeaseStore store, String owner, Duration ttl) {
+        this(store, owner, ttl, Clock.systemUTC());
+    }
+
+    LeaseCoordinator(LeaseStore store, String owner, Duration ttl, Clock clock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be > 0");
+        }
+        this.store = store;
+        this.owner = owner;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Announces this task and starts periodic renewal and balancing
+     * @param takeOver - starts processing of a stream whose lease was taken over, returns false when no stream slot is free
+     */
+    public void start(Predicate<StreamLease> takeOver) {
+        this.takeOver = takeOver;
+        store.heartbeat(owner, ttl);
+        long periodMillis = Math.max(1, ttl.toMillis() / 3);
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                balance();
+            } catch (RuntimeException e) {
+                // Leases expire when renewal keeps failing, other tasks take the streams over then
+                LOG.error("Lease renewal failed", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes the lease of a stream requested through SQS
+     * @param request - JSON of the processing request, kept with the lease for tasks taking the stream over
+     * @return false when the stream is already processed by this or another live task, or this task is shutting down
+     */
+    public boolean claim(String streamARN, String request) {
+        return acquire(streamARN, request).isPresent();
+    }
+
+    /**
+     * Reserves the stream, then acquires its lease. Reservation is dropped when the lease is held by another task.
+     * @return empty when the stream is already reserved, the lease is held by another task or the coordinator is closing
+     */
+    private Optional<StreamLease> acquire(String streamARN, String request) {
+        OwnedStream reserved = new OwnedStream();
+        if (closing || streams.putIfAbsent(streamARN, reserved) != null) {
+            return Optional.empty();
+        }
+        Optional<StreamLease> acquired;
+        try {
+            acquired = store.acquire(streamARN, owner, request, ttl);
+        } catch (RuntimeException e) {
+            streams.remove(streamARN, reserved);
+            throw e;
+        }
+        if (acquired.isPresent()) {
+            reserved.leased = true;
+        } else {
+            streams.remove(streamARN, reserved);
+        }
+        return acquired;
+    }
+
+    /**
+     * Registers the task processing a claimed or taken over stream, so it can be stopped when the lease is lost or handed over.
+     * Task is stopped right away when that happened before it started.
+     */
+    public void started(String streamARN, ProcessingTask task) {
+        OwnedStream stream = streams.get(streamARN);
+        if (stream == null) {
+            // Lease was lost since it was acquired
+            task.stop();
+            return;
+        }
+        stream.start(task);
+    }
+
+    /**
+     * Lease of a stream which ended by itself is removed, lease of a stream stopped for balancing is released for other tasks
+     */
+    public void finished(String streamARN, ProcessingTask task) {
+        OwnedStream stream = streams.get(streamARN);
+        if (stream == null || stream.task != task || !streams.remove(streamARN, stream)) {
+            // Lease was lost, it belongs to another task now
+            return;
+        }
+        if (stream.handedOver || closing) {
+            store.release(streamARN, owner);
+            LOG.info("Released lease of stream " + streamARN);
+        } else {
+            store.remove(streamARN, owner);
+        }
+    }
+
+    /**
+     * Gives up a claimed stream whose processing could not be started
+     */
+    public void release(String streamARN) {
+        streams.remove(streamARN);
+        store.release(streamARN, owner);
+    }
+
+    /**
+     * Renews leases of processed streams, then stops streams above the fair share or takes streams over up to it
+     */
+    void balance() {
+        store.heartbeat(owner, ttl);
+        for (Map.Entry<String, OwnedStream> entry : streams.entrySet()) {
+            if (!entry.getValue().leased) {
+                // Lease is being acquired
+                continue;
+            }
+            if (!store.renew(entry.getKey(), owner, ttl) && streams.remove(entry.getKey(), entry.getValue())) {
+                LOG.warn("Lease of stream " + entry.getKey() + " was lost, stopping processing");
+                entry.getValue().stop();
+            }
+        }
+        List<StreamLease> leases = store.list();
+        int owners = Math.max(1, store.liveOwners().size());
+        int fairShare = (leases.size() + owners - 1) / owners;
+
+        List<Map.Entry<String, OwnedStream>> active = new ArrayList<>();
+        for (Map.Entry<String, OwnedStream> entry : streams.entrySet()) {
+            if (entry.getValue().leased && !entry.getValue().handedOver) {
+                active.add(entry);
+            }
+        }
+        for (int i = fairShare; i < active.size(); i++) {
+            LOG.info("Handing over stream " + active.get(i).getKey() + ", " + active.size() + " streams exceed fair share of " + fairShare);
+            active.get(i).getValue().handedOver = true;
+            active.get(i).getValue().stop();
+        }
+
+        int owned = active.size();
+        long now = clock.millis();
+        for (StreamLease lease : leases) {
+            if (owned >= fairShare) {
+                break;
+            }
+            if (!lease.isAvailable(now) || streams.containsKey(lease.getStreamARN())) {
+                continue;
+            }
+            Optional<StreamLease> acquired = acquire(lease.getStreamARN(), null);
+            if (acquired.isPresent()) {
+                if (!takeOver.test(acquired.get())) {
+                    release(lease.getStreamARN());
+                    break;
+                }
+                LOG.info("Took over stream " + lease.getStreamARN() + " from " + lease.getOwner());
+                owned++;
+            }
+        }
+    }
+
+    int ownedStreams() {
+        return streams.size();
+    }
+
+    /**
+     * First step of shutdown: stops renewal and balancing and stops processing of all streams.
+     * Their leases are released as their tasks finish, after the last checkpoint was flushed, see {@link #finished}.
+     */
+    public void handOverAll() {
+        closing = true;
+        timer.shutdownNow();
+        for (OwnedStream stream : streams.values()) {
+            stream.handedOver = true;
+            stream.stop();
+        }
+    }
+
+    /**
+     * Releases leases of all remaining streams and leaves, so other tasks take the streams over without waiting for expiry.
+     * Last step of shutdown, processing of streams not finished by then is not stopped.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        timer.shutdownNow();
+        for (String streamARN : streams.keySet()) {
+            store.release(streamARN, owner);
+        }
+        store.leave(owner);
+    }
+
+    private static class OwnedStream {
+        private volatile ProcessingTask task;
+        private volatile boolean leased;
+        private volatile boolean handedOver;
+        private boolean stopped;
+
+        synchronized void start(ProcessingTask task) {
+            this.task = task;
+            if (stopped) {
+                task.stop();
+            }
+        }
+
+        /**
+         * Stops the task, or the one started later when the stream is only reserved
+         */
+        synchronized void stop() {
+            stopped = true;
+            if (task != null) {
+                task.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package amazon.awscdk.examples.splitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Leases of live streams shared by all frame splitter tasks, see {@link LeaseCoordinator}.
+ * Every operation is atomic across tasks using the same store. Owners announce themselves with {@link #heartbeat(String, Duration)},
+ * so work can be split evenly between live owners.
+ * Implementations must be thread safe.
+ */
+public interface LeaseStore {
+
+    /**
+     * Takes the lease of the stream when it does not exist, was released, expired or is already held by the owner
+     * @param request - processing request stored with the lease, null to keep the stored one
+     * @return lease held by the owner until ttl elapses, empty when another owner holds the lease
+     */
+    Optional<StreamLease> acquire(String streamARN, String owner, String request, Duration ttl);
+
+    /**
+     * Extends the lease held by the owner
+     * @return false when the lease was lost: it expired and was taken by another owner or was removed
+     */
+    boolean renew(String streamARN, String owner, Duration ttl);
+
+    /**
+     * Gives up the lease held by the owner, any owner may take it right away. Does nothing when the owner does not hold it.
+     */
+    void release(String streamARN, String owner);
+
+    /**
+     * Deletes the lease held by the owner once processing of the stream ended. Does nothing when the owner does not hold it.
+     */
+    void remove(String streamARN, String owner);
+
+    /**
+     * @return all leases, including released and expired ones
+     */
+    List<StreamLease> list();
+
+    /**
+     * Marks the owner as alive until ttl elapses
+     */
+    void heartbeat(String owner, Duration ttl);
+
+    /**
+     * Forgets the owner before its heartbeat expires, e.g. on shutdown
+     */
+    void leave(String owner);
+
+    /**
+     * @return owners whose heartbeat has not expired
+     */
+    Set<String> liveOwners();
+}
@@ -0,0 +1,104 @@
+package amazon.awscdk.examples.splitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Writes objects as files below a local directory, object key is the relative path of the file.
+ * Keys leaving the directory, e.g. absolute ones or ones containing "..", are rejected.
+ * Used for edge deployments and benchmarks running the whole pipeline without S3.
+ * <p>
+ * Every file is written with a single positional {@link FileChannel} write of its whole content to a temporary file
+ * next to it, so the file system allocates it at once instead of growing it buffer by buffer. The temporary file is then
+ * atomically renamed, so readers and a restart after a crash see either the previous or the new content, never a partial file.
+ * Directories are created once and remembered, so writing an image costs no directory lookups.
+ */
+public class LocalDirectorySink implements FrameSink {
+    private final Path root;
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+
+    public LocalDirectorySink(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Resolves path taken from a request or an object key against the directory
+     * @throws IllegalArgumentException when the path is not below the directory
+     */
+    static Path resolveBelow(Path directory, String relativePath) {
+        Path normalizedDirectory = directory.toAbsolutePath().normalize();
+        Path resolved = normalizedDirectory.resolve(relativePath).normalize();
+        if (!resolved.startsWith(normalizedDirectory)) {
+            throw new IllegalArgumentException("Path " + relativePath + " is outside of " + directory);
+        }
+        return resolved;
+    }
+
+    @Override
+    public void write(String key, ByteBuffer bytes, String contentType, Consumer<Throwable> onComplete) {
+        Path temporary = null;
+        try {
+            Path file = resolveBelow(root, key);
+            if (file.equals(root)) {
+                throw new IllegalArgumentException("Key " + key + " does not name a file");
+            }
+            ensureDirectory(file.getParent());
+            temporary = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer content = bytes.duplicate();
+                long position = 0;
+                while (content.hasRemaining()) {
+                    position += channel.write(content, position);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            deleteTemporary(temporary, e);
+            onComplete.accept(e);
+            return;
+        }
+        onComplete.accept(null);
+    }
+
+    private static void deleteTemporary(Path temporary, Exception failure) {
+        if (temporary == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Creates directory with its missing parents on first use
+     */
+    private void ensureDirectory(Path directory) throws IOException {
+        if (directory == null || createdDirectories.contains(directory)) {
+            return;
+        }
+        Files.createDirectories(directory);
+        createdDirectories.add(directory);
+    }
+
+    /**
+     * Number of directories known to exist, for tests
+     */
+    int createdDirectories() {
+        return createdDirectories.size();
+    }
+
+    @Override
+    public String describe(String key) {
+        return root.resolve(key).normalize().toString();
+    }
+}
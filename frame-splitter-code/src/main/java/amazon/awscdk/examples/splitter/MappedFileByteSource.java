@@ -0,0 +1,99 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.ebml.ParserByteSource;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ParserByteSource} reading local MKV file through memory mapping, so file content is not copied through stream buffers.
+ * Files larger than a single mapping are mapped window by window.
+ */
+public class MappedFileByteSource implements ParserByteSource, AutoCloseable {
+    static final long DEFAULT_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowBytes;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    public MappedFileByteSource(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW_BYTES);
+    }
+
+    MappedFileByteSource(Path file, long windowBytes) throws IOException {
+        Validate.isTrue(windowBytes > 0 && windowBytes <= Integer.MAX_VALUE, "windowBytes must be > 0 and fit in int");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+        map(0);
+    }
+
+    @Override
+    public int readByte() {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - windowStart - window.position());
+    }
+
+    @Override
+    public int readBytes(ByteBuffer dest, int length) {
+        Validate.isTrue(dest.remaining() >= length);
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int read = Math.min(length, window.remaining());
+        ByteBuffer slice = window.duplicate();
+        slice.limit(slice.position() + read);
+        dest.put(slice);
+        window.position(window.position() + read);
+        return read;
+    }
+
+    @Override
+    public boolean eof() {
+        return windowStart + window.position() >= size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Maps next window when the current one is consumed
+     * @return false at the end of file
+     */
+    private boolean ensureAvailable() {
+        if (window.hasRemaining()) {
+            return true;
+        }
+        if (eof()) {
+            return false;
+        }
+        map(windowStart + window.position());
+        return true;
+    }
+
+    private void map(long start) {
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowBytes, size - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map file window at " + start, e);
+        }
+        windowStart = start;
+    }
+}
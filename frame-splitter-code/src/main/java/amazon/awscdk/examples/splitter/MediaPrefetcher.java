@@ -0,0 +1,214 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Network stage of the pipeline. Reads GetMedia responses on dedicated threads into a bounded buffer per stream,
+ * so a slow parse or decode does not stop reading from the socket and a network stall does not stop decoding of buffered data.
+ * Every connected stream uses one thread blocked on the socket, so the thread budget of this stage is the number of streams.
+ * <p>
+ * The buffer has to cover the data arriving while the stream waits for a frame splitter thread. 8 MiB holds about 30 seconds
+ * of 2 Mbps video or about 7 seconds of 10 Mbps video, memory used is at most the buffer size times the number of connected streams.
+ * Parsing never waits for the network longer than the read timeout, {@link PrefetchedStream#await(long)} lets it give up earlier.
+ */
+public class MediaPrefetcher implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MediaPrefetcher.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+    /**
+     * Same as the default socket timeout of the SDK HTTP client, so a stall fails the same way as without prefetching
+     */
+    private static final long DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "media-prefetch-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long bufferBytes;
+    private final long readTimeoutNanos;
+
+    /**
+     * @param bufferBytes - maximum number of bytes read ahead for a single stream
+     */
+    public MediaPrefetcher(long bufferBytes) {
+        this(bufferBytes, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param bufferBytes - maximum number of bytes read ahead for a single stream
+     * @param readTimeoutMillis - maximum time a read of the prefetched stream waits for data before failing
+     */
+    public MediaPrefetcher(long bufferBytes, long readTimeoutMillis) {
+        if (bufferBytes <= 0 || readTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("bufferBytes and readTimeoutMillis must be > 0");
+        }
+        this.bufferBytes = bufferBytes;
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+    }
+
+    /**
+     * Starts reading the source in the background
+     * @param source - stream read only by the prefetch thread from now on. Caller still owns it and closes or aborts it after closing the returned stream
+     * @return stream returning the same bytes as the source
+     */
+    public PrefetchedStream prefetch(InputStream source) {
+        PrefetchedStream prefetched = new PrefetchedStream(source, bufferBytes, readTimeoutNanos);
+        executor.execute(() -> {
+            activeStreams.incrementAndGet();
+            try {
+                prefetched.fill();
+            } finally {
+                activeStreams.decrementAndGet();
+            }
+        });
+        return prefetched;
+    }
+
+    /**
+     * Number of streams currently read by prefetch threads
+     */
+    public int activeStreams() {
+        return activeStreams.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reads wait for the network at most the read timeout and fail with {@link SocketTimeoutException} afterwards.
+     * Reads after {@link #await(long)} returned true do not wait at all.
+     */
+    public static class PrefetchedStream extends InputStream {
+        private final InputStream source;
+        private final BoundedHandoff<byte[]> chunks;
+        private final long readTimeoutNanos;
+        private volatile IOException failure;
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        PrefetchedStream(InputStream source, long bufferBytes, long readTimeoutNanos) {
+            this.source = source;
+            this.readTimeoutNanos = readTimeoutNanos;
+            this.chunks = new BoundedHandoff<>(bufferBytes, bytes -> bytes.length, BoundedHandoff.OverflowPolicy.BLOCK);
+        }
+
+        /**
+         * Prefetch thread loop, ends at the end of the source, on read error or when the stream is closed
+         */
+        private void fill() {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            try {
+                int read;
+                while ((read = source.read(buffer)) >= 0) {
+                    if (read == 0) {
+                        continue;
+                    }
+                    // Full buffer is handed over as is, short socket reads are copied so the buffer can be reused
+                    byte[] bytes = read == buffer.length ? buffer : Arrays.copyOf(buffer, read);
+                    if (!chunks.offer(bytes)) {
+                        return;
+                    }
+                    if (bytes == buffer) {
+                        buffer = new byte[CHUNK_SIZE];
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("Prefetch stopped", e);
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            } catch (InterruptedException e) {
+                failure = new InterruptedIOException("Prefetch interrupted");
+            } finally {
+                chunks.close();
+            }
+        }
+
+        /**
+         * Number of bytes waiting in the buffer, safe to call from any thread
+         */
+        public long buffered() {
+            return chunks.weight();
+        }
+
+        /**
+         * Waits until a read would return without waiting for the network, because data is buffered or the source ended
+         * @param timeoutNanos - maximum time to wait
+         * @return false if the time elapsed first
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public boolean await(long timeoutNanos) throws InterruptedException {
+            return position < chunk.length || chunks.awaitTakeable(timeoutNanos);
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (position == chunk.length) {
+                byte[] next;
+                try {
+                    next = chunks.poll(readTimeoutNanos);
+                    if (next == null && !chunks.awaitTakeable(0)) {
+                        throw new SocketTimeoutException("No media data received in " + TimeUnit.NANOSECONDS.toMillis(readTimeoutNanos) + " ms");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for media data");
+                }
+                if (next == null) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return false;
+                }
+                chunk = next;
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextChunk() ? chunk[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int read = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, chunk.length - position + chunks.weight());
+        }
+
+        /**
+         * Stops prefetching, prefetch thread waiting for buffer space exits. Source must be aborted by its owner
+         * to release a thread blocked on the socket.
+         */
+        @Override
+        public void close() {
+            chunks.close();
+        }
+    }
+}
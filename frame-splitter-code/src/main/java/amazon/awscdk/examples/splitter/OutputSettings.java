@@ -0,0 +1,54 @@
+package amazon.awscdk.examples.splitter;
+
+/**
+ * Part of {@link ProcessingRequest} describing how published images are grouped into S3 objects.
+ * Example: <code>{ "mode": "ARCHIVE", "windowMillis": 10000, "indexWindowMillis": 60000 }</code>
+ */
+public class OutputSettings {
+    public enum Mode {
+        /**
+         * Every frame is stored as separate object named after the frame timestamp: <code>directory/TIMESTAMP.png</code>
+         */
+        FRAMES,
+        /**
+         * Frames are packed into tar archives <code>directory/archive-TIMESTAMP.tar</code> named after their first frame,
+         * each with index <code>directory/archive-TIMESTAMP.index.json</code>
+         * mapping frame numbers and timestamps to byte ranges of the archive
+         */
+        ARCHIVE
+    }
+
+    private Mode mode = Mode.FRAMES;
+    /**
+     * Length of time window covered by single archive. When 0 every MKV fragment gets its own archive.
+     */
+    private long windowMillis;
+    /**
+     * Length of time window covered by single chunk of the frame index, see {@link FrameIndexChunk}. When 0 no index is written.
+     */
+    private long indexWindowMillis;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public long getIndexWindowMillis() {
+        return indexWindowMillis;
+    }
+
+    public void setIndexWindowMillis(long indexWindowMillis) {
+        this.indexWindowMillis = indexWindowMillis;
+    }
+}
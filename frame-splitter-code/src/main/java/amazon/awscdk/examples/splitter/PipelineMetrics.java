@@ -0,0 +1,88 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Process wide registry of pipeline metrics, exposed as JSON by {@link MetricsServer}.
+ * Stage latencies are shared by all streams, frame counters are kept per stream while the stream is processed.
+ * Recording is lock free, so it can be done for every frame.
+ */
+public final class PipelineMetrics {
+    public enum Stage {
+        /**
+         * Parsing of a single MKV element from GetMedia response, without the time spent reading the response
+         */
+        PARSE,
+        /**
+         * H.264 decoding of a frame to image
+         */
+        DECODE,
+        /**
+         * Encoding of an image to PNG or JPEG
+         */
+        ENCODE,
+        /**
+         * S3 PutObject request. Asynchronous uploads include waiting for a free upload slot and retries
+         */
+        S3_PUT
+    }
+
+    private static final Map<Stage, LatencyHistogram> LATENCIES = new EnumMap<>(Stage.class);
+    private static final ConcurrentMap<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, StreamMetrics> STREAMS = new ConcurrentHashMap<>();
+
+    static {
+        for (Stage stage : Stage.values()) {
+            LATENCIES.put(stage, new LatencyHistogram());
+        }
+    }
+
+    private PipelineMetrics() {
+    }
+
+    public static LatencyHistogram latency(Stage stage) {
+        return LATENCIES.get(stage);
+    }
+
+    /**
+     * Registers value read when snapshot is taken, e.g. queue depth. Replaces gauge registered under the same name.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Starts collecting counters of the stream, replacing counters of its previous run
+     */
+    public static StreamMetrics registerStream(String streamARN) {
+        StreamMetrics metrics = new StreamMetrics();
+        STREAMS.put(streamARN, metrics);
+        return metrics;
+    }
+
+    public static void unregisterStream(String streamARN, StreamMetrics metrics) {
+        STREAMS.remove(streamARN, metrics);
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> gauges = new TreeMap<>();
+        GAUGES.forEach((name, value) -> gauges.put(name, value.getAsLong()));
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        LATENCIES.forEach((stage, histogram) -> latencies.put(stage.name(), histogram.snapshot()));
+        Map<String, Object> streams = new TreeMap<>();
+        STREAMS.forEach((streamARN, metrics) -> streams.put(streamARN, metrics.snapshot()));
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timestamp", System.currentTimeMillis());
+        snapshot.put("gauges", gauges);
+        snapshot.put("latencies", latencies);
+        snapshot.put("streams", streams);
+        return snapshot;
+    }
+}
@@ -1,9 +1,17 @@
 package amazon.awscdk.examples.splitter;
 
+import java.util.List;
+
 public class ProcessingRequest {
     private String streamARN;
     private String bucket;
     private String s3Directory;
+    private SamplingPolicy sampling = new SamplingPolicy();
+    private EncoderSettings encoder = new EncoderSettings();
+    private OutputSettings output = new OutputSettings();
+    private ImageSettings image = new ImageSettings();
+    private ArchiveSelection archive;
+    private List<Rendition> renditions;
 
     public String getStreamARN() {
         return streamARN;
@@ -28,4 +36,82 @@ public class ProcessingRequest {
     public void setS3Directory(String s3Directory) {
         this.s3Directory = s3Directory;
     }
+
+    public SamplingPolicy getSampling() {
+        return sampling;
+    }
+
+    public void setSampling(SamplingPolicy sampling) {
+        this.sampling = sampling;
+    }
+
+    public EncoderSettings getEncoder() {
+        return encoder;
+    }
+
+    public void setEncoder(EncoderSettings encoder) {
+        this.encoder = encoder;
+    }
+
+    public OutputSettings getOutput() {
+        return output;
+    }
+
+    public void setOutput(OutputSettings output) {
+        this.output = output;
+    }
+
+    public ImageSettings getImage() {
+        return image;
+    }
+
+    public void setImage(ImageSettings image) {
+        this.image = image;
+    }
+
+    /**
+     * @return archived video to process, null to tail the live stream
+     */
+    public ArchiveSelection getArchive() {
+        return archive;
+    }
+
+    public void setArchive(ArchiveSelection archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * @return images published for every frame, each with its own directory, size and format. Null or empty to publish
+     * a single image described by s3Directory, image and encoder
+     */
+    public List<Rendition> getRenditions() {
+        return renditions;
+    }
+
+    public void setRenditions(List<Rendition> renditions) {
+        this.renditions = renditions;
+    }
+
+    /**
+     * Renditions to publish, the request itself describes the only rendition when none are listed
+     * @throws IllegalArgumentException when a rendition or its image or encoder settings are null, e.g. <code>"image": null</code>
+     */
+    public List<Rendition> effectiveRenditions() {
+        if (renditions != null && !renditions.isEmpty()) {
+            for (Rendition rendition : renditions) {
+                if (rendition == null || rendition.getImage() == null || rendition.getEncoder() == null) {
+                    throw new IllegalArgumentException("Renditions must not be null and must have image and encoder settings");
+                }
+            }
+            return renditions;
+        }
+        if (image == null || encoder == null) {
+            throw new IllegalArgumentException("image and encoder settings must not be null");
+        }
+        Rendition rendition = new Rendition();
+        rendition.setS3Directory(s3Directory);
+        rendition.setImage(image);
+        rendition.setEncoder(encoder);
+        return List.of(rendition);
+    }
 }
@@ -1,11 +1,10 @@
 package amazon.awscdk.examples.splitter;
 
-import com.amazonaws.kinesisvideo.parser.ebml.InputStreamParserByteSource;
+import com.amazonaws.kinesisvideo.parser.mkv.MkvElement;
 import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitException;
 import com.amazonaws.kinesisvideo.parser.mkv.MkvElementVisitor;
 import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
 import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
-import com.amazonaws.kinesisvideo.parser.utilities.FrameVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.ResponseInputStream;
@@ -17,28 +16,139 @@ import software.amazon.awssdk.services.kinesisvideomedia.model.StartSelectorType
 import software.amazon.awssdk.services.s3.S3Client;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
- * Class used to retrieve video stream using Consumer APIs and trigger processing
+ * Class used to retrieve video stream using Consumer APIs and trigger processing.
+ * Task either tails the live stream with GetMedia or processes {@link ArchivedFragments} one by one and finishes after the last one.
+ * Task either runs on its own thread with {@link #run()} or in time slices scheduled by {@link StreamScheduler}.
+ * Only one thread may process the task at a time.
  */
 public class ProcessingTask implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ProcessingTask.class);
+    private static final long IDLE_SLEEP_MILLIS = 200;
+
+    /**
+     * Outcome of {@link #runSlice(long)}
+     */
+    public enum SliceResult {
+        ACTIVE,
+        IDLE,
+        FINISHED
+    }
 
     private final KinesisVideoMediaClient mediaClient;
     private final ImagePublisher imagePublisher;
+    private final FrameSampler sampler;
+    private final ImageConverter imageConverter;
+    private final CheckpointStore checkpointStore;
+    private final GopDecoder gopDecoder;
+    private final MediaPrefetcher mediaPrefetcher;
+    private final ArchivedFragments archivedFragments;
     private final String streamARN;
+    private final StreamMetrics metrics;
+    private final FramePublishingDecoder frameDecoder;
+    private final FrameSliceVisitor frameVisitor;
     private StartSelector start;
+    private String lastFragmentNumber;
+    private ResponseInputStream<GetMediaResponse> media;
+    private MediaPrefetcher.PrefetchedStream prefetched;
+    private BufferedMediaByteSource byteSource;
+    private StreamingMkvReader reader;
+    private Optional<String> connectContinuationToken = Optional.empty();
+    private boolean receivedFrames;
     private final AtomicBoolean stop = new AtomicBoolean(false);
 
     public ProcessingTask(String streamARN, S3Client s3Client, KinesisVideoMediaClient mediaClient, String bucket, String directory, int imagePublisherThreads) {
-        this.streamARN = streamARN;
+        this(createRequest(streamARN, bucket, directory), new S3FrameSink(s3Client, null, bucket), mediaClient, imagePublisherThreads, BackpressureSettings.defaults(), null, null, null, null);
+    }
+
+    /**
+     * @param sink - destination of images, e.g. {@link S3FrameSink} writing to the bucket of the request
+     * @param checkpointStore - store of processed fragments, stream is resumed after the stored fragment. Null to always start from the earliest fragment
+     * @param gopDecoder - shared pool decoding GOPs of the stream in parallel, null to decode on the thread processing the task
+     * @param mediaPrefetcher - reads GetMedia responses ahead on its own threads, null to read on the thread processing the task
+     * @param archivedFragments - archived fragments to process instead of the live stream, closed when the task finishes. Null to tail the live stream
+     */
+    public ProcessingTask(ProcessingRequest processingRequest, FrameSink sink, KinesisVideoMediaClient mediaClient,
+                          int imagePublisherThreads, BackpressureSettings backpressureSettings, CheckpointStore checkpointStore, GopDecoder gopDecoder,
+                          MediaPrefetcher mediaPrefetcher, ArchivedFragments archivedFragments) {
+        this.streamARN = processingRequest.getStreamARN();
         this.mediaClient = mediaClient;
-        start = StartSelector.builder().startSelectorType(StartSelectorType.EARLIEST).build();
+        this.checkpointStore = checkpointStore;
+        this.gopDecoder = gopDecoder;
+        this.mediaPrefetcher = mediaPrefetcher;
+        this.archivedFragments = archivedFragments;
+        lastFragmentNumber = checkpointStore != null ? checkpointStore.load(streamARN).orElse(null) : null;
+        if (lastFragmentNumber != null) {
+            LOG.info("Resuming stream " + streamARN + " after fragment " + lastFragmentNumber);
+            start = afterFragment(lastFragmentNumber);
+        } else {
+            start = StartSelector.builder().startSelectorType(StartSelectorType.EARLIEST).build();
+        }
 
-        imagePublisher = new ImagePublisher(s3Client, bucket, directory, imagePublisherThreads);
+        List<Rendition> renditions = processingRequest.effectiveRenditions();
+        imageConverter = ImageConverter.forDecoding(renditions);
+        sampler = archivedFragments != null
+                ? new FrameSampler(processingRequest.getSampling(), archivedFragments.startTimestampMillis(), archivedFragments.endTimestampMillis())
+                : new FrameSampler(processingRequest.getSampling());
+        // Settings are validated above, so an invalid request does not leave registered metrics behind
+        metrics = PipelineMetrics.registerStream(streamARN);
+        try {
+            imagePublisher = new ImagePublisher(sink, renditions, imagePublisherThreads, backpressureSettings, processingRequest.getOutput(), metrics);
+        } catch (RuntimeException e) {
+            PipelineMetrics.unregisterStream(streamARN, metrics);
+            throw e;
+        }
+        // Decoder and track metadata are kept for the whole task, so reconnects don't reset codec context
+        Consumer<Optional<FragmentMetadata>> callback = fragmentMetadataOptional -> {
+            receivedFrames = true;
+            fragmentMetadataOptional.ifPresent(this::onFragment);
+        };
+        frameDecoder = new FramePublishingDecoder(imagePublisher, callback, sampler, gopDecoder, imageConverter);
+        frameVisitor = new FrameSliceVisitor(frameDecoder, 1L);
+    }
+
+    private static ProcessingRequest createRequest(String streamARN, String bucket, String directory) {
+        ProcessingRequest processingRequest = new ProcessingRequest();
+        processingRequest.setStreamARN(streamARN);
+        processingRequest.setBucket(bucket);
+        processingRequest.setS3Directory(directory);
+        return processingRequest;
+    }
+
+    private static StartSelector afterFragment(String fragmentNumber) {
+        return StartSelector.builder()
+                .startSelectorType(StartSelectorType.FRAGMENT_NUMBER)
+                .afterFragmentNumber(fragmentNumber).build();
+    }
+
+    private static StartSelector continuation(String continuationToken) {
+        return StartSelector.builder()
+                .startSelectorType(StartSelectorType.CONTINUATION_TOKEN)
+                .continuationToken(continuationToken).build();
+    }
+
+    /**
+     * Callback is invoked for every frame. When a new fragment starts the previous one is fully decoded and its images are published,
+     * it is checkpointed once they are stored, so a resumed task never skips images still queued or uploading.
+     */
+    private void onFragment(FragmentMetadata fragmentMetadata) {
+        String fragmentNumber = fragmentMetadata.getFragmentNumberString();
+        if (fragmentNumber.equals(lastFragmentNumber)) {
+            return;
+        }
+        if (checkpointStore != null && lastFragmentNumber != null) {
+            String processedFragmentNumber = lastFragmentNumber;
+            imagePublisher.checkpoint(() -> checkpointStore.save(streamARN, processedFragmentNumber));
+        }
+        lastFragmentNumber = fragmentNumber;
+        start = afterFragment(fragmentNumber);
     }
 
     /**
@@ -48,35 +158,191 @@ public class ProcessingTask implements Runnable {
     @Override
     public void run() {
         LOG.info("Starting to wait for media data from stream: " + streamARN);
-        do {
-            GetMediaRequest request = GetMediaRequest.builder()
-                    .streamARN(streamARN)
-                    .startSelector(start)
-                    .build();
-            ResponseInputStream<GetMediaResponse> media = mediaClient.getMedia(request);
-            try {
-                if (media.response().sdkHttpResponse().isSuccessful()) {
-                    Consumer<Optional<FragmentMetadata>> callback = fragmentMetadataOptional ->
-                            fragmentMetadataOptional.ifPresent(fragmentMetadata -> {
-                                        start = StartSelector.builder()
-                                                .startSelectorType(StartSelectorType.FRAGMENT_NUMBER)
-                                                .afterFragmentNumber(fragmentMetadata.getFragmentNumberString()).build();
-                                    }
-                            );
-
-                    FrameVisitor.FrameProcessor frameProcessor = new FramePublishingDecoder(imagePublisher, callback);
-                    MkvElementVisitor frameVisitor = FrameVisitor.create(frameProcessor, Optional.empty(), Optional.of(1L));
-                    StreamingMkvReader.createDefault(new InputStreamParserByteSource(media)).apply(frameVisitor);
-                } else {
-                    LOG.debug("No media data in stream: "+streamARN);
-                    Thread.sleep(200);
+        try {
+            SliceResult result;
+            while ((result = runSlice(Long.MAX_VALUE)) != SliceResult.FINISHED) {
+                if (result == SliceResult.IDLE) {
+                    LOG.debug("No media data in stream: " + streamARN);
+                    Thread.sleep(IDLE_SLEEP_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.error("Exception while processing stream: " + streamARN, e);
+            finish();
+        }
+    }
+
+    /**
+     * Processes stream data for about given time. Connection to the stream is kept open between slices,
+     * so {@link StreamScheduler} can interleave many streams on a few threads.
+     * With a {@link MediaPrefetcher} the slice waits for network data only until its end, so a stalled stream does not hold the thread.
+     * Without it reads block on the connection.
+     * @param sliceMillis - time after which processing is interrupted at the next MKV element
+     * @return {@link SliceResult#ACTIVE} when stream delivered data and should be continued,
+     * {@link SliceResult#IDLE} when GetMedia returned no frames or no media data arrived during the slice,
+     * {@link SliceResult#FINISHED} when task is stopped or failed
+     */
+    public SliceResult runSlice(long sliceMillis) {
+        long sliceStart = System.nanoTime();
+        long sliceNanos = TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+        boolean receivedData = false;
+        try {
+            if (reader == null && !connect()) {
+                return stop.get() ? finish() : SliceResult.IDLE;
+            }
+            boolean drained = false;
+            while (awaitData(sliceNanos - (System.nanoTime() - sliceStart))) {
+                if (!reader.mightHaveNext()) {
+                    drained = true;
+                    break;
+                }
+                long parseStart = System.nanoTime();
+                long readNanos = byteSource.readNanos();
+                Optional<MkvElement> element = reader.nextIfAvailable();
+                // Time spent reading the response is network or prefetch wait, not parsing
+                PipelineMetrics.latency(PipelineMetrics.Stage.PARSE).recordNanos(System.nanoTime() - parseStart - (byteSource.readNanos() - readNanos));
+                if (element.isPresent()) {
+                    receivedData = true;
+                    element.get().accept(frameVisitor);
+                }
+                if (System.nanoTime() - sliceStart >= sliceNanos) {
+                    break;
                 }
-            } catch (InterruptedException | MkvElementVisitException e) {
-                LOG.error("Exception while processing stream: "+ streamARN, e);
-                break;
             }
-        } while (!stop.get());
+            if (!drained) {
+                // Slice ended before the response
+                if (stop.get()) {
+                    frameDecoder.flush();
+                    disconnect(false);
+                    return finish();
+                }
+                return receivedData ? SliceResult.ACTIVE : SliceResult.IDLE;
+            }
+            frameDecoder.flush();
+            boolean receivedFrames = this.receivedFrames;
+            disconnect(true);
+            if (stop.get()) {
+                return finish();
+            }
+            return receivedFrames || archivedFragments != null ? SliceResult.ACTIVE : SliceResult.IDLE;
+        } catch (MkvElementVisitException | RuntimeException e) {
+            LOG.error("Exception while processing stream: " + streamARN, e);
+            disconnect(false);
+            return finish();
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while processing stream: " + streamARN);
+            Thread.currentThread().interrupt();
+            disconnect(false);
+            return finish();
+        }
+    }
+
+    /**
+     * Waits until the reader can continue without blocking on the network, only prefetched streams can tell that
+     * @param timeoutNanos - remaining time of the slice
+     * @return false when no data arrived in time
+     */
+    private boolean awaitData(long timeoutNanos) throws InterruptedException {
+        return prefetched == null || byteSource.available() > 0 || prefetched.await(timeoutNanos);
+    }
+
+    /**
+     * Starts GetMedia after the last seen fragment or takes the next archived fragment.
+     * Task is stopped after the last archived fragment.
+     * @return false when stream returned no data or the next archived fragment is still being fetched
+     * @throws InterruptedException if interrupted while checking archived fragments
+     */
+    private boolean connect() throws InterruptedException {
+        if (archivedFragments != null) {
+            if (!archivedFragments.isReady()) {
+                return false;
+            }
+            if (!archivedFragments.hasNext()) {
+                stop();
+                return false;
+            }
+            startReader(archivedFragments.next());
+            return true;
+        }
+        GetMediaRequest request = GetMediaRequest.builder()
+                .streamARN(streamARN)
+                .startSelector(start)
+                .build();
+        media = mediaClient.getMedia(request);
+        if (!media.response().sdkHttpResponse().isSuccessful()) {
+            disconnect(false);
+            return false;
+        }
+        InputStream input = media;
+        if (mediaPrefetcher != null) {
+            prefetched = mediaPrefetcher.prefetch(media);
+            metrics.setMediaBufferedBytes(prefetched::buffered);
+            input = prefetched;
+        }
+        startReader(input);
+        return true;
+    }
+
+    /**
+     * Only the reader is bound to the connection, decoder and visitor continue with the state left by the previous one
+     */
+    private void startReader(InputStream input) {
+        byteSource = new BufferedMediaByteSource(input);
+        reader = StreamingMkvReader.createDefault(byteSource);
+        receivedFrames = false;
+        connectContinuationToken = frameVisitor.getContinuationToken();
+    }
+
+    /**
+     * Response of the live stream ending normally carries a continuation token in the tags of its last fragment.
+     * Next GetMedia continues exactly where the response ended, so no fragment is skipped or read twice.
+     * @param drained - whole response was read, otherwise connection is aborted instead of reading the rest of a live stream
+     */
+    private void disconnect(boolean drained) {
+        if (drained && media != null) {
+            Optional<String> continuationToken = frameVisitor.getContinuationToken();
+            if (continuationToken.isPresent() && !continuationToken.equals(connectContinuationToken)) {
+                start = continuation(continuationToken.get());
+            }
+        }
+        if (prefetched != null) {
+            prefetched.close();
+            metrics.setMediaBufferedBytes(() -> 0);
+        }
+        if (media != null) {
+            if (!drained) {
+                media.abort();
+            }
+            try {
+                media.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close media stream: " + streamARN, e);
+            }
+        }
+        if (byteSource != null) {
+            byteSource.close();
+        }
+        media = null;
+        prefetched = null;
+        byteSource = null;
+        reader = null;
+    }
+
+    private SliceResult finish() {
+        if (archivedFragments != null) {
+            archivedFragments.close();
+        }
+        imagePublisher.close();
+        if (checkpointStore != null) {
+            checkpointStore.flush();
+        }
+        PipelineMetrics.unregisterStream(streamARN, metrics);
         LOG.info("Finished processing stream: " + streamARN);
+        return SliceResult.FINISHED;
+    }
+
+    public String getStreamARN() {
+        return streamARN;
     }
 
     public void stop() {
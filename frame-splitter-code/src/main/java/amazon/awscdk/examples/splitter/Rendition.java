@@ -0,0 +1,35 @@
+package amazon.awscdk.examples.splitter;
+
+/**
+ * Part of {@link ProcessingRequest} describing one of the images published for every frame.
+ * Example: <code>{ "s3Directory": "thumbnails", "image": { "width": 320 }, "encoder": { "format": "JPEG", "quality": 0.7 } }</code>
+ */
+public class Rendition {
+    private String s3Directory;
+    private ImageSettings image = new ImageSettings();
+    private EncoderSettings encoder = new EncoderSettings();
+
+    public String getS3Directory() {
+        return s3Directory;
+    }
+
+    public void setS3Directory(String s3Directory) {
+        this.s3Directory = s3Directory;
+    }
+
+    public ImageSettings getImage() {
+        return image;
+    }
+
+    public void setImage(ImageSettings image) {
+        this.image = image;
+    }
+
+    public EncoderSettings getEncoder() {
+        return encoder;
+    }
+
+    public void setEncoder(EncoderSettings encoder) {
+        this.encoder = encoder;
+    }
+}
@@ -0,0 +1,20 @@
+package amazon.awscdk.examples.splitter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ByteArrayOutputStream} giving access to its internal array instead of copying it
+ */
+class ReusableOutputStream extends ByteArrayOutputStream {
+    ReusableOutputStream(int size) {
+        super(size);
+    }
+
+    /**
+     * @return view of written bytes, valid until stream is reset
+     */
+    ByteBuffer view() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+}
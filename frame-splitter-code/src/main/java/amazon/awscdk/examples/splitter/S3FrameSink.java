@@ -0,0 +1,73 @@
+package amazon.awscdk.examples.splitter;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Writes objects to S3 bucket, synchronously with {@link S3Client} or in the background with shared {@link AsyncUploader}.
+ */
+public class S3FrameSink implements FrameSink {
+    private final S3Client s3Client;
+    private final AsyncUploader asyncUploader;
+    private final String bucket;
+
+    /**
+     * @param s3Client - client used for uploads when asyncUploader is null
+     * @param asyncUploader - shared asynchronous uploader, null to upload synchronously from the calling thread
+     * @param bucket - target bucket
+     */
+    public S3FrameSink(S3Client s3Client, AsyncUploader asyncUploader, String bucket) {
+        this.s3Client = s3Client;
+        this.asyncUploader = asyncUploader;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void write(String key, ByteBuffer bytes, String contentType, Consumer<Throwable> onComplete) throws InterruptedException {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucket).key(key)
+                .contentType(contentType)
+                .build();
+        long uploadStart = System.nanoTime();
+        if (asyncUploader == null) {
+            try {
+                s3Client.putObject(putObjectRequest, requestBody(bytes, contentType));
+            } catch (RuntimeException e) {
+                onComplete.accept(e);
+                return;
+            }
+            PipelineMetrics.latency(PipelineMetrics.Stage.S3_PUT).recordNanos(System.nanoTime() - uploadStart);
+            onComplete.accept(null);
+            return;
+        }
+        try {
+            asyncUploader.upload(putObjectRequest, bytes, (response, error) -> {
+                if (error == null) {
+                    PipelineMetrics.latency(PipelineMetrics.Stage.S3_PUT).recordNanos(System.nanoTime() - uploadStart);
+                }
+                onComplete.accept(error);
+            });
+        } catch (RuntimeException e) {
+            onComplete.accept(e);
+        }
+    }
+
+    @Override
+    public String describe(String key) {
+        return "s3://" + bucket + "/" + key;
+    }
+
+    /**
+     * Request body streaming the buffer without copying it. Buffer must not change until putObject returns.
+     */
+    private static RequestBody requestBody(ByteBuffer bytes, String contentType) {
+        return RequestBody.fromContentProvider(
+                () -> new ByteArrayInputStream(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()),
+                bytes.remaining(), contentType);
+    }
+}
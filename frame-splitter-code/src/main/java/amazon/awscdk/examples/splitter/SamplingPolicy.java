@@ -0,0 +1,67 @@
+package amazon.awscdk.examples.splitter;
+
+/**
+ * Part of {@link ProcessingRequest} describing which frames should be published.
+ * Example: <code>{ "mode": "TARGET_FPS", "fps": 1, "duplicateThreshold": 2.5 }</code>
+ */
+public class SamplingPolicy {
+    public enum Mode {
+        /**
+         * Every frame is published
+         */
+        ALL,
+        /**
+         * Only key frames are published, other frames are not decoded at all
+         */
+        KEYFRAMES,
+        /**
+         * Every n-th frame is published
+         */
+        EVERY_NTH,
+        /**
+         * Frames are published at given rate based on frame timecodes
+         */
+        TARGET_FPS
+    }
+
+    private Mode mode = Mode.ALL;
+    private int everyNth = 1;
+    private double fps;
+    private double duplicateThreshold;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getEveryNth() {
+        return everyNth;
+    }
+
+    public void setEveryNth(int everyNth) {
+        this.everyNth = everyNth;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    public void setFps(double fps) {
+        this.fps = fps;
+    }
+
+    /**
+     * @return frames whose mean luma difference to the last published frame is below this value are not published,
+     * on 0-255 scale, see {@link DuplicateFilter}. 0 disables the filter
+     */
+    public double getDuplicateThreshold() {
+        return duplicateThreshold;
+    }
+
+    public void setDuplicateThreshold(double duplicateThreshold) {
+        this.duplicateThreshold = duplicateThreshold;
+    }
+}
@@ -0,0 +1,71 @@
+package amazon.awscdk.examples.splitter;
+
+/**
+ * Ownership of a live stream by one frame splitter task, kept in a {@link LeaseStore}.
+ * The lease keeps the processing request, so another task can take the stream over when the owner is gone.
+ * Example: <code>{ "streamARN": "arn:aws:kinesisvideo:...", "owner": "ip-10-0-1-17-4f1c", "expiresAtMillis": 1609459230000, "request": "{...}" }</code>
+ */
+public class StreamLease {
+    private String streamARN;
+    /**
+     * Task processing the stream, null when the lease was released and any task may take it
+     */
+    private String owner;
+    /**
+     * Lease may be taken by another task from this moment on, unless the owner renews it
+     */
+    private long expiresAtMillis;
+    /**
+     * JSON of the {@link ProcessingRequest} which started processing of the stream
+     */
+    private String request;
+
+    public StreamLease() {
+    }
+
+    public StreamLease(String streamARN, String owner, long expiresAtMillis, String request) {
+        this.streamARN = streamARN;
+        this.owner = owner;
+        this.expiresAtMillis = expiresAtMillis;
+        this.request = request;
+    }
+
+    /**
+     * @return true when no task holds the lease at given time
+     */
+    public boolean isAvailable(long nowMillis) {
+        return owner == null || expiresAtMillis <= nowMillis;
+    }
+
+    public String getStreamARN() {
+        return streamARN;
+    }
+
+    public void setStreamARN(String streamARN) {
+        this.streamARN = streamARN;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public void setExpiresAtMillis(long expiresAtMillis) {
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public void setRequest(String request) {
+        this.request = request;
+    }
+}
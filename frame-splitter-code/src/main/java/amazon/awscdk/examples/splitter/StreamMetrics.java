@@ -0,0 +1,103 @@
+package amazon.awscdk.examples.splitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Frame counters of a single stream, see {@link PipelineMetrics}.
+ * Published, dropped and failed count source frames, a frame published in several renditions is counted once.
+ */
+public class StreamMetrics {
+    private final LongAdder framesDecoded = new LongAdder();
+    private final LongAdder framesPublished = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder framesFailed = new LongAdder();
+    private final LongAdder framesSuppressed = new LongAdder();
+    private volatile LongSupplier publisherQueueDepth = () -> 0;
+    private volatile LongSupplier mediaBufferedBytes = () -> 0;
+
+    public void frameDecoded() {
+        framesDecoded.increment();
+    }
+
+    /**
+     * Images of all renditions of the frame were stored in S3 or added to archives
+     */
+    public void framePublished() {
+        framesPublished.increment();
+    }
+
+    /**
+     * Image of at least one rendition was discarded because publisher queue was full, none failed
+     */
+    public void frameDropped() {
+        framesDropped.increment();
+    }
+
+    /**
+     * Image of at least one rendition could not be encoded or uploaded
+     */
+    public void frameFailed() {
+        framesFailed.increment();
+    }
+
+    /**
+     * Image was not published because it didn't differ enough from the previous one
+     */
+    public void frameSuppressed() {
+        framesSuppressed.increment();
+    }
+
+    /**
+     * Adds frame counters of another stream, e.g. a finished file to the total of a batch
+     */
+    public void add(StreamMetrics other) {
+        framesDecoded.add(other.getFramesDecoded());
+        framesPublished.add(other.getFramesPublished());
+        framesDropped.add(other.getFramesDropped());
+        framesFailed.add(other.getFramesFailed());
+        framesSuppressed.add(other.getFramesSuppressed());
+    }
+
+    public void setPublisherQueueDepth(LongSupplier publisherQueueDepth) {
+        this.publisherQueueDepth = publisherQueueDepth;
+    }
+
+    public void setMediaBufferedBytes(LongSupplier mediaBufferedBytes) {
+        this.mediaBufferedBytes = mediaBufferedBytes;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded.sum();
+    }
+
+    public long getFramesPublished() {
+        return framesPublished.sum();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    public long getFramesFailed() {
+        return framesFailed.sum();
+    }
+
+    public long getFramesSuppressed() {
+        return framesSuppressed.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("framesDecoded", getFramesDecoded());
+        snapshot.put("framesPublished", getFramesPublished());
+        snapshot.put("framesDropped", getFramesDropped());
+        snapshot.put("framesFailed", getFramesFailed());
+        snapshot.put("framesSuppressed", getFramesSuppressed());
+        snapshot.put("mediaBufferedBytes", mediaBufferedBytes.getAsLong());
+        snapshot.put("publisherQueueDepth", publisherQueueDepth.getAsLong());
+        return snapshot;
+    }
+}
@@ -0,0 +1,107 @@
+package amazon.awscdk.examples.splitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many {@link ProcessingTask}s on a small pool of worker threads.
+ * Active streams are processed in time slices and put back at the end of the worker queue, so every stream gets its turn.
+ * Idle streams don't occupy a worker, they are retried after a backoff growing exponentially up to the configured maximum.
+ */
+public class StreamScheduler implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamScheduler.class);
+    /**
+     * First retry of an idle stream, same as the fixed sleep of a task running on its own thread
+     */
+    public static final long INITIAL_BACKOFF_MILLIS = 200;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stream-scheduler-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long sliceMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * @param threads - number of worker threads decoding streams
+     * @param sliceMillis - time a stream is processed before other streams get the worker
+     * @param maxBackoffMillis - maximum time between retries of an idle stream
+     */
+    public StreamScheduler(int threads, long sliceMillis, long maxBackoffMillis) {
+        if (threads <= 0 || sliceMillis <= 0 || maxBackoffMillis < INITIAL_BACKOFF_MILLIS) {
+            throw new IllegalArgumentException("threads and sliceMillis must be > 0, maxBackoffMillis must be >= " + INITIAL_BACKOFF_MILLIS);
+        }
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.sliceMillis = sliceMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Schedules task until it finishes
+     * @param task - task to run
+     * @param onFinished - invoked once on a worker thread when the task finished
+     */
+    public void submit(ProcessingTask task, Runnable onFinished) {
+        workers.execute(new ScheduledStream(task, onFinished));
+    }
+
+    /**
+     * Number of active streams waiting for a free worker. Idle streams waiting for retry are not counted.
+     */
+    public int queuedStreams() {
+        return workers.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private class ScheduledStream implements Runnable {
+        private final ProcessingTask task;
+        private final Runnable onFinished;
+        private long backoffMillis;
+
+        ScheduledStream(ProcessingTask task, Runnable onFinished) {
+            this.task = task;
+            this.onFinished = onFinished;
+        }
+
+        @Override
+        public void run() {
+            ProcessingTask.SliceResult result;
+            try {
+                result = task.runSlice(sliceMillis);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to process stream: " + task.getStreamARN(), e);
+                result = ProcessingTask.SliceResult.FINISHED;
+            }
+            switch (result) {
+                case ACTIVE:
+                    backoffMillis = 0;
+                    workers.execute(this);
+                    break;
+                case IDLE:
+                    backoffMillis = backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(maxBackoffMillis, backoffMillis * 2);
+                    // Jitter spreads reconnects of streams which became idle at the same time
+                    long delay = backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+                    LOG.debug("Stream " + task.getStreamARN() + " idle, retrying in " + delay + " ms");
+                    timer.schedule(() -> workers.execute(this), delay, TimeUnit.MILLISECONDS);
+                    break;
+                case FINISHED:
+                    onFinished.run();
+                    break;
+            }
+        }
+    }
+}
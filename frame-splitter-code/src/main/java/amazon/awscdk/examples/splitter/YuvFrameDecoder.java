@@ -0,0 +1,42 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.utilities.H264FrameDecoder;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+import org.jcodec.codecs.h264.H264Decoder;
+import org.jcodec.codecs.h264.H264Utils;
+import org.jcodec.codecs.h264.mp4.AvcCBox;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link H264FrameDecoder} which can also return decoded pictures in their native YUV 4:2:0 form,
+ * skipping conversion to RGB {@link java.awt.image.BufferedImage} when only luma is needed or the frame is not published.
+ * A stream must be decoded with one of the two methods only, each of them keeps its own reference frames.
+ */
+public class YuvFrameDecoder extends H264FrameDecoder {
+    private final H264Decoder yuvDecoder = new H264Decoder();
+    private ByteBuffer codecPrivateData;
+    private AvcCBox avcC;
+
+    /**
+     * @return decoded picture, planes are aligned to 16 pixels, so the row stride is {@link Picture#getPlaneWidth(int)}.
+     * Null when the decoder did not output a picture.
+     */
+    public Picture decodeYuv(Frame frame, MkvTrackMetadata trackMetadata) {
+        int width = trackMetadata.getPixelWidth().get().intValue();
+        int height = trackMetadata.getPixelHeight().get().intValue();
+        ByteBuffer trackCodecPrivateData = ByteBuffer.wrap(trackMetadata.getCodecPrivateData().array());
+        // Decoder may be shared by streams, parameter sets are replaced when they change
+        if (!trackCodecPrivateData.equals(codecPrivateData)) {
+            avcC = AvcCBox.parseAvcCBox(trackCodecPrivateData.duplicate());
+            yuvDecoder.addSps(avcC.getSpsList());
+            yuvDecoder.addPps(avcC.getPpsList());
+            codecPrivateData = trackCodecPrivateData;
+        }
+        Picture buffer = Picture.create((width + 15) & ~15, (height + 15) & ~15, ColorSpace.YUV420J);
+        return yuvDecoder.decodeFrameFromNals(H264Utils.splitMOVPacket(frame.getFrameData(), avcC), buffer.getData());
+    }
+}
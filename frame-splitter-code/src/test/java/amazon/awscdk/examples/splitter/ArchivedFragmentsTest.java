@@ -0,0 +1,115 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.kinesisvideo.KinesisVideoClient;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.KinesisVideoArchivedMediaClient;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.Fragment;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.GetMediaForFragmentListRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.GetMediaForFragmentListResponse;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.ListFragmentsRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.ListFragmentsResponse;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ArchivedFragmentsTest {
+    private final KinesisVideoArchivedMediaClient client = mock(KinesisVideoArchivedMediaClient.class);
+    private final MutableClock clock = new MutableClock();
+    private final KinesisVideoClientRegistry clientRegistry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class),
+            (apiName, streamARN) -> "https://" + apiName, endpoint -> mock(KinesisVideoMediaClient.class), endpoint -> client,
+            clock, Duration.ofMinutes(5), 10);
+    private final ArchiveFetcher fetcher = new ArchiveFetcher(clientRegistry, 2);
+
+    @AfterEach
+    public void closeFetcher() {
+        fetcher.close();
+        clientRegistry.close();
+    }
+
+    @Test
+    public void fragmentsOfTimeRangeAreFetchedInProducerTimestampOrder() throws Exception {
+        doReturn(ListFragmentsResponse.builder().fragments(fragment("3", 3000), fragment("1", 1000)).nextToken("page2").build(),
+                ListFragmentsResponse.builder().fragments(fragment("2", 2000)).build())
+                .when(client).listFragments(any(ListFragmentsRequest.class));
+        doAnswer(invocation -> media(invocation.<GetMediaForFragmentListRequest>getArgument(0).fragments().get(0)))
+                .when(client).getMediaForFragmentList(any(GetMediaForFragmentListRequest.class));
+        ArchiveSelection selection = new ArchiveSelection();
+        selection.setStartTimestampMillis(500L);
+        selection.setEndTimestampMillis(3500L);
+
+        List<String> fetched = new ArrayList<>();
+        try (ArchivedFragments fragments = fetcher.open("streamARN", selection)) {
+            while (fragments.hasNext()) {
+                fetched.add(new String(fragments.next().readAllBytes(), StandardCharsets.US_ASCII));
+            }
+            assertThat(fragments.startTimestampMillis()).isEqualTo(500);
+        }
+
+        assertThat(fetched).containsExactly("fragment-1", "fragment-2", "fragment-3");
+        // Client is pooled while its endpoint is cached, it is closed once the endpoint expired and it is not leased any more
+        verify(client, never()).close();
+        clock.advance(Duration.ofMinutes(6));
+        clientRegistry.acquireMediaClient("otherStreamARN").close();
+        verify(client).close();
+    }
+
+    @Test
+    public void fragmentsAreListedOffTheCallingThread() throws Exception {
+        CountDownLatch listed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            listed.await();
+            return ListFragmentsResponse.builder().fragments(fragment("1", 1000)).build();
+        }).when(client).listFragments(any(ListFragmentsRequest.class));
+        doAnswer(invocation -> media(invocation.<GetMediaForFragmentListRequest>getArgument(0).fragments().get(0)))
+                .when(client).getMediaForFragmentList(any(GetMediaForFragmentListRequest.class));
+        ArchiveSelection selection = new ArchiveSelection();
+        selection.setStartTimestampMillis(500L);
+        selection.setEndTimestampMillis(3500L);
+
+        try (ArchivedFragments fragments = fetcher.open("streamARN", selection)) {
+            assertThat(fragments.isReady()).isFalse();
+            listed.countDown();
+            assertThat(fragments.hasNext()).isTrue();
+            assertThat(new String(fragments.next().readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("fragment-1");
+            assertThat(fragments.isReady()).isTrue();
+            assertThat(fragments.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void selectionNeedsEitherRangeOrFragments() {
+        ArchiveSelection selection = new ArchiveSelection();
+        selection.setStartTimestampMillis(1000L);
+
+        assertThatThrownBy(() -> fetcher.open("streamARN", selection)).isInstanceOf(IllegalArgumentException.class);
+        selection.setEndTimestampMillis(1000L);
+        assertThatThrownBy(() -> fetcher.open("streamARN", selection)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Fragment fragment(String fragmentNumber, long producerTimestampMillis) {
+        return Fragment.builder().fragmentNumber(fragmentNumber).producerTimestamp(Instant.ofEpochMilli(producerTimestampMillis)).build();
+    }
+
+    private static ResponseInputStream<GetMediaForFragmentListResponse> media(String fragmentNumber) {
+        byte[] bytes = ("fragment-" + fragmentNumber).getBytes(StandardCharsets.US_ASCII);
+        return new ResponseInputStream<>(GetMediaForFragmentListResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(bytes)));
+    }
+}
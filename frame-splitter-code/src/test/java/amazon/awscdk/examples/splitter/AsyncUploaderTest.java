@@ -0,0 +1,156 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncUploaderTest {
+    private static final PutObjectRequest REQUEST = PutObjectRequest.builder().bucket("bucket").key("images/1.png").build();
+    private static final ByteBuffer BYTES = ByteBuffer.wrap(new byte[]{1, 2, 3});
+
+    private final S3AsyncClient s3Client = mock(S3AsyncClient.class);
+
+    @Test
+    public void retryableErrorsAreRetried() throws Exception {
+        PutObjectResponse response = PutObjectResponse.builder().build();
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(failed(503))
+                .thenReturn(failed(429))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        AsyncUploader uploader = new AsyncUploader(s3Client, 4, 3);
+
+        Completion completion = upload(uploader);
+
+        assertThat(completion.await()).isNull();
+        assertThat(completion.response.get()).isSameAs(response);
+        verify(s3Client, times(3)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertThat(uploader.inFlight()).isZero();
+    }
+
+    @Test
+    public void lastErrorIsReportedWhenAttemptsAreExhausted() throws Exception {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(failed(500))
+                .thenReturn(failed(500))
+                .thenReturn(failed(500));
+        AsyncUploader uploader = new AsyncUploader(s3Client, 4, 2);
+
+        assertThat(upload(uploader).await()).isNotNull();
+        verify(s3Client, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertThat(uploader.inFlight()).isZero();
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws Exception {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(failed(403));
+        AsyncUploader uploader = new AsyncUploader(s3Client, 4, 5);
+
+        assertThat(upload(uploader).await()).isInstanceOf(S3Exception.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void uploadsInFlightAreBounded() throws Exception {
+        List<CompletableFuture<PutObjectResponse>> started = new CopyOnWriteArrayList<>();
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).then(invocation -> {
+            CompletableFuture<PutObjectResponse> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        });
+        AsyncUploader uploader = new AsyncUploader(s3Client, 2, 1);
+        upload(uploader);
+        upload(uploader);
+        CountDownLatch thirdStarted = new CountDownLatch(1);
+        Thread third = new Thread(() -> {
+            try {
+                upload(uploader);
+                thirdStarted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        third.start();
+
+        assertThat(thirdStarted.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(uploader.inFlight()).isEqualTo(2);
+        assertThat(started).hasSize(2);
+
+        started.get(0).complete(PutObjectResponse.builder().build());
+        assertThat(thirdStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(started).hasSize(3);
+        assertThat(uploader.inFlight()).isEqualTo(2);
+        third.join();
+    }
+
+    @Test
+    public void slotIsFreedWhenClientOrCallbackThrows() throws Exception {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenThrow(new IllegalStateException("Client closed"))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+        AsyncUploader uploader = new AsyncUploader(s3Client, 1, 1);
+
+        assertThat(upload(uploader).await()).isInstanceOf(IllegalStateException.class);
+        uploader.upload(REQUEST, BYTES, (response, error) -> {
+            throw new IllegalStateException("Callback failed");
+        });
+
+        assertThat(uploader.inFlight()).isZero();
+        uploader.close();
+    }
+
+    @Test
+    public void backoffIsCappedForAnyAttempt() {
+        assertThat(AsyncUploader.maxBackoffMillis(1)).isEqualTo(200);
+        assertThat(AsyncUploader.maxBackoffMillis(7)).isEqualTo(10_000);
+        assertThat(AsyncUploader.maxBackoffMillis(63)).isEqualTo(10_000);
+        assertThat(AsyncUploader.maxBackoffMillis(Integer.MAX_VALUE)).isEqualTo(10_000);
+    }
+
+    private static CompletableFuture<PutObjectResponse> failed(int status) {
+        return CompletableFuture.failedFuture(S3Exception.builder().statusCode(status).message("Status " + status).build());
+    }
+
+    private static Completion upload(AsyncUploader uploader) throws InterruptedException {
+        Completion completion = new Completion();
+        uploader.upload(REQUEST, BYTES, completion::complete);
+        return completion;
+    }
+
+    private static class Completion {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<PutObjectResponse> response = new AtomicReference<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        void complete(PutObjectResponse response, Throwable error) {
+            this.response.set(response);
+            this.error.set(error);
+            done.countDown();
+        }
+
+        /**
+         * @return error of the upload, null when it succeeded
+         */
+        Throwable await() throws InterruptedException {
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            return error.get();
+        }
+    }
+}
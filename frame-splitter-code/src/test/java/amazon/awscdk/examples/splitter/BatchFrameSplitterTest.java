@@ -0,0 +1,110 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.ebml.InputStreamParserByteSource;
+import com.amazonaws.kinesisvideo.parser.ebml.ParserByteSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchFrameSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void filesOfDirectoryAreSplitIntoSeparateOutputDirectories() throws Exception {
+        Path input = Files.createDirectories(tempDir.resolve("input"));
+        copyResource(input.resolve("first.mkv"));
+        copyResource(input.resolve("second.mkv"));
+        Files.write(input.resolve("notes.txt"), new byte[]{1});
+        Path output = tempDir.resolve("output");
+
+        ProcessingRequest settings = new ProcessingRequest();
+        settings.getSampling().setMode(SamplingPolicy.Mode.KEYFRAMES);
+        settings.getEncoder().setFormat(EncoderSettings.Format.JPEG);
+
+        BatchFrameSplitter batchFrameSplitter = new BatchFrameSplitter(new LocalDirectorySink(output), "images", 2, 1, settings);
+        int failed = batchFrameSplitter.process(BatchFrameSplitter.collectFiles(List.of(input.toString())));
+
+        assertThat(failed).isZero();
+        long first = countFiles(output.resolve("images/first"));
+        long second = countFiles(output.resolve("images/second"));
+        assertThat(first).isPositive().isEqualTo(second);
+        assertThat(batchFrameSplitter.getMetrics().getFramesPublished()).isEqualTo(first + second);
+        try (Stream<Path> files = Files.list(output.resolve("images/first"))) {
+            // Named after frame timestamps
+            assertThat(files.map(file -> file.getFileName().toString())).allMatch(name -> name.matches("\\d+(-\\d+)?\\.jpg"));
+        }
+    }
+
+    @Test
+    public void framesPublishedInSeveralRenditionsAreCountedOnce() throws Exception {
+        Path input = Files.createDirectories(tempDir.resolve("input"));
+        copyResource(input.resolve("video.mkv"));
+        Path output = tempDir.resolve("output");
+        ProcessingRequest settings = new ProcessingRequest();
+        settings.getSampling().setMode(SamplingPolicy.Mode.KEYFRAMES);
+        Rendition full = new Rendition();
+        full.setS3Directory("full");
+        Rendition thumbnails = new Rendition();
+        thumbnails.setS3Directory("thumbnails");
+        thumbnails.getImage().setWidth(160);
+        settings.setRenditions(List.of(full, thumbnails));
+
+        BatchFrameSplitter batchFrameSplitter = new BatchFrameSplitter(new LocalDirectorySink(output), "images", 2, 1, settings);
+        assertThat(batchFrameSplitter.process(BatchFrameSplitter.collectFiles(List.of(input.toString())))).isZero();
+
+        long frames = countFiles(output.resolve("images/video/full"));
+        assertThat(countFiles(output.resolve("images/video/thumbnails"))).isEqualTo(frames);
+        assertThat(batchFrameSplitter.getMetrics().getFramesPublished()).isPositive().isEqualTo(frames);
+    }
+
+    @Test
+    public void mappedFileIsReadAcrossWindows() throws Exception {
+        Path file = tempDir.resolve("video.mkv");
+        copyResource(file);
+
+        try (MappedFileByteSource mapped = new MappedFileByteSource(file, 1000);
+             InputStream stream = Files.newInputStream(file)) {
+            ParserByteSource expected = new InputStreamParserByteSource(stream);
+            ByteBuffer mappedBytes = ByteBuffer.allocate(777);
+            ByteBuffer expectedBytes = ByteBuffer.allocate(777);
+            while (!expected.eof()) {
+                assertThat(mapped.eof()).isFalse();
+                assertThat(mapped.readByte()).isEqualTo(expected.readByte());
+                mappedBytes.clear();
+                expectedBytes.clear();
+                while (mappedBytes.hasRemaining() && !mapped.eof()) {
+                    mapped.readBytes(mappedBytes, mappedBytes.remaining());
+                }
+                while (expectedBytes.hasRemaining() && !expected.eof()) {
+                    expected.readBytes(expectedBytes, expectedBytes.remaining());
+                }
+                assertThat(mappedBytes.flip()).isEqualTo(expectedBytes.flip());
+            }
+            assertThat(mapped.eof()).isTrue();
+            assertThat(mapped.readByte()).isEqualTo(-1);
+        }
+    }
+
+    private static void copyResource(Path target) throws Exception {
+        try (InputStream mkv = ClassLoader.getSystemResourceAsStream("vogels_330.mkv")) {
+            Files.copy(mkv, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long countFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
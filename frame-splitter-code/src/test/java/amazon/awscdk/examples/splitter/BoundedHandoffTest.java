@@ -0,0 +1,71 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedHandoffTest {
+
+    @Test
+    public void dropOldestKeepsNewestElements() throws InterruptedException {
+        BoundedHandoff<Integer> handoff = new BoundedHandoff<>(2, element -> 1L, BoundedHandoff.OverflowPolicy.DROP_OLDEST);
+        assertThat(handoff.offer(1)).isTrue();
+        assertThat(handoff.offer(2)).isTrue();
+        assertThat(handoff.offer(3)).isTrue();
+
+        assertThat(handoff.take()).isEqualTo(2);
+        assertThat(handoff.take()).isEqualTo(3);
+        assertThat(handoff.droppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dropNewestRejectsElementWhenFull() throws InterruptedException {
+        BoundedHandoff<Integer> handoff = new BoundedHandoff<>(10, Integer::longValue, BoundedHandoff.OverflowPolicy.DROP_NEWEST);
+        assertThat(handoff.offer(6)).isTrue();
+        assertThat(handoff.offer(5)).isFalse();
+        assertThat(handoff.offer(4)).isTrue();
+
+        assertThat(handoff.weight()).isEqualTo(10);
+        assertThat(handoff.droppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void oversizedElementIsAcceptedWhenEmpty() throws InterruptedException {
+        BoundedHandoff<Integer> handoff = new BoundedHandoff<>(10, Integer::longValue, BoundedHandoff.OverflowPolicy.DROP_NEWEST);
+        assertThat(handoff.offer(100)).isTrue();
+        assertThat(handoff.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void blockWaitsForConsumer() throws Exception {
+        BoundedHandoff<Integer> handoff = new BoundedHandoff<>(1, element -> 1L, BoundedHandoff.OverflowPolicy.BLOCK);
+        handoff.offer(1);
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> {
+            try {
+                return handoff.offer(2);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertThat(blocked).isNotDone();
+
+        assertThat(handoff.take()).isEqualTo(1);
+        assertThat(blocked.get(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(handoff.take()).isEqualTo(2);
+    }
+
+    @Test
+    public void closedHandoffIsDrainedThenReturnsNull() throws InterruptedException {
+        BoundedHandoff<Integer> handoff = new BoundedHandoff<>(5, element -> 1L, BoundedHandoff.OverflowPolicy.BLOCK);
+        handoff.offer(1);
+        handoff.close();
+
+        assertThat(handoff.offer(2)).isFalse();
+        assertThat(handoff.take()).isEqualTo(1);
+        assertThat(handoff.take()).isNull();
+    }
+}
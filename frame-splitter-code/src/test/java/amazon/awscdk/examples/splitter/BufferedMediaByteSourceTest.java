@@ -0,0 +1,122 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.ebml.InputStreamParserByteSource;
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadata;
+import com.amazonaws.kinesisvideo.parser.utilities.FragmentMetadataVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.FrameVisitor;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferedMediaByteSourceTest {
+
+    @Test
+    public void frameSlicesMatchFramesCopiedByLibrary() throws Exception {
+        byte[] mkv = mkvBytes();
+        List<ParsedFrame> expected = new ArrayList<>();
+        StreamingMkvReader.createDefault(new InputStreamParserByteSource(new ByteArrayInputStream(mkv)))
+                .apply(FrameVisitor.create(collector(expected), Optional.empty(), Optional.of(1L)));
+        List<ParsedFrame> sliced = new ArrayList<>();
+        // Short reads with nothing available force a refill for almost every element
+        try (BufferedMediaByteSource byteSource = new BufferedMediaByteSource(new TrickleInputStream(mkv, 7))) {
+            StreamingMkvReader.createDefault(byteSource).apply(new FrameSliceVisitor(collector(sliced), 1L));
+        }
+
+        assertThat(expected).isNotEmpty();
+        assertThat(sliced).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(sliced.get(i).timestampMillis).isEqualTo(expected.get(i).timestampMillis);
+            assertThat(sliced.get(i).keyFrame).isEqualTo(expected.get(i).keyFrame);
+            assertThat(sliced.get(i).data).isEqualTo(expected.get(i).data);
+        }
+    }
+
+    @Test
+    public void bytesAreServedFromBufferUntilEndOfStream() {
+        byte[] bytes = new byte[BufferedMediaByteSource.BUFFER_SIZE + 100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        try (BufferedMediaByteSource byteSource = new BufferedMediaByteSource(new ByteArrayInputStream(bytes))) {
+            assertThat(byteSource.available()).isEqualTo(bytes.length);
+            assertThat(byteSource.readByte()).isEqualTo(0);
+            ByteBuffer dest = ByteBuffer.allocate(bytes.length);
+            while (!byteSource.eof()) {
+                byteSource.readBytes(dest, dest.remaining());
+            }
+
+            assertThat(dest.position()).isEqualTo(bytes.length - 1);
+            assertThat(dest.get(dest.position() - 1)).isEqualTo(bytes[bytes.length - 1]);
+            assertThat(byteSource.available()).isZero();
+            assertThat(byteSource.readByte()).isEqualTo(-1);
+            assertThat(byteSource.readBytes(ByteBuffer.allocate(1), 1)).isEqualTo(-1);
+        }
+    }
+
+    private static FrameVisitor.FrameProcessor collector(List<ParsedFrame> frames) {
+        return new FrameVisitor.FrameProcessor() {
+            @Override
+            public void process(Frame frame, MkvTrackMetadata trackMetadata, Optional<FragmentMetadata> fragmentMetadata,
+                                Optional<FragmentMetadataVisitor.MkvTagProcessor> tagProcessor, Optional<BigInteger> timescale,
+                                Optional<BigInteger> fragmentTimecode) {
+                ByteBuffer data = frame.getFrameData().duplicate();
+                byte[] copy = new byte[data.remaining()];
+                data.get(copy);
+                frames.add(new ParsedFrame(fragmentTimecode.orElse(BigInteger.ZERO).longValue() + frame.getTimeCode(), frame.isKeyFrame(), copy));
+            }
+        };
+    }
+
+    private static byte[] mkvBytes() throws Exception {
+        try (InputStream mkv = ClassLoader.getSystemResourceAsStream("vogels_330.mkv")) {
+            return mkv.readAllBytes();
+        }
+    }
+
+    /**
+     * Returns at most given number of bytes per read and never reports available bytes
+     */
+    private static class TrickleInputStream extends FilterInputStream {
+        private final int maxRead;
+
+        TrickleInputStream(byte[] bytes, int maxRead) {
+            super(new ByteArrayInputStream(bytes));
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, Math.min(length, maxRead));
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+
+    private static class ParsedFrame {
+        private final long timestampMillis;
+        private final boolean keyFrame;
+        private final byte[] data;
+
+        ParsedFrame(long timestampMillis, boolean keyFrame, byte[] data) {
+            this.timestampMillis = timestampMillis;
+            this.keyFrame = keyFrame;
+            this.data = data;
+        }
+    }
+}
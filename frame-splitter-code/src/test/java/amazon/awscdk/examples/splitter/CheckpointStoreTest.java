@@ -0,0 +1,54 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CheckpointStoreTest {
+    private static final String STREAM_ARN = "arn:aws:kinesisvideo:eu-central-1:123456789012:stream/test/1234567890123";
+
+    @Test
+    public void fileStoreSurvivesReopening(@TempDir Path directory) {
+        assertThat(new FileCheckpointStore(directory).load(STREAM_ARN)).isEmpty();
+
+        new FileCheckpointStore(directory).save(STREAM_ARN, "91343852333181432392682062607743920146264772217");
+
+        assertThat(new FileCheckpointStore(directory).load(STREAM_ARN)).contains("91343852333181432392682062607743920146264772217");
+    }
+
+    @Test
+    public void batchingStoreWritesEveryNFragments(@TempDir Path directory) {
+        FileCheckpointStore fileStore = new FileCheckpointStore(directory);
+        BatchingCheckpointStore store = new BatchingCheckpointStore(fileStore, 3, Duration.ofMinutes(1), new MutableClock());
+
+        store.save(STREAM_ARN, "1");
+        store.save(STREAM_ARN, "2");
+        assertThat(store.load(STREAM_ARN)).contains("2");
+        assertThat(fileStore.load(STREAM_ARN)).isEmpty();
+
+        store.save(STREAM_ARN, "3");
+        assertThat(fileStore.load(STREAM_ARN)).contains("3");
+    }
+
+    @Test
+    public void batchingStoreWritesAfterInterval(@TempDir Path directory) {
+        FileCheckpointStore fileStore = new FileCheckpointStore(directory);
+        MutableClock clock = new MutableClock();
+        BatchingCheckpointStore store = new BatchingCheckpointStore(fileStore, 100, Duration.ofSeconds(30), clock);
+
+        store.save(STREAM_ARN, "1");
+        assertThat(fileStore.load(STREAM_ARN)).isEmpty();
+
+        clock.advance(Duration.ofSeconds(31));
+        store.save(STREAM_ARN, "2");
+        assertThat(fileStore.load(STREAM_ARN)).contains("2");
+
+        store.save(STREAM_ARN, "3");
+        store.close();
+        assertThat(fileStore.load(STREAM_ARN)).contains("3");
+    }
+}
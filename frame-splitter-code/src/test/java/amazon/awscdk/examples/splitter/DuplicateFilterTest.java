@@ -0,0 +1,82 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DuplicateFilterTest {
+
+    @Test
+    public void smallChangesAreSuppressedUntilTheyAddUp() {
+        DuplicateFilter filter = new DuplicateFilter(4);
+
+        assertThat(filter.isDuplicate(image(BufferedImage.TYPE_3BYTE_BGR, 100))).isFalse();
+        assertThat(filter.isDuplicate(image(BufferedImage.TYPE_3BYTE_BGR, 102))).isTrue();
+        assertThat(filter.isDuplicate(image(BufferedImage.TYPE_3BYTE_BGR, 103))).isTrue();
+        // Compared with the last published image, not the last suppressed one
+        assertThat(filter.isDuplicate(image(BufferedImage.TYPE_3BYTE_BGR, 104))).isFalse();
+        assertThat(filter.isDuplicate(image(BufferedImage.TYPE_3BYTE_BGR, 106))).isTrue();
+    }
+
+    @Test
+    public void localChangeIsDetected() {
+        DuplicateFilter filter = new DuplicateFilter(2);
+        BufferedImage changed = image(BufferedImage.TYPE_BYTE_GRAY, 100);
+        Graphics2D graphics = changed.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 80, 60);
+        graphics.dispose();
+
+        assertThat(filter.isDuplicate(image(BufferedImage.TYPE_BYTE_GRAY, 100))).isFalse();
+        assertThat(filter.isDuplicate(changed)).isFalse();
+    }
+
+    @Test
+    public void signatureDoesNotDependOnImageType() {
+        int[] bgr = DuplicateFilter.signature(image(BufferedImage.TYPE_3BYTE_BGR, 90));
+        int[] gray = DuplicateFilter.signature(image(BufferedImage.TYPE_BYTE_GRAY, 90));
+        int[] argb = DuplicateFilter.signature(image(BufferedImage.TYPE_INT_RGB, 90));
+
+        assertThat(bgr).hasSize(DuplicateFilter.GRID * DuplicateFilter.GRID);
+        assertThat(DuplicateFilter.difference(bgr, gray)).isZero();
+        assertThat(DuplicateFilter.difference(bgr, argb)).isZero();
+    }
+
+    @Test
+    public void imagesSmallerThanGridAreSupported() {
+        assertThat(DuplicateFilter.signature(image(BufferedImage.TYPE_3BYTE_BGR, 50, 5, 3))).containsOnly(50);
+    }
+
+    @Test
+    public void thresholdMustBePositive() {
+        assertThatThrownBy(() -> new DuplicateFilter(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DuplicateFilter(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BufferedImage image(int type, int luma) {
+        return image(type, luma, 320, 240);
+    }
+
+    private static BufferedImage image(int type, int luma, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        if (type == BufferedImage.TYPE_BYTE_GRAY) {
+            // Drawing colors on gray images applies gamma, samples are set directly instead
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    image.getRaster().setSample(x, y, 0, luma);
+                }
+            }
+            return image;
+        }
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(luma, luma, luma));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,54 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrameArchiveTest {
+
+    private static final FrameMetadata METADATA = new FrameMetadata("91343852333181432392682062607743920146264772217", 1000, 1001, 1500);
+
+    @Test
+    public void completesOnceAllExpectedFramesAreAddedOrSkipped() {
+        List<FrameArchive> completed = new ArrayList<>();
+        FrameArchive archive = new FrameArchive("dir/archive-1", completed::add);
+        archive.expect();
+        archive.expect();
+        archive.seal();
+        archive.add(1, METADATA, "1.png", ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertThat(completed).isEmpty();
+
+        archive.skip();
+        assertThat(completed).containsExactly(archive);
+        assertThat(archive.getTarKey()).isEqualTo("dir/archive-1.tar");
+        assertThat(archive.getIndexKey()).isEqualTo("dir/archive-1.index.json");
+    }
+
+    @Test
+    public void indexPointsToFrameDataInsideTar() throws Exception {
+        FrameArchive archive = new FrameArchive("archive-1", completed -> {
+        });
+        archive.expect();
+        archive.expect();
+        archive.add(2, METADATA, "2.png", ByteBuffer.wrap("second".getBytes(StandardCharsets.US_ASCII)));
+        archive.add(1, METADATA, "1.png", ByteBuffer.wrap("first".getBytes(StandardCharsets.US_ASCII)));
+        archive.seal();
+
+        ByteBuffer tar = archive.tarBytes();
+        assertThat(tar.remaining() % 512).isEqualTo(0);
+        JsonNode index = new ObjectMapper().readTree(archive.indexBytes());
+        assertThat(index.get("archive").asText()).isEqualTo("archive-1.tar");
+        JsonNode first = index.get("frames").get(0);
+        assertThat(first.get("frameNumber").asLong()).isEqualTo(1);
+        assertThat(first.get("timestampMillis").asLong()).isEqualTo(1500);
+        String data = new String(tar.array(), first.get("offset").asInt(), first.get("length").asInt(), StandardCharsets.US_ASCII);
+        assertThat(data).isEqualTo("first");
+    }
+}
@@ -0,0 +1,248 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrameIndexChunkTest {
+
+    private static final FrameMetadata METADATA = new FrameMetadata("91343852333181432392682062607743920146264772217", 1000, 1001, 1500);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void completesOnceAllExpectedFramesAreAddedOrSkipped() throws Exception {
+        List<FrameIndexChunk> completed = new ArrayList<>();
+        FrameIndexChunk chunk = new FrameIndexChunk("dir/", 1000, 1000, completed::add);
+        chunk.expect();
+        chunk.expect();
+        chunk.expect();
+        chunk.seal();
+        chunk.add(2, METADATA, "dir/2.png", 20, null);
+        chunk.add(1, METADATA, "dir/1.png", 10, null);
+        assertThat(completed).isEmpty();
+
+        chunk.skip();
+        assertThat(completed).containsExactly(chunk);
+        assertThat(chunk.getKey()).isEqualTo("dir/index/1000/1500-1500.json");
+        JsonNode json = new ObjectMapper().readTree(chunk.bytes());
+        assertThat(json.get("windowStartMillis").asLong()).isEqualTo(1000);
+        JsonNode first = json.get("frames").get(0);
+        assertThat(first.get("frameNumber").asLong()).isEqualTo(1);
+        assertThat(first.get("fragmentNumber").asText()).isEqualTo(METADATA.getFragmentNumber());
+        assertThat(first.get("producerTimestampMillis").asLong()).isEqualTo(1000);
+        assertThat(first.get("serverTimestampMillis").asLong()).isEqualTo(1001);
+        assertThat(first.get("timestampMillis").asLong()).isEqualTo(1500);
+        assertThat(first.get("key").asText()).isEqualTo("dir/1.png");
+        assertThat(first.has("offset")).isFalse();
+    }
+
+    @Test
+    public void publisherWritesChunkPerWindowPointingToImages() throws Exception {
+        OutputSettings outputSettings = new OutputSettings();
+        outputSettings.setIndexWindowMillis(1000);
+
+        publish(outputSettings);
+
+        List<JsonNode> frames = new ArrayList<>();
+        for (long windowStart : new long[]{0, 1000, 2000}) {
+            JsonNode chunk = readChunk(windowStart);
+            assertThat(chunk.get("frames")).hasSize(windowStart == 0 ? 4 : 3);
+            chunk.get("frames").forEach(frames::add);
+        }
+        assertThat(frames).hasSize(10);
+        for (int i = 0; i < frames.size(); i++) {
+            JsonNode frame = frames.get(i);
+            assertThat(frame.get("frameNumber").asLong()).isEqualTo(i + 1);
+            assertThat(frame.get("timestampMillis").asLong()).isEqualTo(i * 300L);
+            assertThat(Files.size(tempDir.resolve(frame.get("key").asText()))).isEqualTo(frame.get("length").asLong());
+        }
+    }
+
+    @Test
+    public void archivedImagesAreIndexedByOffset() throws Exception {
+        OutputSettings outputSettings = new OutputSettings();
+        outputSettings.setMode(OutputSettings.Mode.ARCHIVE);
+        outputSettings.setWindowMillis(500);
+        outputSettings.setIndexWindowMillis(1000);
+
+        publish(outputSettings);
+
+        JsonNode frame = readChunk(1000).get("frames").get(0);
+        assertThat(frame.get("key").asText()).endsWith(".tar");
+        byte[] tar = Files.readAllBytes(tempDir.resolve(frame.get("key").asText()));
+        int offset = frame.get("offset").asInt();
+        // PNG signature at the start of the image data
+        assertThat(tar[offset + 1]).isEqualTo((byte) 'P');
+        assertThat(offset + frame.get("length").asInt()).isLessThanOrEqualTo(tar.length);
+    }
+
+    @Test
+    public void failedArchiveIsNotIndexed() throws Exception {
+        OutputSettings outputSettings = new OutputSettings();
+        outputSettings.setMode(OutputSettings.Mode.ARCHIVE);
+        outputSettings.setWindowMillis(500);
+        outputSettings.setIndexWindowMillis(1000);
+        LocalDirectorySink directory = new LocalDirectorySink(tempDir);
+        // Archive of frames 600 and 900 can't be written
+        FrameSink sink = (key, bytes, contentType, onComplete) -> {
+            if (key.startsWith("images/archive-600")) {
+                onComplete.accept(new IOException("write failed"));
+            } else {
+                directory.write(key, bytes, contentType, onComplete);
+            }
+        };
+
+        publish(sink, outputSettings, 0, 10);
+
+        List<JsonNode> chunks = readChunks(0);
+        chunks.addAll(readChunks(1000));
+        List<Long> indexed = new ArrayList<>();
+        for (JsonNode chunk : chunks) {
+            chunk.get("frames").forEach(frame -> {
+                assertThat(Files.exists(tempDir.resolve(frame.get("key").asText()))).isTrue();
+                indexed.add(frame.get("timestampMillis").asLong());
+            });
+        }
+        assertThat(indexed).containsExactlyInAnyOrder(0L, 300L, 1200L, 1500L, 1800L);
+    }
+
+    @Test
+    public void chunksOfResumedPublisherDoNotReplaceEarlierOnes() throws Exception {
+        OutputSettings outputSettings = new OutputSettings();
+        outputSettings.setIndexWindowMillis(10_000);
+
+        // Second task resumes in the middle of the window and replays the last frame of the first one
+        publish(new LocalDirectorySink(tempDir), outputSettings, 0, 5);
+        publish(new LocalDirectorySink(tempDir), outputSettings, 4, 10);
+
+        List<JsonNode> chunks = readChunks(0);
+        assertThat(chunks).hasSize(2);
+        Set<Long> indexed = new TreeSet<>();
+        chunks.forEach(chunk -> chunk.get("frames").forEach(frame -> indexed.add(frame.get("timestampMillis").asLong())));
+        assertThat(indexed).hasSize(10);
+    }
+
+    @Test
+    public void checkpointIsSavedOnlyOnceIndexListsItsFramesSoResumedStreamIsFullyIndexed() throws Exception {
+        OutputSettings outputSettings = new OutputSettings();
+        outputSettings.setIndexWindowMillis(10_000);
+        LocalDirectorySink directory = new LocalDirectorySink(tempDir);
+        CountDownLatch imagesWritten = new CountDownLatch(6);
+        // Chunk of the second window is never written, as if the task crashed before
+        FrameSink sink = (key, bytes, contentType, onComplete) -> {
+            if (key.startsWith(FrameIndexChunk.prefixOf("images/", 10_000))) {
+                onComplete.accept(new IOException("task crashed"));
+                return;
+            }
+            directory.write(key, bytes, contentType, error -> {
+                onComplete.accept(error);
+                if (!key.contains("/index/")) {
+                    imagesWritten.countDown();
+                }
+            });
+        };
+        ImagePublisher crashed = publisher(sink, outputSettings);
+        AtomicInteger checkpoint = new AtomicInteger();
+        CountDownLatch firstWindowCheckpointed = new CountDownLatch(4);
+        for (int i = 0; i < 6; i++) {
+            crashed.publish(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR), new FrameMetadata("1", 0, 0, i * 3000L));
+            int next = i + 1;
+            crashed.checkpoint(() -> {
+                checkpoint.set(next);
+                firstWindowCheckpointed.countDown();
+            });
+        }
+        assertThat(firstWindowCheckpointed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(imagesWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        int resumeFrom = checkpoint.get();
+        assertThat(resumeFrom).isEqualTo(4);
+        crashed.close();
+
+        ImagePublisher resumed = publisher(new LocalDirectorySink(tempDir), outputSettings);
+        for (int i = resumeFrom; i < 10; i++) {
+            resumed.publish(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR), new FrameMetadata("1", 0, 0, i * 3000L));
+        }
+        resumed.close();
+
+        Set<Long> indexed = new TreeSet<>();
+        for (long windowStart : new long[]{0, 10_000, 20_000}) {
+            readChunks(windowStart).forEach(chunk -> chunk.get("frames").forEach(frame -> indexed.add(frame.get("timestampMillis").asLong())));
+        }
+        assertThat(indexed).hasSize(10);
+    }
+
+    @Test
+    public void windowOfLiveStreamIsWrittenOnceItTimesOut() throws Exception {
+        OutputSettings outputSettings = new OutputSettings();
+        outputSettings.setIndexWindowMillis(200);
+        ImagePublisher publisher = publisher(new LocalDirectorySink(tempDir), outputSettings);
+        CountDownLatch checkpointed = new CountDownLatch(1);
+        publisher.publish(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR), new FrameMetadata("1", 0, 0, 0));
+        publisher.publish(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR), new FrameMetadata("1", 0, 0, 100));
+        publisher.checkpoint(checkpointed::countDown);
+
+        // No later frame ends the window
+        assertThat(checkpointed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(readChunk(0).get("frames")).hasSize(2);
+        publisher.close();
+    }
+
+    private void publish(OutputSettings outputSettings) {
+        publish(new LocalDirectorySink(tempDir), outputSettings, 0, 10);
+    }
+
+    private void publish(FrameSink sink, OutputSettings outputSettings, int from, int to) {
+        ImagePublisher publisher = publisher(sink, outputSettings);
+        for (int i = from; i < to; i++) {
+            publisher.publish(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR), new FrameMetadata("1", 0, 0, i * 300L));
+        }
+        publisher.close();
+    }
+
+    private ImagePublisher publisher(FrameSink sink, OutputSettings outputSettings) {
+        ProcessingRequest request = new ProcessingRequest();
+        request.setS3Directory("images");
+        return new ImagePublisher(sink, request.effectiveRenditions(), 2, BackpressureSettings.defaults(), outputSettings, new StreamMetrics());
+    }
+
+    private JsonNode readChunk(long windowStart) throws Exception {
+        List<JsonNode> chunks = readChunks(windowStart);
+        assertThat(chunks).hasSize(1);
+        return chunks.get(0);
+    }
+
+    /**
+     * Chunks of the window, found by listing its prefix
+     */
+    private List<JsonNode> readChunks(long windowStart) throws Exception {
+        Path prefix = tempDir.resolve(FrameIndexChunk.prefixOf("images/", windowStart));
+        List<JsonNode> chunks = new ArrayList<>();
+        if (Files.isDirectory(prefix)) {
+            try (Stream<Path> files = Files.list(prefix)) {
+                for (Path file : files.sorted().collect(Collectors.toList())) {
+                    chunks.add(new ObjectMapper().readTree(file.toFile()));
+                }
+            }
+        }
+        return chunks;
+    }
+}
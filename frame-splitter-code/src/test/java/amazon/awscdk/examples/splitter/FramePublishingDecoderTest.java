@@ -0,0 +1,128 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.StreamingMkvReader;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class FramePublishingDecoderTest {
+
+    @Test
+    public void gopParallelDecodingPublishesSameImagesInOrder() throws Exception {
+        List<Published> sequential = decode(null, new ImageSettings());
+        List<Published> parallel;
+        try (GopDecoder gopDecoder = new GopDecoder(3)) {
+            parallel = decode(gopDecoder, new ImageSettings());
+        }
+
+        assertThat(sequential).isNotEmpty();
+        assertThat(parallel).hasSameSizeAs(sequential);
+        for (int i = 0; i < sequential.size(); i++) {
+            assertThat(parallel.get(i).timestampMillis).isEqualTo(sequential.get(i).timestampMillis);
+            assertThat(parallel.get(i).pixels).isEqualTo(sequential.get(i).pixels);
+        }
+    }
+
+    @Test
+    public void grayThumbnailsAreTakenFromLumaPlane() throws Exception {
+        ImageSettings settings = new ImageSettings();
+        settings.setColor(ImageSettings.Color.GRAY);
+        settings.setWidth(160);
+        List<Published> rgb = decode(null, new ImageSettings());
+        List<Published> sequential = decode(null, settings);
+        List<Published> parallel;
+        try (GopDecoder gopDecoder = new GopDecoder(2)) {
+            parallel = decode(gopDecoder, settings);
+        }
+
+        assertThat(sequential).hasSameSizeAs(rgb).hasSameSizeAs(parallel);
+        int height = 160 * rgb.get(0).height / rgb.get(0).width;
+        for (int i = 0; i < sequential.size(); i++) {
+            assertThat(sequential.get(i).type).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+            assertThat(sequential.get(i).width).isEqualTo(160);
+            assertThat(sequential.get(i).height).isBetween(height, height + 1);
+            assertThat(parallel.get(i).pixels).isEqualTo(sequential.get(i).pixels);
+        }
+    }
+
+    @Test
+    public void nearDuplicateFramesAreSuppressedInFrameOrder() throws Exception {
+        SamplingPolicy policy = new SamplingPolicy();
+        policy.setDuplicateThreshold(3);
+        List<Published> all = decode(null, new ImageSettings());
+        StreamMetrics sequentialMetrics = new StreamMetrics();
+        List<Published> sequential = decode(null, new ImageSettings(), policy, sequentialMetrics);
+        StreamMetrics parallelMetrics = new StreamMetrics();
+        List<Published> parallel;
+        try (GopDecoder gopDecoder = new GopDecoder(3)) {
+            parallel = decode(gopDecoder, new ImageSettings(), policy, parallelMetrics);
+        }
+
+        assertThat(sequential).isNotEmpty().hasSizeLessThan(all.size());
+        assertThat(sequential.get(0).timestampMillis).isEqualTo(all.get(0).timestampMillis);
+        assertThat(sequentialMetrics.getFramesSuppressed()).isEqualTo(all.size() - sequential.size());
+        assertThat(parallelMetrics.getFramesSuppressed()).isEqualTo(sequentialMetrics.getFramesSuppressed());
+        assertThat(parallel).hasSameSizeAs(sequential);
+        for (int i = 0; i < sequential.size(); i++) {
+            assertThat(parallel.get(i).timestampMillis).isEqualTo(sequential.get(i).timestampMillis);
+        }
+    }
+
+    private static List<Published> decode(GopDecoder gopDecoder, ImageSettings imageSettings) throws Exception {
+        return decode(gopDecoder, imageSettings, new SamplingPolicy(), new StreamMetrics());
+    }
+
+    private static List<Published> decode(GopDecoder gopDecoder, ImageSettings imageSettings, SamplingPolicy policy, StreamMetrics metrics)
+            throws Exception {
+        List<Published> published = new ArrayList<>();
+        ImagePublisher publisher = new ImagePublisher(mock(S3Client.class), "bucket", "images", 1) {
+            @Override
+            public void publish(BufferedImage bufferedImage, FrameMetadata metadata) {
+                published.add(new Published(metadata.getTimestampMillis(), bufferedImage));
+            }
+
+            @Override
+            public StreamMetrics getMetrics() {
+                return metrics;
+            }
+        };
+        List<Optional<?>> callbacks = new ArrayList<>();
+        FramePublishingDecoder decoder = new FramePublishingDecoder(publisher, callbacks::add, new FrameSampler(policy), gopDecoder,
+                new ImageConverter(imageSettings));
+        // Frames are slices of the parser buffer, so GOP decoding works on its own copies
+        try (InputStream mkv = ClassLoader.getSystemResourceAsStream("vogels_330.mkv");
+             BufferedMediaByteSource byteSource = new BufferedMediaByteSource(mkv)) {
+            StreamingMkvReader.createDefault(byteSource).apply(new FrameSliceVisitor(decoder, 1L));
+        }
+        decoder.flush();
+        publisher.close();
+
+        assertThat(callbacks).hasSize(published.size() + (int) metrics.getFramesSuppressed());
+        return published;
+    }
+
+    private static class Published {
+        private final long timestampMillis;
+        private final byte[] pixels;
+        private final int width;
+        private final int height;
+        private final int type;
+
+        Published(long timestampMillis, BufferedImage image) {
+            this.timestampMillis = timestampMillis;
+            this.pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.type = image.getType();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package amazon.awscdk.examples.splitter;
+
+import com.amazonaws.kinesisvideo.parser.mkv.Frame;
+import com.amazonaws.kinesisvideo.parser.utilities.MkvTrackMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrameSamplerTest {
+    private static final MkvTrackMetadata TRACK = MkvTrackMetadata.builder()
+            .trackNumber(BigInteger.ONE)
+            .codecPrivateData(ByteBuffer.wrap(new byte[]{1, 0x64, 0, 0x1f, (byte) 0xff}))
+            .build();
+
+    @Test
+    public void keyframesModeSkipsOtherFrames() {
+        FrameSampler sampler = new FrameSampler(policy(SamplingPolicy.Mode.KEYFRAMES));
+
+        assertThat(sampler.sample(frame(true, 0x65), TRACK, 0)).isEqualTo(FrameSampler.Decision.PUBLISH);
+        assertThat(sampler.sample(frame(false, 0x41), TRACK, 40)).isEqualTo(FrameSampler.Decision.SKIP);
+    }
+
+    @Test
+    public void everyNthModeDecodesReferenceFramesOnly() {
+        SamplingPolicy policy = policy(SamplingPolicy.Mode.EVERY_NTH);
+        policy.setEveryNth(3);
+        FrameSampler sampler = new FrameSampler(policy);
+
+        assertThat(sampler.sample(frame(true, 0x65), TRACK, 0)).isEqualTo(FrameSampler.Decision.PUBLISH);
+        assertThat(sampler.sample(frame(false, 0x41), TRACK, 0)).isEqualTo(FrameSampler.Decision.DECODE_ONLY);
+        assertThat(sampler.sample(frame(false, 0x01), TRACK, 0)).isEqualTo(FrameSampler.Decision.SKIP);
+        assertThat(sampler.sample(frame(false, 0x41), TRACK, 0)).isEqualTo(FrameSampler.Decision.PUBLISH);
+    }
+
+    @Test
+    public void targetFpsModeUsesTimestamps() {
+        SamplingPolicy policy = policy(SamplingPolicy.Mode.TARGET_FPS);
+        policy.setFps(1);
+        FrameSampler sampler = new FrameSampler(policy);
+
+        int published = 0;
+        for (long timestamp = 10_000; timestamp < 13_000; timestamp += 40) {
+            if (sampler.sample(frame(false, 0x41), TRACK, timestamp) == FrameSampler.Decision.PUBLISH) {
+                published++;
+            }
+        }
+        assertThat(published).isEqualTo(3);
+    }
+
+    @Test
+    public void timeRangeLimitsPublishedFrames() {
+        FrameSampler sampler = new FrameSampler(policy(SamplingPolicy.Mode.ALL), 1000, 2000);
+
+        assertThat(sampler.sample(frame(true, 0x65), TRACK, 960)).isEqualTo(FrameSampler.Decision.DECODE_ONLY);
+        assertThat(sampler.sample(frame(false, 0x01), TRACK, 980)).isEqualTo(FrameSampler.Decision.SKIP);
+        assertThat(sampler.sample(frame(false, 0x41), TRACK, 1000)).isEqualTo(FrameSampler.Decision.PUBLISH);
+        assertThat(sampler.sample(frame(false, 0x41), TRACK, 2000)).isEqualTo(FrameSampler.Decision.SKIP);
+    }
+
+    private static SamplingPolicy policy(SamplingPolicy.Mode mode) {
+        SamplingPolicy policy = new SamplingPolicy();
+        policy.setMode(mode);
+        return policy;
+    }
+
+    private static Frame frame(boolean keyFrame, int nalHeader) {
+        ByteBuffer data = ByteBuffer.wrap(new byte[]{0, 0, 0, 2, (byte) nalHeader, 0});
+        return Frame.builder()
+                .trackNumber(1)
+                .keyFrame(keyFrame)
+                .lacing(Frame.Lacing.NO)
+                .frameData(data)
+                .build();
+    }
+}
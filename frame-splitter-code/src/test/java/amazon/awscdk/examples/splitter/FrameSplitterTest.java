@@ -0,0 +1,254 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.kinesisvideo.KinesisVideoClient;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaRequest;
+import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaResponse;
+import software.amazon.awssdk.services.kinesisvideomedia.model.StartSelector;
+import software.amazon.awssdk.services.kinesisvideomedia.model.StartSelectorType;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FrameSplitterTest {
+    private final SqsClient sqsClient = mock(SqsClient.class);
+    private final StreamScheduler streamScheduler = mock(StreamScheduler.class);
+    private final List<StreamScheduler> schedulers = new ArrayList<>();
+
+    @AfterEach
+    public void closeSchedulers() {
+        schedulers.forEach(StreamScheduler::close);
+    }
+
+    @Test
+    public void receiveBatchIsSizedToFreeSlots() {
+        when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(
+                response(message("1", live("first")), message("2", live("second"))),
+                response());
+        FrameSplitter frameSplitter = frameSplitter(3, arn -> "https://endpoint");
+
+        frameSplitter.receive();
+        frameSplitter.receive();
+
+        assertThat(receivedBatchSizes(2)).containsExactly(3, 1);
+        verify(streamScheduler, times(2)).submit(any(ProcessingTask.class), any(Runnable.class));
+        assertThat(deletedReceipts()).containsExactly("1", "2");
+    }
+
+    @Test
+    public void slotsOfInvalidAndFailedMessagesAreReleased() {
+        when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(
+                response(message("malformed", "{"),
+                        message("invalid", "{\"streamARN\":\"invalid\",\"bucket\":\"bucket\",\"s3Directory\":\"images\",\"sampling\":{\"mode\":\"EVERY_NTH\",\"everyNth\":0}}"),
+                        message("failed", live("unreachable"))),
+                response());
+        FrameSplitter frameSplitter = frameSplitter(3, arn -> {
+            if (arn.equals("unreachable")) {
+                throw new IllegalStateException("GetDataEndpoint failed");
+            }
+            return "https://endpoint";
+        });
+
+        frameSplitter.receive();
+        frameSplitter.receive();
+
+        assertThat(receivedBatchSizes(2)).containsExactly(3, 3);
+        // Failed message is not deleted, so it is received again after visibility timeout
+        assertThat(deletedReceipts()).containsExactly("malformed", "invalid");
+    }
+
+    @Test
+    public void streamOfStoppedTaskIsTakenOverAndResumedAfterCheckpoint(@TempDir Path tempDir) throws Exception {
+        TestFragments fragments = new TestFragments("vogels_330.mkv");
+        int split = fragments.count() / 2;
+        MutableClock clock = new MutableClock();
+        InMemoryLeaseStore leaseStore = new InMemoryLeaseStore(clock);
+        FileCheckpointStore checkpoints = new FileCheckpointStore(tempDir.resolve("checkpoints"));
+        String body = "{\"streamARN\":\"stream\",\"bucket\":\"bucket\",\"s3Directory\":\"images\",\"sampling\":{\"mode\":\"KEYFRAMES\"}}";
+        when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(response(message("1", body))).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return response();
+        });
+
+        // First task processes the first half of the stream, then it is shut down and hands the stream over
+        List<GetMediaRequest> firstRequests = new CopyOnWriteArrayList<>();
+        FrameSplitter first = leasedFrameSplitter(leaseStore, clock, "first", checkpoints, tempDir.resolve("first"),
+                mediaClient(fragments, split, firstRequests));
+        Thread firstReceiver = receiveUntilShutdown(first);
+        awaitRequests(firstRequests, 2);
+        first.shutdown(Duration.ofSeconds(10));
+        firstReceiver.join(10_000);
+        Optional<String> checkpoint = checkpoints.load("stream");
+        assertThat(checkpoint).isPresent();
+        assertThat(leaseStore.list()).singleElement().satisfies(lease -> assertThat(lease.isAvailable(clock.millis())).isTrue());
+
+        // Second task takes the released lease over with the stored request and continues after the checkpoint
+        List<GetMediaRequest> secondRequests = new CopyOnWriteArrayList<>();
+        FrameSplitter second = leasedFrameSplitter(leaseStore, clock, "second", checkpoints, tempDir.resolve("second"),
+                mediaClient(fragments, fragments.count(), secondRequests));
+        Thread secondReceiver = receiveUntilShutdown(second);
+        awaitRequests(secondRequests, 2);
+        assertThat(leaseStore.list()).extracting(StreamLease::getOwner).containsExactly("second");
+        second.shutdown(Duration.ofSeconds(10));
+        secondReceiver.join(10_000);
+
+        StartSelector resumed = secondRequests.get(0).startSelector();
+        assertThat(resumed.startSelectorType()).isEqualTo(StartSelectorType.FRAGMENT_NUMBER);
+        assertThat(resumed.afterFragmentNumber()).isEqualTo(checkpoint.get());
+        runToEnd(fragments, body, tempDir.resolve("all"));
+        Set<String> all = images(tempDir.resolve("all"));
+        Set<String> firstImages = images(tempDir.resolve("first"));
+        Set<String> secondImages = images(tempDir.resolve("second"));
+        assertThat(secondImages).isNotEmpty().hasSizeLessThan(all.size());
+        Set<String> stored = new HashSet<>(firstImages);
+        stored.addAll(secondImages);
+        assertThat(stored).isEqualTo(all);
+    }
+
+    private FrameSplitter frameSplitter(int maxStreams, Function<String, String> endpointLookup) {
+        when(sqsClient.deleteMessageBatch(ArgumentMatchers.<Consumer<DeleteMessageBatchRequest.Builder>>any())).thenReturn(DeleteMessageBatchResponse.builder().build());
+        KinesisVideoClientRegistry clientRegistry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class), endpointLookup,
+                endpoint -> mock(KinesisVideoMediaClient.class), new MutableClock(), Duration.ofMinutes(5), 10);
+        return new FrameSplitter(clientRegistry, sqsClient, mock(S3Client.class), null, "queue", 0, streamScheduler, maxStreams, 1,
+                BackpressureSettings.defaults(), null, null, null, null, null, null);
+    }
+
+    private FrameSplitter leasedFrameSplitter(LeaseStore leaseStore, MutableClock clock, String owner, CheckpointStore checkpointStore, Path outputDir,
+                                              KinesisVideoMediaClient mediaClient) {
+        when(sqsClient.deleteMessageBatch(ArgumentMatchers.<Consumer<DeleteMessageBatchRequest.Builder>>any())).thenReturn(DeleteMessageBatchResponse.builder().build());
+        KinesisVideoClientRegistry clientRegistry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class), arn -> "https://endpoint",
+                endpoint -> mediaClient, new MutableClock(), Duration.ofMinutes(5), 10);
+        StreamScheduler scheduler = new StreamScheduler(1, 100, StreamScheduler.INITIAL_BACKOFF_MILLIS);
+        schedulers.add(scheduler);
+        return new FrameSplitter(clientRegistry, sqsClient, mock(S3Client.class), null, "queue", 0, scheduler, 1, 1, BackpressureSettings.defaults(),
+                checkpointStore, null, null, null, outputDir, new LeaseCoordinator(leaseStore, owner, Duration.ofMillis(300), clock));
+    }
+
+    private static Thread receiveUntilShutdown(FrameSplitter frameSplitter) {
+        Thread receiver = new Thread(frameSplitter::start, "receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        return receiver;
+    }
+
+    /**
+     * Serves fragments after the one of the start selector up to the given one with the first GetMedia, later ones find no data
+     */
+    private static KinesisVideoMediaClient mediaClient(TestFragments fragments, int to, List<GetMediaRequest> requests) {
+        KinesisVideoMediaClient mediaClient = mock(KinesisVideoMediaClient.class);
+        doAnswer(invocationOnMock -> {
+            GetMediaRequest request = invocationOnMock.getArgument(0, GetMediaRequest.class);
+            requests.add(request);
+            boolean first = requests.size() == 1;
+            ByteArrayOutputStream media = new ByteArrayOutputStream();
+            if (first) {
+                StartSelector start = request.startSelector();
+                int from = start.startSelectorType() == StartSelectorType.FRAGMENT_NUMBER ? TestFragments.indexOf(start.afterFragmentNumber()) + 1 : 0;
+                for (int i = from; i < to; i++) {
+                    media.writeBytes(fragments.fragment(i, true));
+                }
+            }
+            GetMediaResponse.Builder responseBuilder = GetMediaResponse.builder();
+            responseBuilder.applyMutation(builder -> builder.sdkHttpResponse(SdkHttpResponse.builder().statusCode(first ? 200 : 404).build()));
+            return new ResponseInputStream<>(responseBuilder.build(), AbortableInputStream.create(new ByteArrayInputStream(media.toByteArray())));
+        }).when(mediaClient).getMedia(any(GetMediaRequest.class));
+        return mediaClient;
+    }
+
+    private static void awaitRequests(List<GetMediaRequest> requests, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (requests.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(requests).hasSizeGreaterThanOrEqualTo(count);
+    }
+
+    /**
+     * Processes the whole stream with a single task
+     */
+    private static void runToEnd(TestFragments fragments, String body, Path outputDir) throws IOException {
+        List<GetMediaRequest> requests = new CopyOnWriteArrayList<>();
+        ProcessingTask task = new ProcessingTask(new ObjectMapper().readValue(body, ProcessingRequest.class), new LocalDirectorySink(outputDir.resolve("bucket")),
+                mediaClient(fragments, fragments.count(), requests), 1, BackpressureSettings.defaults(), null, null, null, null);
+        while (requests.size() < 2) {
+            task.runSlice(Long.MAX_VALUE);
+        }
+        task.stop();
+        assertThat(task.runSlice(0)).isEqualTo(ProcessingTask.SliceResult.FINISHED);
+    }
+
+    private static Set<String> images(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return Set.of();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).map(file -> directory.relativize(file).toString()).collect(Collectors.toSet());
+        }
+    }
+
+    private List<Integer> receivedBatchSizes(int receives) {
+        ArgumentCaptor<ReceiveMessageRequest> requests = ArgumentCaptor.forClass(ReceiveMessageRequest.class);
+        verify(sqsClient, times(receives)).receiveMessage(requests.capture());
+        return requests.getAllValues().stream().map(ReceiveMessageRequest::maxNumberOfMessages).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> deletedReceipts() {
+        ArgumentCaptor<Consumer<DeleteMessageBatchRequest.Builder>> requests = ArgumentCaptor.forClass(Consumer.class);
+        verify(sqsClient).deleteMessageBatch(requests.capture());
+        DeleteMessageBatchRequest.Builder builder = DeleteMessageBatchRequest.builder();
+        requests.getValue().accept(builder);
+        return builder.build().entries().stream().map(DeleteMessageBatchRequestEntry::receiptHandle).collect(Collectors.toList());
+    }
+
+    private static String live(String streamARN) {
+        return "{\"streamARN\":\"" + streamARN + "\",\"bucket\":\"bucket\",\"s3Directory\":\"images\"}";
+    }
+
+    private static Message message(String receiptHandle, String body) {
+        return Message.builder().messageId(receiptHandle).receiptHandle(receiptHandle).body(body).build();
+    }
+
+    private static ReceiveMessageResponse response(Message... messages) {
+        return ReceiveMessageResponse.builder().messages(messages).build();
+    }
+}
@@ -0,0 +1,118 @@
+package amazon.awscdk.examples.splitter;
+
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageConverterTest {
+
+    @Test
+    public void lumaIsCopiedSkippingPlanePadding() {
+        Picture picture = picture(32, 16);
+
+        BufferedImage image = new ImageConverter(settings(0, 0)).luma(picture, 30, 14);
+
+        assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        assertThat(image.getWidth()).isEqualTo(30);
+        assertThat(image.getHeight()).isEqualTo(14);
+        assertThat(image.getRaster().getSample(29, 13, 0)).isEqualTo(value(29, 13));
+        assertThat(image.getRaster().getSample(5, 7, 0)).isEqualTo(value(5, 7));
+    }
+
+    @Test
+    public void downscaledLumaAveragesCoveredPixels() {
+        Picture picture = picture(32, 16);
+
+        BufferedImage image = new ImageConverter(settings(8, 0)).luma(picture, 32, 16);
+
+        assertThat(image.getWidth()).isEqualTo(8);
+        assertThat(image.getHeight()).isEqualTo(4);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int sum = 0;
+        for (int y = 4; y < 8; y++) {
+            for (int x = 8; x < 12; x++) {
+                sum += value(x, y);
+            }
+        }
+        assertThat(pixels[8 + 2] & 0xFF).isEqualTo(sum / 16);
+    }
+
+    @Test
+    public void rgbImageIsScaledOnlyWhenSizeIsSet() {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+
+        assertThat(new ImageConverter(settings(0, 0)).scale(image)).isSameAs(image);
+        BufferedImage scaled = new ImageConverter(settings(0, 24)).scale(image);
+        assertThat(scaled.getWidth()).isEqualTo(32);
+        assertThat(scaled.getHeight()).isEqualTo(24);
+        assertThat(scaled.getType()).isEqualTo(BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Test
+    public void colorRenditionIsDerivedAsGray() {
+        BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(1, 1, 0xFF8040);
+
+        BufferedImage gray = new ImageConverter(settings(2, 1)).convert(image);
+        BufferedImage full = new ImageConverter(settings(0, 0)).convert(image);
+
+        assertThat(gray.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        assertThat(gray.getWidth()).isEqualTo(2);
+        assertThat(full.getRaster().getSample(1, 1, 0)).isEqualTo((77 * 0xFF + 150 * 0x80 + 29 * 0x40) >> 8);
+        assertThat(full.getRaster().getSample(0, 0, 0)).isZero();
+    }
+
+    @Test
+    public void framesAreDecodedOnceForAllRenditions() {
+        Rendition thumbnail = new Rendition();
+        thumbnail.setImage(settings(320, 0));
+        Rendition preview = new Rendition();
+        preview.setImage(settings(320, 0));
+
+        assertThat(ImageConverter.forDecoding(List.of(thumbnail, preview)).isGray()).isTrue();
+        assertThat(ImageConverter.forDecoding(List.of(thumbnail, preview)).targetWidth(640, 480)).isEqualTo(320);
+
+        preview.setImage(new ImageSettings());
+        ImageConverter decoding = ImageConverter.forDecoding(List.of(thumbnail, preview));
+        assertThat(decoding.isGray()).isFalse();
+        assertThat(decoding.targetWidth(640, 480)).isEqualTo(640);
+    }
+
+    @Test
+    public void negativeSizeIsRejected() {
+        assertThatThrownBy(() -> new ImageConverter(settings(-1, 0))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ImageSettings settings(int width, int height) {
+        ImageSettings settings = new ImageSettings();
+        settings.setColor(ImageSettings.Color.GRAY);
+        settings.setWidth(width);
+        settings.setHeight(height);
+        return settings;
+    }
+
+    /**
+     * Picture with luma depending on position, stored shifted to signed range like jcodec does
+     */
+    private static Picture picture(int width, int height) {
+        Picture picture = Picture.create(width, height, ColorSpace.YUV420J);
+        byte[] luma = picture.getPlaneData(0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                luma[y * width + x] = (byte) (value(x, y) - 128);
+            }
+        }
+        return picture;
+    }
+
+    private static int value(int x, int y) {
+        return (x * 7 + y * 13) % 256;
+    }
+}
@@ -0,0 +1,102 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageEncoderTest {
+
+    @Test
+    public void formatSelectsWriterExtensionAndContentType() throws Exception {
+        try (ImageEncoder png = new ImageEncoder(settings(EncoderSettings.Format.PNG, null, null));
+             ImageEncoder jpeg = new ImageEncoder(settings(EncoderSettings.Format.JPEG, null, 0.5f))) {
+            assertThat(png.extension()).isEqualTo("png");
+            assertThat(png.contentType()).isEqualTo("image/png");
+            assertThat(bytes(png.encode(image(Color.RED)))).startsWith((byte) 0x89, (byte) 'P', (byte) 'N', (byte) 'G');
+
+            assertThat(jpeg.extension()).isEqualTo("jpg");
+            assertThat(jpeg.contentType()).isEqualTo("image/jpeg");
+            assertThat(bytes(jpeg.encode(image(Color.RED)))).startsWith((byte) 0xFF, (byte) 0xD8, (byte) 0xFF);
+        }
+    }
+
+    @Test
+    public void encoderReusesItsBufferBetweenImages() throws Exception {
+        try (ImageEncoder encoder = new ImageEncoder(settings(EncoderSettings.Format.PNG, null, null))) {
+            ByteBuffer first = encoder.encode(image(Color.RED));
+            byte[] array = first.array();
+
+            ByteBuffer second = encoder.encode(image(Color.BLUE));
+
+            assertThat(second.array()).isSameAs(array);
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes(second)));
+            assertThat(decoded.getRGB(3, 3)).isEqualTo(Color.BLUE.getRGB());
+        }
+    }
+
+    @Test
+    public void compressionSettingsChangeEncodedSize() throws Exception {
+        BufferedImage image = noise();
+        try (ImageEncoder stored = new ImageEncoder(settings(EncoderSettings.Format.PNG, 0, null));
+             ImageEncoder deflated = new ImageEncoder(settings(EncoderSettings.Format.PNG, 9, null));
+             ImageEncoder low = new ImageEncoder(settings(EncoderSettings.Format.JPEG, null, 0.1f));
+             ImageEncoder high = new ImageEncoder(settings(EncoderSettings.Format.JPEG, null, 1.0f))) {
+            assertThat(stored.encode(image).remaining()).isGreaterThan(deflated.encode(image).remaining());
+            assertThat(low.encode(image).remaining()).isLessThan(high.encode(image).remaining());
+        }
+    }
+
+    @Test
+    public void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> new ImageEncoder(settings(EncoderSettings.Format.PNG, 10, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ImageEncoder(settings(EncoderSettings.Format.JPEG, null, 1.5f)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static EncoderSettings settings(EncoderSettings.Format format, Integer compressionLevel, Float quality) {
+        EncoderSettings settings = new EncoderSettings();
+        settings.setFormat(format);
+        settings.setCompressionLevel(compressionLevel);
+        settings.setQuality(quality);
+        return settings;
+    }
+
+    private static BufferedImage image(Color color) {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 64, 48);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Gradient with some noise, so both compression level and quality make a difference
+     */
+    private static BufferedImage noise() {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, (x * 4) << 16 | (y * 5) << 8 | random.nextInt(32));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
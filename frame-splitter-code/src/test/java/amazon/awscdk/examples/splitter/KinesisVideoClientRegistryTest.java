@@ -0,0 +1,85 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.kinesisvideo.KinesisVideoClient;
+import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class KinesisVideoClientRegistryTest {
+
+    @Test
+    public void endpointIsCachedUntilTtlExpires() {
+        AtomicInteger lookups = new AtomicInteger();
+        MutableClock clock = new MutableClock();
+        KinesisVideoClientRegistry registry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class),
+                arn -> "https://endpoint-" + lookups.incrementAndGet(), endpoint -> mock(KinesisVideoMediaClient.class),
+                clock, Duration.ofMinutes(5), 10);
+
+        assertThat(registry.getDataEndpoint("arn")).isEqualTo("https://endpoint-1");
+        clock.advance(Duration.ofMinutes(4));
+        assertThat(registry.getDataEndpoint("arn")).isEqualTo("https://endpoint-1");
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(registry.getDataEndpoint("arn")).isEqualTo("https://endpoint-2");
+    }
+
+    @Test
+    public void slowLookupBlocksOnlyCallersOfTheSameEndpoint() throws Exception {
+        CountDownLatch slowLookup = new CountDownLatch(1);
+        AtomicInteger lookups = new AtomicInteger();
+        KinesisVideoClientRegistry registry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class), arn -> {
+            lookups.incrementAndGet();
+            if (arn.equals("slow")) {
+                try {
+                    slowLookup.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return "https://" + arn;
+        }, endpoint -> mock(KinesisVideoMediaClient.class), new MutableClock(), Duration.ofMinutes(5), 10);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> registry.getDataEndpoint("slow"));
+        while (lookups.get() == 0) {
+            Thread.sleep(1);
+        }
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> registry.getDataEndpoint("slow"));
+        assertThat(registry.getDataEndpoint("fast")).isEqualTo("https://fast");
+        registry.acquireMediaClient("fast").close();
+        assertThat(first).isNotDone();
+
+        slowLookup.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("https://slow");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("https://slow");
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void mediaClientIsSharedAndClosedAfterEvictionWhenReleased() {
+        KinesisVideoMediaClient mediaClient = mock(KinesisVideoMediaClient.class);
+        KinesisVideoClientRegistry registry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class),
+                arn -> "https://" + arn, endpoint -> endpoint.endsWith("first") ? mediaClient : mock(KinesisVideoMediaClient.class),
+                new MutableClock(), Duration.ofMinutes(5), 1);
+
+        KinesisVideoClientRegistry.ClientLease<KinesisVideoMediaClient> first = registry.acquireMediaClient("first");
+        KinesisVideoClientRegistry.ClientLease<KinesisVideoMediaClient> second = registry.acquireMediaClient("first");
+        assertThat(first.client()).isSameAs(second.client());
+
+        registry.acquireMediaClient("second").close();
+        first.close();
+        verify(mediaClient, never()).close();
+
+        second.close();
+        verify(mediaClient).close();
+        assertThat(registry.pooledMediaClients()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,168 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class LeaseCoordinatorTest {
+    private static final String STREAM_ARN = "arn:aws:kinesisvideo:eu-central-1:123456789012:stream/test/1234567890123";
+    private static final String REQUEST = "{\"streamARN\":\"" + STREAM_ARN + "\",\"bucket\":\"test\"}";
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    @Test
+    public void fileStoreLeaseIsTakenOverAfterExpiry(@TempDir Path directory) {
+        MutableClock clock = new MutableClock();
+        FileLeaseStore first = new FileLeaseStore(directory, clock);
+        FileLeaseStore second = new FileLeaseStore(directory, clock);
+
+        assertThat(first.acquire(STREAM_ARN, "first", REQUEST, TTL)).isPresent();
+        assertThat(second.acquire(STREAM_ARN, "second", null, TTL)).isEmpty();
+
+        clock.advance(TTL.plusSeconds(1));
+        assertThat(second.acquire(STREAM_ARN, "second", null, TTL))
+                .hasValueSatisfying(lease -> assertThat(lease.getRequest()).isEqualTo(REQUEST));
+        assertThat(first.renew(STREAM_ARN, "first", TTL)).isFalse();
+        assertThat(new FileLeaseStore(directory, clock).list()).extracting(StreamLease::getOwner).containsExactly("second");
+    }
+
+    @Test
+    public void releasedLeaseIsAvailableBeforeExpiry() {
+        InMemoryLeaseStore store = new InMemoryLeaseStore(new MutableClock());
+        store.acquire(STREAM_ARN, "first", REQUEST, TTL);
+
+        store.release(STREAM_ARN, "second");
+        assertThat(store.acquire(STREAM_ARN, "second", null, TTL)).isEmpty();
+
+        store.release(STREAM_ARN, "first");
+        assertThat(store.acquire(STREAM_ARN, "second", null, TTL)).isPresent();
+
+        store.remove(STREAM_ARN, "second");
+        assertThat(store.list()).isEmpty();
+    }
+
+    @Test
+    public void streamsAreBalancedWhenTaskJoins() {
+        MutableClock clock = new MutableClock();
+        InMemoryLeaseStore store = new InMemoryLeaseStore(clock);
+        List<StreamLease> takenOver = new ArrayList<>();
+        try (LeaseCoordinator first = new LeaseCoordinator(store, "first", TTL, clock);
+             LeaseCoordinator second = new LeaseCoordinator(store, "second", TTL, clock)) {
+            List<ProcessingTask> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                ProcessingTask task = mock(ProcessingTask.class);
+                assertThat(first.claim(STREAM_ARN + i, REQUEST)).isTrue();
+                first.started(STREAM_ARN + i, task);
+                tasks.add(task);
+            }
+            assertThat(first.claim(STREAM_ARN + 0, REQUEST)).isFalse();
+            first.balance();
+            tasks.forEach(task -> verify(task, never()).stop());
+
+            second.start(lease -> {
+                second.started(lease.getStreamARN(), mock(ProcessingTask.class));
+                return takenOver.add(lease);
+            });
+            first.balance();
+            second.balance();
+            assertThat(takenOver).isEmpty();
+
+            for (int i = 2; i < 4; i++) {
+                verify(tasks.get(i)).stop();
+                first.finished(STREAM_ARN + i, tasks.get(i));
+            }
+            second.balance();
+
+            assertThat(takenOver).extracting(StreamLease::getStreamARN).containsExactlyInAnyOrder(STREAM_ARN + 2, STREAM_ARN + 3);
+            assertThat(takenOver).extracting(StreamLease::getRequest).containsOnly(REQUEST);
+            assertThat(first.ownedStreams()).isEqualTo(2);
+            assertThat(second.ownedStreams()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void streamsOfStoppedTaskAreTakenOverAfterExpiry() {
+        MutableClock clock = new MutableClock();
+        InMemoryLeaseStore store = new InMemoryLeaseStore(clock);
+        List<StreamLease> takenOver = new ArrayList<>();
+        try (LeaseCoordinator first = new LeaseCoordinator(store, "first", TTL, clock);
+             LeaseCoordinator second = new LeaseCoordinator(store, "second", TTL, clock)) {
+            ProcessingTask task = mock(ProcessingTask.class);
+            first.claim(STREAM_ARN, REQUEST);
+            first.started(STREAM_ARN, task);
+            first.balance();
+            second.start(lease -> {
+                second.started(lease.getStreamARN(), mock(ProcessingTask.class));
+                return takenOver.add(lease);
+            });
+
+            clock.advance(TTL.plusSeconds(1));
+            second.balance();
+            assertThat(takenOver).extracting(StreamLease::getStreamARN).containsExactly(STREAM_ARN);
+
+            // Task which missed its renewals stops processing once it finds the lease lost
+            first.balance();
+            verify(task).stop();
+            first.finished(STREAM_ARN, task);
+            assertThat(first.ownedStreams()).isZero();
+            assertThat(store.list()).extracting(StreamLease::getOwner).containsExactly("second");
+        }
+    }
+
+    @Test
+    public void claimedStreamIsNotTakenOverWhileItStarts() {
+        MutableClock clock = new MutableClock();
+        InMemoryLeaseStore store = new InMemoryLeaseStore(clock);
+        store.acquire(STREAM_ARN, "stopped", REQUEST, TTL);
+        store.release(STREAM_ARN, "stopped");
+        List<StreamLease> takenOver = new ArrayList<>();
+        try (LeaseCoordinator coordinator = new LeaseCoordinator(store, "first", TTL, clock)) {
+            coordinator.start(takenOver::add);
+            assertThat(coordinator.claim(STREAM_ARN, REQUEST)).isTrue();
+            // Balancing runs between the claim and the start of its task
+            coordinator.balance();
+            assertThat(takenOver).isEmpty();
+
+            ProcessingTask task = mock(ProcessingTask.class);
+            coordinator.started(STREAM_ARN, task);
+            coordinator.balance();
+            assertThat(takenOver).isEmpty();
+            verify(task, never()).stop();
+            assertThat(coordinator.ownedStreams()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void leasesOfStreamsHandedOverOnShutdownAreReleasedOnceTasksFinished() {
+        MutableClock clock = new MutableClock();
+        InMemoryLeaseStore store = new InMemoryLeaseStore(clock);
+        try (LeaseCoordinator coordinator = new LeaseCoordinator(store, "first", TTL, clock)) {
+            ProcessingTask task = mock(ProcessingTask.class);
+            coordinator.claim(STREAM_ARN, REQUEST);
+            coordinator.started(STREAM_ARN, task);
+            ProcessingTask starting = mock(ProcessingTask.class);
+            coordinator.claim(STREAM_ARN + 1, REQUEST);
+
+            coordinator.handOverAll();
+            verify(task).stop();
+            assertThat(coordinator.claim(STREAM_ARN + 2, REQUEST)).isFalse();
+            // Task of a stream claimed before the shutdown is stopped as soon as it starts
+            coordinator.started(STREAM_ARN + 1, starting);
+            verify(starting).stop();
+            assertThat(store.list()).noneMatch(lease -> lease.isAvailable(clock.millis()));
+
+            coordinator.finished(STREAM_ARN, task);
+            coordinator.finished(STREAM_ARN + 1, starting);
+            assertThat(store.list()).hasSize(2).allMatch(lease -> lease.isAvailable(clock.millis()))
+                    .extracting(StreamLease::getRequest).containsOnly(REQUEST);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalDirectorySinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void objectsAreWrittenBelowRootAndDirectoriesCreatedOnce() throws Exception {
+        LocalDirectorySink sink = new LocalDirectorySink(tempDir);
+        List<Throwable> results = new ArrayList<>();
+
+        for (int i = 1; i <= 10; i++) {
+            sink.write("stream/images/" + i + ".jpg", bytes("image " + i), "image/jpeg", results::add);
+        }
+        sink.write("stream/archives/1.tar", bytes("archive"), "application/x-tar", results::add);
+
+        assertThat(results).hasSize(11).containsOnlyNulls();
+        assertThat(Files.readString(tempDir.resolve("stream/images/7.jpg"))).isEqualTo("image 7");
+        assertThat(Files.readString(tempDir.resolve("stream/archives/1.tar"))).isEqualTo("archive");
+        assertThat(sink.createdDirectories()).isEqualTo(2);
+    }
+
+    @Test
+    public void overwrittenObjectIsReplacedByNewContent() throws Exception {
+        LocalDirectorySink sink = new LocalDirectorySink(tempDir);
+        List<Throwable> results = new ArrayList<>();
+        ByteBuffer sliced = bytes("xxshortyy");
+        sliced.position(2).limit(7);
+
+        sink.write("1.png", bytes("much longer content"), "image/png", results::add);
+        sink.write("1.png", sliced, "image/png", results::add);
+
+        assertThat(results).containsOnlyNulls();
+        assertThat(Files.readString(tempDir.resolve("1.png"))).isEqualTo("short");
+        assertThat(sliced.remaining()).isEqualTo(5);
+        // Content is written to a temporary file renamed over the object, none is left behind
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(tempDir.resolve("1.png"));
+        }
+    }
+
+    @Test
+    public void keysOutsideRootAreRejected() throws Exception {
+        Path root = tempDir.resolve("bucket");
+        LocalDirectorySink sink = new LocalDirectorySink(root);
+        List<Throwable> results = new ArrayList<>();
+
+        sink.write("../escaped.png", bytes("image"), "image/png", results::add);
+        sink.write("images/../../escaped.png", bytes("image"), "image/png", results::add);
+        sink.write(tempDir.resolve("absolute.png").toString(), bytes("image"), "image/png", results::add);
+        sink.write("images/./../1.png", bytes("image"), "image/png", results::add);
+
+        assertThat(results).hasSize(4);
+        assertThat(results.subList(0, 3)).allSatisfy(error -> assertThat(error).isInstanceOf(IllegalArgumentException.class));
+        assertThat(results.get(3)).isNull();
+        assertThat(Files.readString(root.resolve("1.png"))).isEqualTo("image");
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(root);
+        }
+        assertThatThrownBy(() -> LocalDirectorySink.resolveBelow(tempDir, "../bucket")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(LocalDirectorySink.resolveBelow(tempDir, "bucket")).isEqualTo(root.toAbsolutePath());
+    }
+
+    @Test
+    public void failureIsReportedToCallback() throws Exception {
+        Files.write(tempDir.resolve("file"), new byte[]{1});
+        List<Throwable> results = new ArrayList<>();
+
+        new LocalDirectorySink(tempDir).write("file/1.png", bytes("image"), "image/png", results::add);
+
+        assertThat(results).hasSize(1).doesNotContainNull();
+    }
+
+    private static ByteBuffer bytes(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,75 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MediaPrefetcherTest {
+
+    @Test
+    public void returnsSourceBytesThroughSmallBuffer() throws IOException {
+        byte[] bytes = new byte[300_000];
+        new Random(1).nextBytes(bytes);
+
+        try (MediaPrefetcher prefetcher = new MediaPrefetcher(1000);
+             InputStream prefetched = prefetcher.prefetch(new ByteArrayInputStream(bytes))) {
+            assertThat(prefetched.readAllBytes()).isEqualTo(bytes);
+            assertThat(prefetched.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void readFailsAfterBufferedBytesWithSourceError() {
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3}), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        try (MediaPrefetcher prefetcher = new MediaPrefetcher(1000)) {
+            InputStream prefetched = prefetcher.prefetch(failing);
+            assertThat(prefetched.read()).isEqualTo(1);
+            assertThatThrownBy(prefetched::readAllBytes).isInstanceOf(IOException.class).hasMessage("connection reset");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void stalledSourceDoesNotBlockParsing() throws IOException, InterruptedException {
+        PipedOutputStream network = new PipedOutputStream();
+        try (MediaPrefetcher prefetcher = new MediaPrefetcher(1000, 200);
+             PipedInputStream source = new PipedInputStream(network)) {
+            MediaPrefetcher.PrefetchedStream prefetched = prefetcher.prefetch(source);
+
+            long start = System.nanoTime();
+            assertThat(prefetched.await(TimeUnit.MILLISECONDS.toNanos(50))).isFalse();
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+            network.write(new byte[]{1, 2});
+            network.flush();
+            assertThat(prefetched.await(TimeUnit.SECONDS.toNanos(5))).isTrue();
+            assertThat(prefetched.read(new byte[10], 0, 10)).isEqualTo(2);
+
+            start = System.nanoTime();
+            assertThatThrownBy(prefetched::read).isInstanceOf(SocketTimeoutException.class);
+            assertThat(System.nanoTime() - start).isBetween(TimeUnit.MILLISECONDS.toNanos(150), TimeUnit.SECONDS.toNanos(5));
+
+            network.close();
+            assertThat(prefetched.await(TimeUnit.SECONDS.toNanos(5))).isTrue();
+            assertThat(prefetched.read()).isEqualTo(-1);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package amazon.awscdk.examples.splitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineMetricsTest {
+
+    @Test
+    public void percentilesAreWithinFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.percentileMicros(0.5)).isBetween(50_000L, 100_000L);
+        assertThat(histogram.percentileMicros(0.99)).isBetween(99_000L, 100_000L);
+        assertThat(histogram.snapshot()).containsEntry("maxMicros", 100_000L).containsEntry("meanMicros", 50_500L);
+        assertThat(new LatencyHistogram().percentileMicros(0.5)).isZero();
+    }
+
+    @Test
+    public void metricsServerReturnsStreamCounters() throws Exception {
+        StreamMetrics metrics = PipelineMetrics.registerStream("metricsTestStreamARN");
+        metrics.frameDecoded();
+        metrics.frameDecoded();
+        metrics.framePublished();
+        metrics.setPublisherQueueDepth(() -> 3);
+        PipelineMetrics.latency(PipelineMetrics.Stage.DECODE).recordNanos(1_000_000);
+
+        try (MetricsServer server = new MetricsServer(0)) {
+            JsonNode snapshot = new ObjectMapper().readTree(new URL("http://localhost:" + server.getPort() + "/metrics"));
+            JsonNode stream = snapshot.get("streams").get("metricsTestStreamARN");
+            assertThat(stream.get("framesDecoded").asLong()).isEqualTo(2);
+            assertThat(stream.get("framesPublished").asLong()).isEqualTo(1);
+            assertThat(stream.get("publisherQueueDepth").asLong()).isEqualTo(3);
+            assertThat(snapshot.get("latencies").get("DECODE").get("count").asLong()).isPositive();
+        } finally {
+            PipelineMetrics.unregisterStream("metricsTestStreamARN", metrics);
+        }
+        assertThat(((Map<?, ?>) PipelineMetrics.snapshot().get("streams")).containsKey("metricsTestStreamARN")).isFalse();
+    }
+}
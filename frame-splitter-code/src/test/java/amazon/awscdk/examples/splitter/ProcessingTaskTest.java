@@ -11,22 +11,61 @@ import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.kinesisvideo.KinesisVideoClient;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.KinesisVideoArchivedMediaClient;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.Fragment;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.GetMediaForFragmentListRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.GetMediaForFragmentListResponse;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.ListFragmentsRequest;
+import software.amazon.awssdk.services.kinesisvideoarchivedmedia.model.ListFragmentsResponse;
 import software.amazon.awssdk.services.kinesisvideomedia.KinesisVideoMediaClient;
 import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaRequest;
 import software.amazon.awssdk.services.kinesisvideomedia.model.GetMediaResponse;
+import software.amazon.awssdk.services.kinesisvideomedia.model.StartSelector;
+import software.amazon.awssdk.services.kinesisvideomedia.model.StartSelectorType;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 class ProcessingTaskTest {
 
@@ -46,7 +85,383 @@ class ProcessingTaskTest {
             return PutObjectResponse.builder().build();
         }).when(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
 
-        InputStream testInputStream = getTestInputStream("vogels_330.mkv");
+        KinesisVideoMediaClient mediaClient = mediaClient(getTestInputStream("vogels_330.mkv"));
+
+        ProcessingTask processingTask = new ProcessingTask("testStreamARN", s3Client, mediaClient, "bucket", "images", 5);
+        processingTask.stop();
+        processingTask.run();
+    }
+
+    @Test
+    public void splitterWritesImagesToLocalDirectory(@TempDir Path tempDir) throws IOException {
+        ProcessingRequest request = new ProcessingRequest();
+        request.setStreamARN("testStreamARN");
+        request.setS3Directory("images");
+        request.getSampling().setMode(SamplingPolicy.Mode.KEYFRAMES);
+
+        ProcessingTask processingTask = new ProcessingTask(request, new LocalDirectorySink(tempDir), mediaClient(getTestInputStream("vogels_330.mkv")),
+                2, BackpressureSettings.defaults(), null, null, null, null);
+        processingTask.stop();
+        processingTask.run();
+
+        try (Stream<Path> images = Files.list(tempDir.resolve("images"))) {
+            assertThat(images.map(image -> image.getFileName().toString())).isNotEmpty().allMatch(name -> name.endsWith(".png"));
+        }
+    }
+
+    @Test
+    public void everyRenditionIsPublishedFromSingleDecode(@TempDir Path tempDir) throws IOException {
+        ProcessingRequest request = new ProcessingRequest();
+        request.setStreamARN("testStreamARN");
+        request.getSampling().setMode(SamplingPolicy.Mode.KEYFRAMES);
+        request.setRenditions(List.of(
+                rendition("full", new ImageSettings(), EncoderSettings.Format.PNG),
+                rendition("thumbnails", thumbnail(), EncoderSettings.Format.JPEG),
+                rendition("previews", new ImageSettings(), EncoderSettings.Format.JPEG)));
+
+        ProcessingTask processingTask = new ProcessingTask(request, new LocalDirectorySink(tempDir), mediaClient(getTestInputStream("vogels_330.mkv")),
+                2, BackpressureSettings.defaults(), null, null, null, null);
+        processingTask.stop();
+        processingTask.run();
+
+        List<String> full = fileNames(tempDir.resolve("full"));
+        assertThat(full).isNotEmpty().allMatch(name -> name.endsWith(".png"));
+        assertThat(fileNames(tempDir.resolve("previews"))).hasSameSizeAs(full).allMatch(name -> name.endsWith(".jpg"));
+        assertThat(fileNames(tempDir.resolve("thumbnails"))).hasSameSizeAs(full);
+        String first = full.stream().sorted().findFirst().get().replace(".png", ".jpg");
+        BufferedImage thumbnail = ImageIO.read(tempDir.resolve("thumbnails").resolve(first).toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(160);
+        assertThat(thumbnail.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    @Test
+    public void invalidRequestLeavesNoRegisteredMetrics() {
+        ProcessingRequest invalidSampling = keyframesRequest("invalidSamplingStreamARN");
+        invalidSampling.getSampling().setMode(SamplingPolicy.Mode.EVERY_NTH);
+        invalidSampling.getSampling().setEveryNth(0);
+        ProcessingRequest invalidImage = keyframesRequest("invalidImageStreamARN");
+        invalidImage.getImage().setWidth(-1);
+        // Request with "image": null
+        ProcessingRequest nullImage = keyframesRequest("nullImageStreamARN");
+        nullImage.setImage(null);
+
+        for (ProcessingRequest request : List.of(invalidSampling, invalidImage, nullImage)) {
+            assertThatThrownBy(() -> new ProcessingTask(request, new RecordingSink(Integer.MAX_VALUE), mock(KinesisVideoMediaClient.class), 1,
+                    BackpressureSettings.defaults(), null, null, null, null)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(((Map<?, ?>) PipelineMetrics.snapshot().get("streams")).containsKey(request.getStreamARN())).isFalse();
+        }
+    }
+
+    @Test
+    public void decoderContinuesAcrossReconnects() {
+        TestFragments fragments = new TestFragments("vogels_330.mkv");
+        RecordingSink expected = new RecordingSink(Integer.MAX_VALUE);
+        runUntilStopped(keyframesRequest("testStreamARN"), expected, fragments, null);
+
+        // First response ends normally with a continuation token, the second one continues without track metadata
+        int split = fragments.count() / 2;
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        for (int i = 0; i < split; i++) {
+            first.writeBytes(fragments.fragment(i, true));
+        }
+        first.writeBytes(TestFragments.continuationToken("token-1"));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        for (int i = split; i < fragments.count(); i++) {
+            second.writeBytes(fragments.fragment(i, false));
+        }
+        List<byte[]> responses = List.of(first.toByteArray(), second.toByteArray());
+        AtomicReference<ProcessingTask> task = new AtomicReference<>();
+        List<GetMediaRequest> requests = new CopyOnWriteArrayList<>();
+        KinesisVideoMediaClient mediaClient = mock(KinesisVideoMediaClient.class);
+        doAnswer(invocationOnMock -> {
+            requests.add(invocationOnMock.getArgument(0, GetMediaRequest.class));
+            boolean replay = requests.size() <= responses.size();
+            if (!replay) {
+                task.get().stop();
+            }
+            GetMediaResponse.Builder responseBuilder = GetMediaResponse.builder();
+            responseBuilder.applyMutation(builder -> builder.sdkHttpResponse(SdkHttpResponse.builder().statusCode(replay ? 200 : 404).build()));
+            return new ResponseInputStream<>(responseBuilder.build(),
+                    AbortableInputStream.create(new ByteArrayInputStream(replay ? responses.get(requests.size() - 1) : new byte[0])));
+        }).when(mediaClient).getMedia(any(GetMediaRequest.class));
+
+        RecordingSink sink = new RecordingSink(Integer.MAX_VALUE);
+        task.set(new ProcessingTask(keyframesRequest("testStreamARN"), sink, mediaClient, 2, BackpressureSettings.defaults(), null, null, null, null));
+        task.get().run();
+
+        assertThat(requests).hasSize(3);
+        StartSelector continuation = requests.get(1).startSelector();
+        assertThat(continuation.startSelectorType()).isEqualTo(StartSelectorType.CONTINUATION_TOKEN);
+        assertThat(continuation.continuationToken()).isEqualTo("token-1");
+        // Frames of the second response are decoded with tracks of the first one, each frame is written once
+        assertThat(sink.writes.keySet()).isEqualTo(expected.writes.keySet());
+        assertThat(sink.writes).allSatisfy((key, contents) -> {
+            assertThat(contents).hasSize(1);
+            assertThat(contents.get(0)).isEqualTo(expected.writes.get(key).get(0));
+        });
+    }
+
+    @Test
+    public void resumedTaskDoesNotSkipImagesStillUploading(@TempDir Path tempDir) throws Exception {
+        TestFragments fragments = new TestFragments("vogels_330.mkv");
+        ProcessingRequest request = new ProcessingRequest();
+        request.setStreamARN("testStreamARN");
+        request.setS3Directory("images");
+        request.getSampling().setMode(SamplingPolicy.Mode.KEYFRAMES);
+        RecordingSink all = new RecordingSink(Integer.MAX_VALUE);
+        runUntilStopped(request, all, fragments, null);
+
+        // Process stops while images of the later fragments are still uploading
+        FileCheckpointStore checkpoints = new FileCheckpointStore(tempDir.resolve("first"));
+        RecordingSink interrupted = new RecordingSink(all.writes.size() / 2);
+        AtomicReference<ProcessingTask> first = new AtomicReference<>();
+        first.set(new ProcessingTask(request, interrupted, fragmentsClient(fragments, first), 1, BackpressureSettings.defaults(), checkpoints, null, null, null));
+        assertThat(first.get().runSlice(Long.MAX_VALUE)).isEqualTo(ProcessingTask.SliceResult.ACTIVE);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (interrupted.writes.size() + interrupted.held.size() < all.writes.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Optional<String> checkpoint = checkpoints.load("testStreamARN");
+
+        FileCheckpointStore resumedCheckpoints = new FileCheckpointStore(tempDir.resolve("resumed"));
+        checkpoint.ifPresent(fragmentNumber -> resumedCheckpoints.save("testStreamARN", fragmentNumber));
+        RecordingSink resumed = new RecordingSink(Integer.MAX_VALUE);
+        runUntilStopped(request, resumed, fragments, resumedCheckpoints);
+
+        assertThat(checkpoint).isPresent();
+        assertThat(resumed.writes.size()).isLessThan(all.writes.size());
+        Set<String> stored = new HashSet<>(interrupted.writes.keySet());
+        stored.addAll(resumed.writes.keySet());
+        assertThat(stored).isEqualTo(all.writes.keySet());
+
+        interrupted.held.forEach(onComplete -> onComplete.accept(null));
+        first.get().stop();
+        assertThat(first.get().runSlice(0)).isEqualTo(ProcessingTask.SliceResult.FINISHED);
+    }
+
+    @Test
+    public void stalledStreamDoesNotHoldSharedThread() throws Exception {
+        TestFragments fragments = new TestFragments("vogels_330.mkv");
+        byte[] response = fragments.response(0);
+        StalledInputStream stalledInput = new StalledInputStream(Arrays.copyOf(response, response.length / 3));
+        KinesisVideoMediaClient stalledClient = mock(KinesisVideoMediaClient.class);
+        doAnswer(invocationOnMock -> {
+            GetMediaResponse.Builder responseBuilder = GetMediaResponse.builder();
+            responseBuilder.applyMutation(builder -> builder.sdkHttpResponse(SdkHttpResponse.builder().statusCode(200).build()));
+            return new ResponseInputStream<>(responseBuilder.build(), AbortableInputStream.create(stalledInput));
+        }).when(stalledClient).getMedia(any(GetMediaRequest.class));
+
+        try (MediaPrefetcher prefetcher = new MediaPrefetcher(1024 * 1024);
+             StreamScheduler scheduler = new StreamScheduler(1, 50, 200)) {
+            ProcessingTask stalled = new ProcessingTask(keyframesRequest("stalled"), new RecordingSink(Integer.MAX_VALUE), stalledClient, 1,
+                    BackpressureSettings.defaults(), null, null, prefetcher, null);
+            // Received part of the response is processed, then the slice ends at its deadline without data
+            ProcessingTask.SliceResult result;
+            long sliceStart;
+            do {
+                sliceStart = System.nanoTime();
+                result = stalled.runSlice(50);
+            } while (result == ProcessingTask.SliceResult.ACTIVE);
+            assertThat(result).isEqualTo(ProcessingTask.SliceResult.IDLE);
+            assertThat(System.nanoTime() - sliceStart).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+            CountDownLatch stalledFinished = new CountDownLatch(1);
+            CountDownLatch othersFinished = new CountDownLatch(2);
+            List<RecordingSink> otherSinks = new ArrayList<>();
+            scheduler.submit(stalled, stalledFinished::countDown);
+            for (int i = 0; i < 2; i++) {
+                RecordingSink sink = new RecordingSink(Integer.MAX_VALUE);
+                AtomicReference<ProcessingTask> task = new AtomicReference<>();
+                task.set(new ProcessingTask(keyframesRequest("stream" + i), sink, fragmentsClient(fragments, task), 1,
+                        BackpressureSettings.defaults(), null, null, prefetcher, null));
+                otherSinks.add(sink);
+                scheduler.submit(task.get(), othersFinished::countDown);
+            }
+            assertThat(othersFinished.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(otherSinks).allSatisfy(sink -> assertThat(sink.writes).isNotEmpty());
+            assertThat(stalledFinished.getCount()).isEqualTo(1);
+
+            stalled.stop();
+            assertThat(stalledFinished.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void archivedTimeRangeIsPublishedAndTaskStopsAfterLastFragment() throws Exception {
+        TestFragments fragments = new TestFragments("vogels_330.mkv");
+        List<String> fragmentNumbers = new ArrayList<>();
+        for (int i = 0; i < fragments.count(); i++) {
+            fragmentNumbers.add(TestFragments.fragmentNumber(i));
+        }
+        ArchiveSelection all = new ArchiveSelection();
+        all.setFragmentNumbers(fragmentNumbers);
+        List<Long> timestamps = timestamps(runArchived(fragments, all));
+        assertThat(timestamps).hasSizeGreaterThan(3);
+
+        ArchiveSelection range = new ArchiveSelection();
+        range.setStartTimestampMillis(timestamps.get(1));
+        range.setEndTimestampMillis(timestamps.get(timestamps.size() - 1));
+        RecordingSink sink = runArchived(fragments, range);
+
+        // Frames from the start on are published, the frame at the end is not
+        assertThat(timestamps(sink)).isEqualTo(timestamps.subList(1, timestamps.size() - 1));
+    }
+
+    /**
+     * Distinct frame timestamps of the written image names
+     */
+    private static List<Long> timestamps(RecordingSink sink) {
+        return sink.writes.keySet().stream()
+                .map(key -> Long.parseLong(key.replaceAll("^.*/|(-\\d+)?\\.\\w+$", "")))
+                .distinct().sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Runs task over all listed fragments until it stops by itself
+     */
+    private static RecordingSink runArchived(TestFragments fragments, ArchiveSelection selection) throws Exception {
+        KinesisVideoArchivedMediaClient archivedClient = mock(KinesisVideoArchivedMediaClient.class);
+        List<Fragment> listed = new ArrayList<>();
+        for (int i = 0; i < fragments.count(); i++) {
+            listed.add(Fragment.builder().fragmentNumber(TestFragments.fragmentNumber(i)).producerTimestamp(Instant.ofEpochSecond(i)).build());
+        }
+        doReturn(ListFragmentsResponse.builder().fragments(listed).build()).when(archivedClient).listFragments(any(ListFragmentsRequest.class));
+        doAnswer(invocation -> {
+            int index = TestFragments.indexOf(invocation.<GetMediaForFragmentListRequest>getArgument(0).fragments().get(0));
+            return new ResponseInputStream<>(GetMediaForFragmentListResponse.builder().build(),
+                    AbortableInputStream.create(new ByteArrayInputStream(fragments.fragment(index, true))));
+        }).when(archivedClient).getMediaForFragmentList(any(GetMediaForFragmentListRequest.class));
+        KinesisVideoClientRegistry clientRegistry = new KinesisVideoClientRegistry(mock(KinesisVideoClient.class),
+                (apiName, streamARN) -> "https://endpoint", endpoint -> mock(KinesisVideoMediaClient.class), endpoint -> archivedClient,
+                new MutableClock(), Duration.ofMinutes(5), 10);
+        RecordingSink sink = new RecordingSink(Integer.MAX_VALUE);
+        try (ArchiveFetcher fetcher = new ArchiveFetcher(clientRegistry, 2)) {
+            ProcessingTask task = new ProcessingTask(keyframesRequest("testStreamARN"), sink, null, 1, BackpressureSettings.defaults(),
+                    null, null, null, fetcher.open("testStreamARN", selection));
+            assertTimeoutPreemptively(Duration.ofSeconds(30), task::run);
+        }
+        verify(archivedClient, times(fragments.count())).getMediaForFragmentList(any(GetMediaForFragmentListRequest.class));
+        return sink;
+    }
+
+    private static ProcessingRequest keyframesRequest(String streamARN) {
+        ProcessingRequest request = new ProcessingRequest();
+        request.setStreamARN(streamARN);
+        request.setS3Directory("images");
+        request.getSampling().setMode(SamplingPolicy.Mode.KEYFRAMES);
+        return request;
+    }
+
+    private static void runUntilStopped(ProcessingRequest request, FrameSink sink, TestFragments fragments, CheckpointStore checkpointStore) {
+        AtomicReference<ProcessingTask> task = new AtomicReference<>();
+        task.set(new ProcessingTask(request, sink, fragmentsClient(fragments, task), 1, BackpressureSettings.defaults(), checkpointStore, null, null, null));
+        task.get().run();
+    }
+
+    /**
+     * Serves fragments after the one of the start selector with the first GetMedia, then stops the task
+     */
+    private static KinesisVideoMediaClient fragmentsClient(TestFragments fragments, AtomicReference<ProcessingTask> task) {
+        AtomicInteger connections = new AtomicInteger();
+        KinesisVideoMediaClient mediaClient = mock(KinesisVideoMediaClient.class);
+        doAnswer(invocationOnMock -> {
+            StartSelector start = invocationOnMock.getArgument(0, GetMediaRequest.class).startSelector();
+            boolean first = connections.incrementAndGet() == 1;
+            if (!first) {
+                task.get().stop();
+            }
+            int from = start.startSelectorType() == StartSelectorType.FRAGMENT_NUMBER ? TestFragments.indexOf(start.afterFragmentNumber()) + 1 : 0;
+            GetMediaResponse.Builder responseBuilder = GetMediaResponse.builder();
+            responseBuilder.applyMutation(builder -> builder.sdkHttpResponse(SdkHttpResponse.builder().statusCode(first ? 200 : 404).build()));
+            return new ResponseInputStream<>(responseBuilder.build(),
+                    AbortableInputStream.create(new ByteArrayInputStream(first ? fragments.response(from) : new byte[0])));
+        }).when(mediaClient).getMedia(any(GetMediaRequest.class));
+        return mediaClient;
+    }
+
+    /**
+     * Returns the given bytes, then blocks like a live stream without new data until closed
+     */
+    private static class StalledInputStream extends InputStream {
+        private final ByteArrayInputStream received;
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        StalledInputStream(byte[] received) {
+            this.received = new ByteArrayInputStream(received);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (received.available() > 0) {
+                return received.read(bytes, offset, length);
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    /**
+     * Records written objects. Writes after the first completed ones are held, like uploads still in flight.
+     */
+    private static class RecordingSink implements FrameSink {
+        private final int completed;
+        private final Map<String, List<byte[]>> writes = new ConcurrentHashMap<>();
+        private final List<Consumer<Throwable>> held = new CopyOnWriteArrayList<>();
+
+        RecordingSink(int completed) {
+            this.completed = completed;
+        }
+
+        @Override
+        public synchronized void write(String key, ByteBuffer bytes, String contentType, Consumer<Throwable> onComplete) {
+            if (writes.size() >= completed && !writes.containsKey(key)) {
+                held.add(onComplete);
+                return;
+            }
+            byte[] content = new byte[bytes.remaining()];
+            bytes.duplicate().get(content);
+            writes.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(content);
+            onComplete.accept(null);
+        }
+    }
+
+    private static ImageSettings thumbnail() {
+        ImageSettings image = new ImageSettings();
+        image.setColor(ImageSettings.Color.GRAY);
+        image.setWidth(160);
+        return image;
+    }
+
+    private static Rendition rendition(String directory, ImageSettings image, EncoderSettings.Format format) {
+        Rendition rendition = new Rendition();
+        rendition.setS3Directory(directory);
+        rendition.setImage(image);
+        rendition.getEncoder().setFormat(format);
+        return rendition;
+    }
+
+    private static List<String> fileNames(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+    private static KinesisVideoMediaClient mediaClient(InputStream testInputStream) {
         KinesisVideoMediaClient mediaClient = mock(KinesisVideoMediaClient.class);
         doAnswer(invocationOnMock -> {
             SdkHttpResponse sdkHttpResponse = SdkHttpResponse.builder().statusCode(200).build();
@@ -55,10 +470,7 @@ class ProcessingTaskTest {
 
             return new ResponseInputStream<>(responseBuilder.build(), AbortableInputStream.create(testInputStream));
         }).when(mediaClient).getMedia(any(GetMediaRequest.class));
-
-        ProcessingTask processingTask = new ProcessingTask("testStreamARN", s3Client, mediaClient, "bucket", "images", 5);
-        processingTask.stop();
-        processingTask.run();
+        return mediaClient;
     }
 
     @Ignore
@@ -0,0 +1,57 @@
+package amazon.awscdk.examples.splitter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamSchedulerTest {
+
+    @Test
+    public void idleStreamIsRetriedUntilFinished() throws InterruptedException {
+        ProcessingTask task = mock(ProcessingTask.class);
+        when(task.runSlice(anyLong())).thenReturn(ProcessingTask.SliceResult.IDLE, ProcessingTask.SliceResult.IDLE,
+                ProcessingTask.SliceResult.FINISHED);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        try (StreamScheduler scheduler = new StreamScheduler(1, 100, 400)) {
+            scheduler.submit(task, finished::countDown);
+            assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+        verify(task, times(3)).runSlice(100);
+    }
+
+    @Test
+    public void activeStreamsShareSingleThread() throws InterruptedException {
+        List<String> slices = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch submitted = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        try (StreamScheduler scheduler = new StreamScheduler(1, 100, 400)) {
+            scheduler.submit(activeTask("first", slices, submitted), finished::countDown);
+            scheduler.submit(activeTask("second", slices, submitted), finished::countDown);
+            submitted.countDown();
+            assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(slices).containsExactly("first", "second", "first", "second");
+    }
+
+    private static ProcessingTask activeTask(String name, List<String> slices, CountDownLatch submitted) {
+        ProcessingTask task = mock(ProcessingTask.class);
+        when(task.runSlice(anyLong())).then(invocation -> {
+            submitted.await();
+            slices.add(name);
+            return slices.stream().filter(name::equals).count() < 2 ? ProcessingTask.SliceResult.ACTIVE : ProcessingTask.SliceResult.FINISHED;
+        });
+        return task;
+    }
+}
@@ -0,0 +1,178 @@
+package amazon.awscdk.examples.splitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds GetMedia like responses from the test video. Every cluster of the video becomes a fragment with its own
+ * EBML header, segment and fragment number tags, the way Kinesis Video Streams returns them.
+ */
+final class TestFragments {
+    private static final int EBML = 0x1A45DFA3;
+    private static final int SEGMENT = 0x18538067;
+    private static final int INFO = 0x1549A966;
+    private static final int TRACKS = 0x1654AE6B;
+    private static final int CLUSTER = 0x1F43B675;
+    private static final int TAGS = 0x1254C367;
+    private static final int TAG = 0x7373;
+    private static final int SIMPLE_TAG = 0x67C8;
+    private static final int TAG_NAME = 0x45A3;
+    private static final int TAG_STRING = 0x4487;
+    private static final byte[] UNKNOWN_SIZE = {0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+
+    private final byte[] header;
+    private final byte[] info;
+    private final byte[] tracks;
+    private final List<byte[]> clusters = new ArrayList<>();
+
+    TestFragments(String resource) {
+        byte[] video;
+        try (InputStream input = ProcessingTaskTest.getTestInputStream(resource)) {
+            video = input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] header = null;
+        byte[] info = null;
+        byte[] tracks = null;
+        int position = 0;
+        while (position < video.length) {
+            int id = readId(video, position);
+            int idLength = vintLength(video[position]);
+            int sizeLength = vintLength(video[position + idLength]);
+            long size = readSize(video, position + idLength, sizeLength);
+            int dataStart = position + idLength + sizeLength;
+            if (id == SEGMENT) {
+                // Children of the segment are read as top level elements
+                position = dataStart;
+                continue;
+            }
+            byte[] element = Arrays.copyOfRange(video, position, (int) (dataStart + size));
+            if (id == EBML) {
+                header = element;
+            } else if (id == INFO) {
+                info = element;
+            } else if (id == TRACKS) {
+                tracks = element;
+            } else if (id == CLUSTER) {
+                clusters.add(element);
+            }
+            position = (int) (dataStart + size);
+        }
+        this.header = header;
+        this.info = info;
+        this.tracks = tracks;
+    }
+
+    int count() {
+        return clusters.size();
+    }
+
+    static String fragmentNumber(int index) {
+        return "9134385233318143239268206260774392014626477" + (2000 + index);
+    }
+
+    static int indexOf(String fragmentNumber) {
+        return Integer.parseInt(fragmentNumber.substring(fragmentNumber.length() - 4)) - 2000;
+    }
+
+    /**
+     * @param index - cluster of the video
+     * @param withTracks - false to leave out track metadata, decoder must then use the one of the previous fragment
+     */
+    byte[] fragment(int index, boolean withTracks) {
+        ByteArrayOutputStream fragment = new ByteArrayOutputStream();
+        fragment.writeBytes(header);
+        writeId(fragment, SEGMENT);
+        fragment.writeBytes(UNKNOWN_SIZE);
+        fragment.writeBytes(info);
+        if (withTracks) {
+            fragment.writeBytes(tracks);
+        }
+        double timestampSeconds = 1_600_000_000 + index * 2;
+        fragment.writeBytes(tags(
+                "AWS_KINESISVIDEO_FRAGMENT_NUMBER", fragmentNumber(index),
+                "AWS_KINESISVIDEO_SERVER_TIMESTAMP", String.valueOf(timestampSeconds + 0.5),
+                "AWS_KINESISVIDEO_PRODUCER_TIMESTAMP", String.valueOf(timestampSeconds)));
+        fragment.writeBytes(clusters.get(index));
+        return fragment.toByteArray();
+    }
+
+    /**
+     * Fragments from the given one to the last one with track metadata
+     */
+    byte[] response(int from) {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        for (int i = from; i < count(); i++) {
+            response.writeBytes(fragment(i, true));
+        }
+        return response.toByteArray();
+    }
+
+    /**
+     * Tags sent after the last fragment of a response ending normally
+     */
+    static byte[] continuationToken(String token) {
+        return tags("AWS_KINESISVIDEO_CONTINUATION_TOKEN", token);
+    }
+
+    private static byte[] tags(String... namesAndValues) {
+        ByteArrayOutputStream tag = new ByteArrayOutputStream();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            ByteArrayOutputStream simpleTag = new ByteArrayOutputStream();
+            simpleTag.writeBytes(element(TAG_NAME, namesAndValues[i].getBytes(StandardCharsets.UTF_8)));
+            simpleTag.writeBytes(element(TAG_STRING, namesAndValues[i + 1].getBytes(StandardCharsets.UTF_8)));
+            tag.writeBytes(element(SIMPLE_TAG, simpleTag.toByteArray()));
+        }
+        return element(TAGS, element(TAG, tag.toByteArray()));
+    }
+
+    private static byte[] element(int id, byte[] data) {
+        ByteArrayOutputStream element = new ByteArrayOutputStream();
+        writeId(element, id);
+        // 8 byte size is valid for any length
+        element.write(0x01);
+        for (int shift = 48; shift >= 0; shift -= 8) {
+            element.write((int) ((long) data.length >>> shift) & 0xFF);
+        }
+        element.writeBytes(data);
+        return element.toByteArray();
+    }
+
+    private static void writeId(ByteArrayOutputStream output, int id) {
+        boolean started = false;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int b = (id >>> shift) & 0xFF;
+            if (b != 0 || started) {
+                output.write(b);
+                started = true;
+            }
+        }
+    }
+
+    private static int vintLength(byte first) {
+        return Integer.numberOfLeadingZeros(first & 0xFF) - 23;
+    }
+
+    private static int readId(byte[] bytes, int position) {
+        int id = 0;
+        for (int i = 0; i < vintLength(bytes[position]); i++) {
+            id = (id << 8) | (bytes[position + i] & 0xFF);
+        }
+        return id;
+    }
+
+    private static long readSize(byte[] bytes, int position, int length) {
+        long size = bytes[position] & (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            size = (size << 8) | (bytes[position + i] & 0xFF);
+        }
+        return size;
+    }
+}